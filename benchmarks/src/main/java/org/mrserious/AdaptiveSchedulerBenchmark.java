@@ -0,0 +1,116 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Choosing and recording questions with {@link AdaptiveScheduler} once thousands of
+ * players have given millions of answers. Setup replays the answers of simulated
+ * players (right about 70% of the time, a minute of simulated time apart) through an
+ * {@link AnswerLog}, and {@link #replayLog} times rebuilding the same state from that
+ * log, as a start does. Picking a question should stay well under a millisecond.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class AdaptiveSchedulerBenchmark {
+    private static final String[] DIFFICULTIES = {"easy", "medium", "hard"};
+    private static final String[] CATEGORIES = {"Biology", "Chemistry", "Physics", "History", "Geography",
+        "Literature", "Mathematics", "Economics"};
+
+    @Param({"100000"})
+    public int poolSize;
+
+    @Param({"1000", "10000"})
+    public int players;
+
+    @Param({"2000000"})
+    public int answers;
+
+    private QuestionBank bank;
+    private AdaptiveScheduler scheduler;
+    private String[] names;
+    private Path logFile;
+    private final AtomicLong now = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<QuizGame.Question> pool = new ArrayList<>(poolSize);
+        Random random = new Random(42);
+        for (QuizGame.Question question : QuestionIndexBenchmark.corpus(poolSize)) {
+            pool.add(new QuizGame.Question(question.text(), question.options(), question.correctAnswer(),
+                DIFFICULTIES[random.nextInt(DIFFICULTIES.length)], CATEGORIES[random.nextInt(CATEGORIES.length)]));
+        }
+        bank = new QuestionBank(pool);
+
+        names = new String[players];
+        for (int i = 0; i < players; i++) {
+            names[i] = "player" + i;
+        }
+
+        logFile = Files.createTempFile("collepuz-answers", ".log");
+        Files.delete(logFile);
+        try (AdaptiveScheduler writer = AdaptiveScheduler.open(bank, logFile)) {
+            simulate(writer, random, answers);
+        }
+
+        scheduler = new AdaptiveScheduler(bank, now::get);
+        simulate(scheduler, random, answers);
+        System.out.printf("%n%,d players, %,d answers, log %.1f MB%n",
+            scheduler.playerCount(), scheduler.answers(), Files.size(logFile) / 1e6);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public int next() {
+        return scheduler.next(names[ThreadLocalRandom.current().nextInt(names.length)]);
+    }
+
+    @Benchmark
+    public int nextAndRecord() {
+        String player = names[ThreadLocalRandom.current().nextInt(names.length)];
+        int id = scheduler.next(player);
+        scheduler.record(player, id, ThreadLocalRandom.current().nextInt(10) < 7);
+        return id;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int nextContended() {
+        return scheduler.next(names[ThreadLocalRandom.current().nextInt(names.length)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long replayLog() throws IOException {
+        try (AdaptiveScheduler replayed = AdaptiveScheduler.open(bank, logFile)) {
+            return replayed.answers();
+        }
+    }
+
+    private void simulate(AdaptiveScheduler target, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            now.addAndGet(60_000);
+            String player = names[random.nextInt(names.length)];
+            int id = target.next(player);
+            target.record(player, id, random.nextInt(10) < 7);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-file extraction and the individual passes of {@link PDFQuestionExtractor},
+ * over each synthetic layout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+    @Param({"SMALL", "HUGE", "MANY_QUESTIONS", "OPTION_HEAVY"})
+    public SyntheticPdfs.Layout layout;
+
+    private Path directory;
+    private File pdf;
+    private String text;
+    private List<QuizGame.Question> withDuplicates;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("collepuz-bench");
+        pdf = SyntheticPdfs.write(layout, directory.resolve(layout + ".pdf")).toFile();
+        text = SyntheticPdfs.text(layout);
+
+        // Both passes usually find the same questions, so this is the realistic input
+        withDuplicates = new ArrayList<>(PDFQuestionExtractor.extractQuestionsUsingPatterns(text));
+        withDuplicates.addAll(PDFQuestionExtractor.extractQuestionsUsingHeuristics(text));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(pdf.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> extractFromSinglePDF() {
+        return PDFQuestionExtractor.extractFromSinglePDF(pdf);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> patternPass() {
+        return PDFQuestionExtractor.extractQuestionsUsingPatterns(text);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> heuristicPass() {
+        return PDFQuestionExtractor.extractQuestionsUsingHeuristics(text);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> removeDuplicates() {
+        return PDFQuestionExtractor.removeDuplicates(withDuplicates);
+    }
+}
@@ -0,0 +1,78 @@
+package org.mrserious;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Heap footprint of a question pool held as {@link QuizGame.Question} records against the
+ * same pool in a {@link QuestionStore}:
+ * {@code java --enable-preview -cp benchmarks.jar org.mrserious.FootprintReport [questions] [--off-heap]}.
+ * The records are rebuilt field by field, as the cache and the JSON readers hand them
+ * over, so their strings are not shared. Sizes are live heap after a full GC.
+ */
+public class FootprintReport {
+    public static void main(String[] args) {
+        int size = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 500_000;
+        boolean offHeap = Arrays.asList(args).contains("--off-heap");
+
+        long baseline = usedHeap();
+        List<QuizGame.Question> pool = loaded(NearDuplicateBenchmark.corpus(size));
+        long recordBytes = usedHeap() - baseline;
+
+        long directBaseline = directMemory();
+        QuestionStore.Builder builder = new QuestionStore.Builder(offHeap);
+        pool.forEach(builder::add);
+        pool = null;
+        QuestionStore store = builder.build();
+        builder = null;
+        long storeBytes = usedHeap() - baseline;
+        long storeDirectBytes = directMemory() - directBaseline;
+
+        System.out.printf("%,d questions%n", store.size());
+        System.out.printf("%-22s %14s %14s %12s%n", "Layout", "Heap", "Off-heap", "Per question");
+        System.out.printf("%-22s %,14d %14s %,12d%n", "Question records", recordBytes, "-", recordBytes / size);
+        System.out.printf("%-22s %,14d %,14d %,12d%n", offHeap ? "QuestionStore (direct)" : "QuestionStore",
+            storeBytes, storeDirectBytes, (storeBytes + storeDirectBytes) / size);
+        System.out.printf("Estimated by the store: %,d heap, %,d off-heap%n", store.heapBytes(), store.offHeapBytes());
+        System.out.printf("Heap saved: %.1f%%%n", 100.0 * (recordBytes - storeBytes) / recordBytes);
+
+        // Keep the store reachable until it has been measured
+        Objects.requireNonNull(store.get(0));
+    }
+
+    /**
+     * Copies each question into fresh strings and lists, the way it looks after loading.
+     */
+    private static List<QuizGame.Question> loaded(List<QuizGame.Question> corpus) {
+        List<QuizGame.Question> pool = new ArrayList<>(corpus.size());
+        for (QuizGame.Question question : corpus) {
+            List<String> options = new ArrayList<>();
+            for (String option : question.options()) {
+                options.add(new String(option));
+            }
+            pool.add(new QuizGame.Question(
+                new String(question.text()),
+                options,
+                new String(question.correctAnswer()),
+                new String(question.difficulty()),
+                new String(question.category())
+            ));
+        }
+        return pool;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .filter(pool -> pool.getName().equals("direct"))
+            .mapToLong(BufferPoolMXBean::getMemoryUsed)
+            .sum();
+    }
+}
@@ -0,0 +1,126 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LineClassifier} against the regex rules it replaced, over every line of the
+ * many-questions layout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class LineClassifierBenchmark {
+    private String[] lines;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = SyntheticPdfs.text(SyntheticPdfs.Layout.MANY_QUESTIONS).split("\n");
+    }
+
+    @Benchmark
+    public void classifierIsLikelyQuestion(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(LineClassifier.isLikelyQuestion(line));
+        }
+    }
+
+    @Benchmark
+    public void regexIsLikelyQuestion(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(RegexRules.isLikelyQuestion(line));
+        }
+    }
+
+    @Benchmark
+    public void classifierIsLikelyOption(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(LineClassifier.isLikelyOption(line));
+        }
+    }
+
+    @Benchmark
+    public void regexIsLikelyOption(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(RegexRules.isLikelyOption(line));
+        }
+    }
+
+    @Benchmark
+    public void classifierCleanQuestionText(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(LineClassifier.cleanQuestionText(line));
+        }
+    }
+
+    @Benchmark
+    public void regexCleanQuestionText(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(RegexRules.cleanQuestionText(line));
+        }
+    }
+
+    @Benchmark
+    public void classifierCleanOptionText(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(LineClassifier.cleanOptionText(line));
+        }
+    }
+
+    @Benchmark
+    public void regexCleanOptionText(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(RegexRules.cleanOptionText(line));
+        }
+    }
+
+    /**
+     * The String.matches/replaceAll implementation LineClassifier replaced, kept as the baseline.
+     */
+    static final class RegexRules {
+        private RegexRules() {}
+
+        static boolean isLikelyQuestion(String text) {
+            text = text.toLowerCase();
+            return text.contains("?") ||
+                text.matches(".*\\b(?:what|which|who|when|where|why|how)\\b.*") ||
+                text.matches(".*\\b(?:identify|choose|select|determine)\\b.*") ||
+                text.matches("^\\s*\\d+\\..*") ||
+                text.matches("^\\s*q\\s*\\d+.*");
+        }
+
+        static boolean isLikelyOption(String line) {
+            line = line.trim().toLowerCase();
+            return line.matches("^[a-d][\\.\\)].*") ||
+                line.matches("^\\([a-d]\\).*") ||
+                line.matches("^[•·▪▫]\\s*.*") ||
+                line.matches("^-\\s+.*") ||
+                line.matches("^\\d+[\\.\\)]\\s+.*");
+        }
+
+        static String cleanQuestionText(String text) {
+            return text.replaceAll("^\\s*\\d+\\.?\\s*", "")
+                .replaceAll("^\\s*Q\\.?\\s*\\d+\\.?\\s*", "")
+                .replaceAll("^\\s*Question\\s+\\d+\\.?\\s*", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+        }
+
+        static String cleanOptionText(String text) {
+            return text.replaceAll("^\\s*[A-Da-d][\\.\\)]\\s*", "")
+                .replaceAll("^\\s*\\([A-Da-d]\\)\\s*", "")
+                .replaceAll("^\\s*[•·▪▫-]\\s*", "")
+                .replaceAll("^\\s*\\d+[\\.\\)]\\s*", "")
+                .replaceAll("[*✓✔√]", "")
+                .replaceAll("\\s*\\(correct\\)\\s*", "")
+                .replaceAll("\\s*\\[correct\\]\\s*", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.mrserious;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for {@link QuizServer}: many simulated players, each on its own virtual thread,
+ * connect at once and play a full quiz, pausing {@code thinkMillis} (on average) before each
+ * answer so that they stay connected together.
+ * {@code java --enable-preview -cp benchmarks.jar org.mrserious.LoadTest [players] [thinkMillis] [host:port]}.
+ * Without an address it starts a server in the same JVM, which then needs two file
+ * descriptors per player. Reports completed sessions per second and the latency of
+ * answers, from sending ANSWER to reading the verdict.
+ */
+public class LoadTest {
+    private static final int CONNECT_ATTEMPTS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int thinkMillis = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        QuizServer server = null;
+        String host = "localhost";
+        int port;
+        if (args.length > 2) {
+            host = args[2].substring(0, args[2].lastIndexOf(':'));
+            port = Integer.parseInt(args[2].substring(args[2].lastIndexOf(':') + 1));
+        } else {
+            server = new QuizServer(new QuestionBank(NearDuplicateBenchmark.corpus(20_000)), 0).start();
+            port = server.port();
+        }
+
+        long[][] latencies = new long[players][];
+        AtomicInteger connected = new AtomicInteger();
+        AtomicInteger peakConnected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch gate = new CountDownLatch(1);
+
+        long started;
+        long finished;
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int player = 0; player < players; player++) {
+                int id = player;
+                String address = host;
+                pool.submit(() -> {
+                    try {
+                        gate.await();
+                        latencies[id] = play(address, port, thinkMillis, connected, peakConnected);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+
+            started = System.nanoTime();
+            gate.countDown();
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+            finished = System.nanoTime();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+
+        long[] all = Arrays.stream(latencies).filter(Objects::nonNull).flatMapToLong(Arrays::stream).sorted().toArray();
+        int completed = players - failed.get();
+        double seconds = (finished - started) / 1e9;
+
+        System.out.printf("%,d players, %,d completed, %,d failed, at most %,d connected at once%n",
+            players, completed, failed.get(), peakConnected.get());
+        System.out.printf("%.2f s: %,.0f sessions/s, %,.0f answers/s%n", seconds, completed / seconds, all.length / seconds);
+        if (all.length > 0) {
+            System.out.printf("Answer latency: p50 %,d us, p99 %,d us, p99.9 %,d us, max %,d us%n",
+                percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000,
+                percentile(all, 0.999) / 1000, all[all.length - 1] / 1000);
+        }
+    }
+
+    /**
+     * Plays one quiz with random answers and returns the latency of each answer in nanoseconds.
+     */
+    private static long[] play(String host, int port, int thinkMillis, AtomicInteger connected, AtomicInteger peakConnected)
+            throws IOException, InterruptedException {
+        try (Socket socket = connect(host, port)) {
+            peakConnected.accumulateAndGet(connected.incrementAndGet(), Math::max);
+            try {
+                socket.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+                send(out, "START\tmedium");
+                long[] latencies = new long[32];
+                int answers = 0;
+
+                while (true) {
+                    String line = in.readLine();
+                    if (line == null || line.startsWith("ERROR")) {
+                        throw new IOException("Session broken off: " + line);
+                    }
+                    if (line.startsWith("SCORE")) {
+                        return Arrays.copyOf(latencies, answers);
+                    }
+
+                    // QUESTION n total difficulty category text options...
+                    int options = line.split("\t").length - 6;
+                    if (thinkMillis > 0) {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(2 * thinkMillis));
+                    }
+                    long sent = System.nanoTime();
+                    send(out, "ANSWER\t" + (1 + ThreadLocalRandom.current().nextInt(options)));
+                    String verdict = in.readLine();
+                    if (verdict == null || !(verdict.startsWith("CORRECT") || verdict.startsWith("WRONG"))) {
+                        throw new IOException("Unexpected reply: " + verdict);
+                    }
+
+                    if (answers == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, answers * 2);
+                    }
+                    latencies[answers++] = System.nanoTime() - sent;
+                }
+            } finally {
+                connected.decrementAndGet();
+            }
+        }
+    }
+
+    private static Socket connect(String host, int port) throws IOException, InterruptedException {
+        // A full accept queue refuses some of a burst of connections; back off and retry
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(ThreadLocalRandom.current().nextInt(10, 50) * attempt);
+            }
+        }
+    }
+
+    private static void send(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
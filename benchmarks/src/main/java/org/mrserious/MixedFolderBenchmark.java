@@ -0,0 +1,82 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Extracting a folder through {@link ExtractionSupervisor} when some of its PDFs are
+ * broken: random bytes, files cut off halfway and a valid header over garbage. With
+ * {@code broken = 0} this is the baseline; the broken files should cost little more than
+ * their own parse attempt, never the throughput of the good ones. Nothing is cached or
+ * remembered between invocations, so every file is parsed every time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class MixedFolderBenchmark {
+    private static final int GOOD = 12;
+
+    @Param({"0", "6"})
+    public int broken;
+
+    @Param({"4"})
+    public int parallelism;
+
+    private Path directory;
+    private List<Path> pdfFiles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("collepuz-bench");
+        pdfFiles = new ArrayList<>();
+        for (int i = 0; i < GOOD; i++) {
+            pdfFiles.add(SyntheticPdfs.write(SyntheticPdfs.Layout.MANY_QUESTIONS, directory.resolve("good" + i + ".pdf")));
+        }
+
+        byte[] valid = Files.readAllBytes(pdfFiles.getFirst());
+        Random random = new Random(42);
+        for (int i = 0; i < broken; i++) {
+            byte[] bytes = switch (i % 3) {
+                case 0 -> {
+                    byte[] noise = new byte[valid.length];
+                    random.nextBytes(noise);
+                    yield noise;
+                }
+                case 1 -> Arrays.copyOf(valid, valid.length / 2);
+                default -> {
+                    byte[] noise = Arrays.copyOf(valid, valid.length);
+                    byte[] garbage = new byte[valid.length - 64];
+                    random.nextBytes(garbage);
+                    System.arraycopy(garbage, 0, noise, 64, garbage.length);
+                    yield noise;
+                }
+            };
+            pdfFiles.add(Files.write(directory.resolve("broken" + i + ".pdf"), bytes));
+        }
+        pdfFiles.sort(Comparator.comparing(Path::toString));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path pdfFile : pdfFiles) {
+            Files.deleteIfExists(pdfFile);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<List<QuizGame.Question>> extractFolder() throws Exception {
+        try (ExtractionSupervisor supervisor = new ExtractionSupervisor(parallelism, Quarantine.inMemory())) {
+            return PDFQuestionExtractor.extractAll(pdfFiles, supervisor, null, Function.identity());
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.mrserious;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Open Trivia Database: {@code api.php}, {@code api_token.php} and
+ * {@code api_category.php} with OpenTDB's response codes, session tokens and per-client
+ * rate limit, over a fixed set of generated questions. Point the game at it with
+ * {@code -Dcollepuz.opentdb.url=http://localhost:<port>/api.php}. Run on its own it compares
+ * filling a pool through {@link OpenTDBClient} against repeating plain requests:
+ * {@code java --enable-preview -cp benchmarks.jar org.mrserious.MockOpenTDB [pool] [categories] [perCategory] [intervalMillis]}.
+ */
+public class MockOpenTDB implements AutoCloseable {
+    private static final String[] DIFFICULTIES = {"easy", "medium", "hard"};
+    private static final int FIRST_CATEGORY = 9;
+
+    private final HttpServer server;
+    private final int categories;
+    private final int perCategory;
+    private final long intervalNanos;
+    private final Map<String, Set<Integer>> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private long lastRequest = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    /**
+     * @param perCategory questions per category, spread over the three difficulties
+     * @param interval    shortest gap between question requests before response code 5
+     */
+    public MockOpenTDB(int categories, int perCategory, Duration interval) throws IOException {
+        this.categories = categories;
+        this.perCategory = perCategory;
+        this.intervalNanos = interval.toNanos();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api.php", exchange -> respond(exchange, questions(query(exchange))));
+        server.createContext("/api_token.php", exchange -> respond(exchange, token(query(exchange))));
+        server.createContext("/api_category.php", exchange -> respond(exchange, categoryList()));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pool = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int categories = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int perCategory = args.length > 2 ? Integer.parseInt(args[2]) : 150;
+        Duration interval = Duration.ofMillis(args.length > 3 ? Long.parseLong(args[3]) : 50);
+
+        HttpClient httpClient = HttpClient.newHttpClient();
+        List<Integer> categoryIds = new ArrayList<>();
+        for (int i = 0; i < categories; i++) {
+            categoryIds.add(FIRST_CATEGORY + i);
+        }
+
+        // The client keeps a little more than the limit, since arrival times jitter
+        Duration pacing = interval.plusMillis(5);
+
+        try (MockOpenTDB mock = new MockOpenTDB(categories, perCategory, interval)) {
+            OpenTDBClient client = new OpenTDBClient(httpClient, mock.api(), pacing,
+                Duration.ofMillis(100), Duration.ofSeconds(10));
+            long started = System.nanoTime();
+            List<QuizGame.Question> questions = client.fill(pool, "", categoryIds, 4).join();
+            report("Token fill", questions.size(), mock, started);
+        }
+
+        try (MockOpenTDB mock = new MockOpenTDB(categories, perCategory, interval)) {
+            // What the online mode did before: batches of 20 without a token, one after another, keeping the new ones
+            long started = System.nanoTime();
+            Set<String> seen = new HashSet<>();
+            int stale = 0;
+            while (seen.size() < pool && stale < 20) {
+                int before = seen.size();
+                for (QuizGame.Question question : plainBatch(httpClient, mock.api())) {
+                    seen.add(question.text());
+                }
+                stale = seen.size() > before ? 0 : stale + 1;
+                Thread.sleep(pacing);
+            }
+            report("Plain batches", Math.min(pool, seen.size()), mock, started);
+        }
+    }
+
+    URI api() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/api.php");
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int rateLimited() {
+        return rateLimited.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static List<QuizGame.Question> plainBatch(HttpClient httpClient, URI api) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(api + "?amount=20&type=multiple")).build();
+        try (InputStream body = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+            return QuestionJsonReader.readOpenTDB(body);
+        }
+    }
+
+    private static void report(String label, int questions, MockOpenTDB mock, long started) {
+        System.out.printf("%-14s %,6d questions  %,5d requests  %,4d rate-limited  %,8.1f ms%n",
+            label, questions, mock.requests(), mock.rateLimited(), (System.nanoTime() - started) / 1e6);
+    }
+
+    // One request at a time, so two requests with the same token never get the same question
+    private synchronized String questions(Map<String, String> query) {
+        requests.incrementAndGet();
+        long now = System.nanoTime();
+        if (now - lastRequest < intervalNanos) {
+            rateLimited.incrementAndGet();
+            return "{\"response_code\":5,\"results\":[]}";
+        }
+        lastRequest = now;
+
+        int amount;
+        int category;
+        try {
+            amount = Integer.parseInt(query.getOrDefault("amount", "10"));
+            category = Integer.parseInt(query.getOrDefault("category", "0"));
+        } catch (NumberFormatException e) {
+            return "{\"response_code\":2,\"results\":[]}";
+        }
+        String difficulty = query.getOrDefault("difficulty", "");
+        if (amount < 1 || amount > OpenTDBClient.MAX_AMOUNT
+            || category != 0 && (category < FIRST_CATEGORY || category >= FIRST_CATEGORY + categories)) {
+            return "{\"response_code\":2,\"results\":[]}";
+        }
+
+        Set<Integer> served = null;
+        if (query.containsKey("token")) {
+            served = tokens.get(query.get("token"));
+            if (served == null) {
+                return "{\"response_code\":3,\"results\":[]}";
+            }
+        }
+
+        List<Integer> available = new ArrayList<>();
+        for (int id = 0; id < categories * perCategory; id++) {
+            boolean matches = (category == 0 || FIRST_CATEGORY + id / perCategory == category)
+                && (difficulty.isEmpty() || DIFFICULTIES[id % DIFFICULTIES.length].equals(difficulty));
+            if (matches && (served == null || !served.contains(id))) {
+                available.add(id);
+            }
+        }
+        if (available.isEmpty()) {
+            return "{\"response_code\":" + (served != null ? 4 : 1) + ",\"results\":[]}";
+        }
+        if (available.size() < amount) {
+            return "{\"response_code\":1,\"results\":[]}";
+        }
+
+        Collections.shuffle(available);
+        StringBuilder json = new StringBuilder("{\"response_code\":0,\"results\":[");
+        for (int i = 0; i < amount; i++) {
+            int id = available.get(i);
+            if (served != null) {
+                served.add(id);
+            }
+            json.append(i == 0 ? "" : ",")
+                .append("{\"type\":\"multiple\",\"difficulty\":\"").append(DIFFICULTIES[id % DIFFICULTIES.length])
+                .append("\",\"category\":\"Category ").append(FIRST_CATEGORY + id / perCategory)
+                .append("\",\"question\":\"Mock question number ").append(id)
+                .append("?\",\"correct_answer\":\"Right ").append(id)
+                .append("\",\"incorrect_answers\":[\"Wrong A").append(id).append("\",\"Wrong B").append(id)
+                .append("\",\"Wrong C").append(id).append("\"]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String token(Map<String, String> query) {
+        String token = query.get("token");
+        switch (query.getOrDefault("command", "")) {
+            case "request" -> {
+                token = UUID.randomUUID().toString().replace("-", "");
+                tokens.put(token, ConcurrentHashMap.newKeySet());
+            }
+            case "reset" -> {
+                if (token == null || tokens.replace(token, ConcurrentHashMap.newKeySet()) == null) {
+                    return "{\"response_code\":3}";
+                }
+            }
+            default -> {
+                return "{\"response_code\":2}";
+            }
+        }
+        return "{\"response_code\":0,\"response_message\":\"Token Generated Successfully!\",\"token\":\"" + token + "\"}";
+    }
+
+    private String categoryList() {
+        StringBuilder json = new StringBuilder("{\"trivia_categories\":[");
+        for (int i = 0; i < categories; i++) {
+            json.append(i == 0 ? "" : ",")
+                .append("{\"id\":").append(FIRST_CATEGORY + i).append(",\"name\":\"Category ").append(FIRST_CATEGORY + i).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
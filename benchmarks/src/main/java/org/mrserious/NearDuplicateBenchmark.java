@@ -0,0 +1,110 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corpus-wide near-duplicate removal over a synthetic question corpus in which one
+ * question in five is a reworded copy of an earlier one (renumbered, re-punctuated,
+ * options shuffled, or a word changed). The index footprint is printed after each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class NearDuplicateBenchmark {
+    private static final String[] WORDS = (
+        "cell energy protein enzyme market supply demand force mass velocity graph tree node river "
+        + "climate war treaty empire king law court vote tax price bond atom ion acid base light wave "
+        + "sound heat gene trait virus host").split(" ");
+
+    private static final String[] STEMS = {
+        "What is the role of", "Which statement best describes", "Why is", "How does",
+        "Identify the main function of", "Which of the following explains"
+    };
+
+    @Param({"100000"})
+    public int corpusSize;
+
+    @Param({"0.8", "0.6"})
+    public double threshold;
+
+    private List<QuizGame.Question> corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = corpus(corpusSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        NearDuplicateIndex index = new NearDuplicateIndex(threshold);
+        corpus.forEach(index::add);
+        System.out.printf("%n%d of %d questions kept, index footprint %.1f MB (%d bytes per kept question)%n",
+            index.size(), corpus.size(), index.footprintBytes() / 1e6, index.footprintBytes() / index.size());
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> removeNearDuplicates() {
+        return NearDuplicateIndex.removeNearDuplicates(corpus, threshold);
+    }
+
+    static List<QuizGame.Question> corpus(int size) {
+        Random random = new Random(42);
+        List<QuizGame.Question> originals = new ArrayList<>();
+        List<QuizGame.Question> corpus = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            if (!originals.isEmpty() && random.nextInt(5) == 0) {
+                corpus.add(variant(random, originals.get(random.nextInt(originals.size()))));
+            } else {
+                QuizGame.Question question = original(random);
+                originals.add(question);
+                corpus.add(question);
+            }
+        }
+
+        return corpus;
+    }
+
+    private static QuizGame.Question original(Random random) {
+        List<String> options = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            options.add(phrase(random, 2 + random.nextInt(3)));
+        }
+        String text = STEMS[random.nextInt(STEMS.length)] + " " + phrase(random, 4 + random.nextInt(5))
+            + " in " + phrase(random, 2) + "?";
+        return new QuizGame.Question(text, options, options.getFirst(), "medium", "PDF Extract");
+    }
+
+    private static QuizGame.Question variant(Random random, QuizGame.Question original) {
+        String text = switch (random.nextInt(4)) {
+            case 0 -> (1 + random.nextInt(99)) + ". " + original.text();
+            case 1 -> "Q" + (1 + random.nextInt(99)) + " " + original.text().replace("?", " ?");
+            case 2 -> original.text().toUpperCase();
+            default -> original.text().replaceFirst(" in ", ", within ");
+        };
+
+        List<String> options = new ArrayList<>(original.options());
+        Collections.shuffle(options, random);
+        if (random.nextBoolean()) {
+            options.set(0, options.getFirst() + ".");
+        }
+        return new QuizGame.Question(text, options, original.correctAnswer(), original.difficulty(), original.category());
+    }
+
+    private static String phrase(Random random, int words) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                phrase.append(' ');
+            }
+            phrase.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return phrase.toString();
+    }
+}
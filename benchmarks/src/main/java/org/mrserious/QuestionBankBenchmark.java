@@ -0,0 +1,70 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking one session's questions for a difficulty from a large pool: sampling from
+ * {@link QuestionBank} against the old copy, shuffle and filter of the whole list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class QuestionBankBenchmark {
+    private static final String[] DIFFICULTIES = {"easy", "medium", "hard", ""};
+    private static final String[] CATEGORIES = {"PDF Extract", "PDF Heuristic", "Science & Nature", "History", "Geography"};
+
+    @Param({"10000", "500000"})
+    public int poolSize;
+
+    private List<QuizGame.Question> pool;
+    private QuestionBank bank;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        pool = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            pool.add(new QuizGame.Question(
+                "Question number " + i + "?",
+                List.of("A" + i, "B" + i, "C" + i, "D" + i),
+                "A" + i,
+                DIFFICULTIES[random.nextInt(DIFFICULTIES.length)],
+                CATEGORIES[random.nextInt(CATEGORIES.length)]
+            ));
+        }
+        bank = new QuestionBank(pool);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> bankSample() {
+        return bank.sample(20, Set.of("hard", ""), null);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> bankSampleWithCategory() {
+        return bank.sample(20, Set.of("hard"), "History");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuestionBank buildBank() {
+        return new QuestionBank(pool);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> shuffleAndFilter() {
+        // What startQuizSession did before the bank
+        List<QuizGame.Question> questions = new ArrayList<>(pool);
+        Collections.shuffle(questions);
+        List<QuizGame.Question> filtered = questions.stream()
+            .filter(q -> q.difficulty().equalsIgnoreCase("hard") || q.difficulty().isEmpty())
+            .toList();
+        return filtered.subList(0, Math.min(20, filtered.size()));
+    }
+}
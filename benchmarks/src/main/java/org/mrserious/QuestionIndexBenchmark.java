@@ -0,0 +1,141 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text search over a large bank with {@link QuestionIndex}: single terms, rare and
+ * common, conjunctions, prefixes and OR/NOT queries, against scanning every question's
+ * text as a topic quiz would without the index. Word frequencies follow a Zipf curve
+ * over a 50,000-word vocabulary, like real text. The index footprint is printed after
+ * each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class QuestionIndexBenchmark {
+    private static final int VOCABULARY = 50_000;
+
+    @Param({"100000", "500000"})
+    public int poolSize;
+
+    private List<QuizGame.Question> pool;
+    private QuestionIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = corpus(poolSize);
+        index = QuestionIndex.of(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%,d questions, %,d terms, index footprint %.1f MB (%d bytes per question)%n",
+            index.size(), index.termCount(), index.footprintBytes() / 1e6, index.footprintBytes() / index.size());
+    }
+
+    @Benchmark
+    public int[] rareTerm() {
+        return index.search("photosynthesis");
+    }
+
+    @Benchmark
+    public int[] commonTerm() {
+        return index.search("w1");
+    }
+
+    @Benchmark
+    public int[] conjunction() {
+        return index.search("w3 w10 w25");
+    }
+
+    @Benchmark
+    public int[] prefix() {
+        return index.search("w12*");
+    }
+
+    @Benchmark
+    public int[] orNot() {
+        return index.search("photosynthesis OR chlorophyll w7 -w2");
+    }
+
+    @Benchmark
+    public int scanWithoutIndex() {
+        // What a topic quiz costs without the index: look at every question's text
+        int matches = 0;
+        for (QuizGame.Question question : pool) {
+            if (question.text().toLowerCase(Locale.ROOT).contains("photosynthesis")) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuestionIndex buildIndex() {
+        return QuestionIndex.of(pool);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuestionIndex mergeSegments() {
+        // Ten PDFs' segments joined with every fifth question dropped, as after the near-duplicate pass
+        int files = 10;
+        int perFile = pool.size() / files;
+        List<QuestionIndex> segments = new ArrayList<>(files);
+        List<int[]> idMaps = new ArrayList<>(files);
+        int next = 0;
+        for (int f = 0; f < files; f++) {
+            segments.add(QuestionIndex.of(pool.subList(f * perFile, (f + 1) * perFile)));
+            int[] idMap = new int[perFile];
+            for (int i = 0; i < perFile; i++) {
+                idMap[i] = i % 5 == 4 ? -1 : next++;
+            }
+            idMaps.add(idMap);
+        }
+        return QuestionIndex.merge(segments, idMaps, next);
+    }
+
+    static List<QuizGame.Question> corpus(int size) {
+        Random random = new Random(42);
+
+        // Cumulative Zipf weights: word i is about 1 / (i + 1) as common as the first
+        double[] cumulative = new double[VOCABULARY];
+        double total = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+
+        List<QuizGame.Question> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder text = new StringBuilder("Which statement about");
+            for (int w = 0, words = 6 + random.nextInt(10); w < words; w++) {
+                text.append(' ').append(word(random, cumulative, total));
+            }
+            // A topic found in about one question in a thousand
+            if (random.nextInt(1000) == 0) {
+                text.append(random.nextBoolean() ? " photosynthesis" : " chlorophyll");
+            }
+            text.append('?');
+
+            List<String> options = new ArrayList<>(4);
+            for (int o = 0; o < 4; o++) {
+                options.add(word(random, cumulative, total) + " " + word(random, cumulative, total));
+            }
+            corpus.add(new QuizGame.Question(text.toString(), options, options.getFirst(), "medium", "PDF Extract"));
+        }
+        return corpus;
+    }
+
+    private static String word(Random random, double[] cumulative, double total) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+        return "w" + (index < 0 ? -index - 1 : index);
+    }
+}
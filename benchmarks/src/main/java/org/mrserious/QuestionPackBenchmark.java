@@ -0,0 +1,58 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup from a compiled {@link QuestionPack} against building the bank from records
+ * already in memory, and sampling a session from the mapped pack once it is open.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class QuestionPackBenchmark {
+    @Param({"10000", "1000000"})
+    public int poolSize;
+
+    private List<QuizGame.Question> pool;
+    private Path packFile;
+    private QuestionBank pack;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pool = NearDuplicateBenchmark.corpus(poolSize);
+        packFile = Files.createTempFile("questions", ".cpzpack");
+        QuestionPack.write(new QuestionBank(pool), packFile);
+        pack = QuestionPack.open(packFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pack = null;
+        Files.deleteIfExists(packFile);
+    }
+
+    @Benchmark
+    public QuestionBank openPack() throws IOException {
+        return QuestionPack.open(packFile);
+    }
+
+    @Benchmark
+    public QuestionBank buildBank() {
+        return new QuestionBank(pool);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<QuizGame.Question> packSample() {
+        return pack.sample(20, Set.of("hard", ""), null);
+    }
+}
@@ -0,0 +1,148 @@
+package org.mrserious;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenTDB response parsing and HTML entity decoding, with payloads shaped like real
+ * OpenTDB batches (entity-heavy question text, three incorrect answers each). Parsing
+ * starts from the raw body bytes, as they come off the wire. Run with {@code -prof gc}
+ * to compare how much each path allocates, as well as how fast it is.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class QuizGameBenchmark {
+    private static final String[] FIELDS = {
+        "Which of these is NOT a &quot;noble gas&quot;?",
+        "In &#039;The Lord of the Rings&#039;, who is Frodo&rsquo;s gardener?",
+        "What does &lt;br&gt; do in HTML &amp; XHTML?",
+        "Plain text without any entities at all",
+        "&ldquo;E = mc&sup2;&rdquo; was published in which year?",
+        "Caf&eacute; &amp; Cr&egrave;me Br&ucirc;l&eacute;e",
+        "Don&#8217;t confuse &#x27;affect&#x27; with &#39;effect&#39;",
+    };
+
+    @Param({"20", "500", "5000"})
+    public int batchSize;
+
+    private byte[] openTdbBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("response_code", 0);
+        ArrayNode results = root.putArray("results");
+
+        for (int i = 0; i < batchSize; i++) {
+            ObjectNode question = results.addObject();
+            question.put("type", "multiple");
+            question.put("difficulty", i % 3 == 0 ? "easy" : i % 3 == 1 ? "medium" : "hard");
+            question.put("category", "Science &amp; Nature");
+            question.put("question", FIELDS[i % FIELDS.length] + " #" + i);
+            question.put("correct_answer", FIELDS[(i + 1) % FIELDS.length]);
+            ArrayNode incorrect = question.putArray("incorrect_answers");
+            for (int j = 2; j <= 4; j++) {
+                incorrect.add(FIELDS[(i + j) % FIELDS.length]);
+            }
+        }
+
+        openTdbBody = mapper.writeValueAsBytes(root);
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> parseOpenTDBStreaming() throws Exception {
+        return QuestionJsonReader.readOpenTDB(new ByteArrayInputStream(openTdbBody));
+    }
+
+    @Benchmark
+    public List<QuizGame.Question> parseOpenTDBTreeModel() throws Exception {
+        return TreeModel.parseOpenTDBResponse(new String(openTdbBody, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void decodeHtml(Blackhole blackhole) {
+        for (String field : FIELDS) {
+            blackhole.consume(QuizGame.decodeHtml(field));
+        }
+    }
+
+    @Benchmark
+    public void decodeHtmlChainedReplace(Blackhole blackhole) {
+        for (String field : FIELDS) {
+            blackhole.consume(ChainedReplace.decodeHtml(field));
+        }
+    }
+
+    /**
+     * The eight chained String.replace calls HtmlEntities replaced, kept as the baseline.
+     */
+    static final class ChainedReplace {
+        private ChainedReplace() {}
+
+        static String decodeHtml(String text) {
+            return text.replace("&quot;", "\"")
+                .replace("&#039;", "'")
+                .replace("&amp;", "&")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&rdquo;", "\"")
+                .replace("&ldquo;", "\"")
+                .replace("&rsquo;", "'");
+        }
+    }
+
+    /**
+     * The BodyHandlers.ofString() + readTree path QuestionJsonReader replaced, kept as the baseline.
+     */
+    static final class TreeModel {
+        private static final ObjectMapper objectMapper = new ObjectMapper();
+
+        private TreeModel() {}
+
+        static List<QuizGame.Question> parseOpenTDBResponse(String body) throws Exception {
+            JsonNode root = objectMapper.readTree(body);
+            JsonNode results = root.get("results");
+
+            List<QuizGame.Question> questions = new ArrayList<>();
+
+            for (JsonNode questionNode : results) {
+                String questionText = QuizGame.decodeHtml(questionNode.get("question").asText());
+                String correctAnswer = QuizGame.decodeHtml(questionNode.get("correct_answer").asText());
+                String difficulty = questionNode.get("difficulty").asText();
+
+                List<String> options = new ArrayList<>();
+                options.add(correctAnswer);
+
+                JsonNode incorrectAnswers = questionNode.get("incorrect_answers");
+                for (JsonNode incorrectAns : incorrectAnswers) {
+                    options.add(QuizGame.decodeHtml(incorrectAns.asText()));
+                }
+
+                Collections.shuffle(options);
+                questions.add(new QuizGame.Question(
+                    questionText,
+                    options,
+                    correctAnswer,
+                    difficulty,
+                    questionNode.get("category").asText()
+                ));
+            }
+
+            return questions;
+        }
+    }
+}
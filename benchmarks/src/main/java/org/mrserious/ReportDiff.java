@@ -0,0 +1,55 @@
+package org.mrserious;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Compares two JMH JSON reports, e.g. from two commits:
+ * {@code java -cp benchmarks.jar org.mrserious.ReportDiff before.json after.json}.
+ * Positive changes mean the second run has the higher score.
+ */
+public class ReportDiff {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: ReportDiff <before.json> <after.json>");
+            return;
+        }
+
+        Map<String, JsonNode> before = load(new File(args[0]));
+        Map<String, JsonNode> after = load(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s %s\n", "Benchmark", "Before", "After", "Change", "Unit");
+        for (Map.Entry<String, JsonNode> entry : after.entrySet()) {
+            JsonNode newMetric = entry.getValue().get("primaryMetric");
+            JsonNode oldRun = before.get(entry.getKey());
+            double newScore = newMetric.get("score").asDouble();
+
+            if (oldRun == null) {
+                System.out.printf("%-70s %14s %14.3f %9s %s\n", entry.getKey(), "-", newScore, "new",
+                    newMetric.get("scoreUnit").asText());
+                continue;
+            }
+
+            double oldScore = oldRun.get("primaryMetric").get("score").asDouble();
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s\n", entry.getKey(), oldScore, newScore,
+                (newScore - oldScore) * 100.0 / oldScore, newMetric.get("scoreUnit").asText());
+        }
+    }
+
+    private static Map<String, JsonNode> load(File report) throws Exception {
+        Map<String, JsonNode> runs = new TreeMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(report)) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText()
+                .replace("org.mrserious.", ""));
+            JsonNode params = run.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(p -> key.append(' ').append(p.getKey()).append('=').append(p.getValue().asText()));
+            }
+            runs.put(key.toString(), run);
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,138 @@
+package org.mrserious;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many sessions recording answers and final scores at once: {@link Scoreboard} against a
+ * board behind one lock. {@link #main} runs it at 1 to 64 threads and prints the
+ * throughput of each; a plain JMH run uses whatever {@code -t} says.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ScoreboardBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final String[] CATEGORIES = {"Science & Nature", "History", "Geography", "Sports", "Art",
+        "Music", "Film", "Mathematics", "Computers", "Mythology"};
+
+    private QuizGame.Question[] questions;
+    private Scoreboard scoreboard;
+    private LockedScoreboard lockedScoreboard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        questions = new QuizGame.Question[1000];
+        for (int i = 0; i < questions.length; i++) {
+            questions[i] = new QuizGame.Question("Question number " + i + "?", List.of("A", "B", "C", "D"), "A",
+                "medium", CATEGORIES[i % CATEGORIES.length]);
+        }
+        scoreboard = new Scoreboard(10);
+        lockedScoreboard = new LockedScoreboard(10);
+    }
+
+    @Benchmark
+    public void recordAnswer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        scoreboard.recordAnswer(questions[random.nextInt(questions.length)], random.nextBoolean());
+    }
+
+    @Benchmark
+    public void recordFinish() {
+        scoreboard.recordFinish("player", ThreadLocalRandom.current().nextInt(21), 20);
+    }
+
+    @Benchmark
+    public List<Scoreboard.Score> readTop() {
+        return scoreboard.top();
+    }
+
+    @Benchmark
+    public void lockedRecordAnswer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        lockedScoreboard.recordAnswer(questions[random.nextInt(questions.length)], random.nextBoolean());
+    }
+
+    @Benchmark
+    public void lockedRecordFinish() {
+        lockedScoreboard.recordFinish("player", ThreadLocalRandom.current().nextInt(21), 20);
+    }
+
+    @Benchmark
+    public List<Scoreboard.Score> lockedReadTop() {
+        return lockedScoreboard.top();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Map<Integer, Double>> results = new TreeMap<>();
+        for (int threads : THREADS) {
+            Collection<RunResult> runs = new Runner(new OptionsBuilder()
+                .include(ScoreboardBenchmark.class.getSimpleName() + (args.length > 0 ? "." + args[0] : ""))
+                .threads(threads)
+                .build()).run();
+            for (RunResult run : runs) {
+                String name = run.getParams().getBenchmark();
+                results.computeIfAbsent(name.substring(name.lastIndexOf('.') + 1), key -> new TreeMap<>())
+                    .put(threads, run.getPrimaryResult().getScore());
+            }
+        }
+
+        System.out.printf("%n%-20s", "ops/us by threads");
+        for (int threads : THREADS) {
+            System.out.printf("%10d", threads);
+        }
+        System.out.println();
+        results.forEach((name, byThreads) -> {
+            System.out.printf("%-20s", name);
+            byThreads.values().forEach(score -> System.out.printf("%10.2f", score));
+            System.out.println();
+        });
+    }
+
+    /**
+     * The straightforward board: maps and a sorted set behind one monitor.
+     */
+    static final class LockedScoreboard {
+        private final int topSize;
+        private final Map<String, long[]> byQuestion = new HashMap<>();
+        private final Map<String, long[]> byCategory = new HashMap<>();
+        private final TreeSet<Scoreboard.Score> top = new TreeSet<>(
+            Comparator.comparingInt(Scoreboard.Score::score).reversed().thenComparingLong(Scoreboard.Score::sequence));
+        private long sequence;
+
+        LockedScoreboard(int topSize) {
+            this.topSize = topSize;
+        }
+
+        synchronized void recordAnswer(QuizGame.Question question, boolean correct) {
+            long[] perQuestion = byQuestion.computeIfAbsent(question.text(), key -> new long[2]);
+            long[] perCategory = byCategory.computeIfAbsent(question.category(), key -> new long[2]);
+            perQuestion[0]++;
+            perCategory[0]++;
+            if (correct) {
+                perQuestion[1]++;
+                perCategory[1]++;
+            }
+        }
+
+        synchronized void recordFinish(String player, int score, int total) {
+            top.add(new Scoreboard.Score(player, score, total, sequence++));
+            if (top.size() > topSize) {
+                top.pollLast();
+            }
+        }
+
+        synchronized List<Scoreboard.Score> top() {
+            return new ArrayList<>(top);
+        }
+    }
+}
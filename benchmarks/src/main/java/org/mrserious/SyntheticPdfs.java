@@ -0,0 +1,147 @@
+package org.mrserious;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Generates question-bank PDFs with PDFBox for the benchmarks. Content is derived from a
+ * fixed seed, so every run and every commit parses exactly the same documents.
+ */
+public final class SyntheticPdfs {
+    public enum Layout {
+        // A short quiz handout
+        SMALL(2, 5, 4),
+        // A long exam compilation, past the streaming threshold
+        HUGE(300, 6, 4),
+        // Dense pages of short questions
+        MANY_QUESTIONS(40, 12, 4),
+        // Few questions, each with many long options
+        OPTION_HEAVY(20, 3, 8);
+
+        final int pages;
+        final int questionsPerPage;
+        final int optionsPerQuestion;
+
+        Layout(int pages, int questionsPerPage, int optionsPerQuestion) {
+            this.pages = pages;
+            this.questionsPerPage = questionsPerPage;
+            this.optionsPerQuestion = optionsPerQuestion;
+        }
+    }
+
+    private static final String[] TOPICS = {
+        "photosynthesis", "the French Revolution", "binary search", "cell division", "supply and demand",
+        "Newton's second law", "the Krebs cycle", "TCP congestion control", "plate tectonics", "Boolean algebra"
+    };
+
+    private static final String[] STEMS = {
+        "What is the main purpose of %s?",
+        "Which statement best describes %s?",
+        "Identify the key idea behind %s.",
+        "Why is %s important in this course?",
+        "How would you explain %s to a first-year student?"
+    };
+
+    private SyntheticPdfs() {}
+
+    /**
+     * Returns the lines of each page for a layout, cycling through the question and
+     * option formats the extractor understands.
+     */
+    public static List<List<String>> pages(Layout layout) {
+        Random random = new Random(42);
+        List<List<String>> pages = new ArrayList<>();
+        int number = 1;
+
+        for (int p = 0; p < layout.pages; p++) {
+            List<String> lines = new ArrayList<>();
+            for (int q = 0; q < layout.questionsPerPage; q++, number++) {
+                String topic = TOPICS[random.nextInt(TOPICS.length)];
+                String stem = String.format(STEMS[random.nextInt(STEMS.length)], topic);
+
+                lines.add(switch (number % 3) {
+                    case 0 -> number + ". " + stem;
+                    case 1 -> "Q" + number + ". " + stem;
+                    default -> "Question " + number + ": " + stem;
+                });
+
+                int correct = random.nextInt(layout.optionsPerQuestion);
+                for (int o = 0; o < layout.optionsPerQuestion; o++) {
+                    String text = optionText(random, topic, o, layout == Layout.OPTION_HEAVY);
+                    lines.add(switch (number % 4) {
+                        case 0 -> (char) ('A' + o % 4) + ". " + text;
+                        case 1 -> (char) ('a' + o % 4) + ") " + text;
+                        case 2 -> "(" + (char) ('A' + o % 4) + ") " + text;
+                        default -> "• " + text + (o == correct ? " (correct)" : "");
+                    });
+                }
+
+                if (number % 2 == 0) {
+                    lines.add("Answer: " + (char) ('A' + correct % 4));
+                }
+                lines.add("");
+            }
+            pages.add(lines);
+        }
+
+        return pages;
+    }
+
+    /**
+     * Writes the layout to {@code target} and returns it.
+     */
+    public static Path write(Layout layout, Path target) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+
+            for (List<String> lines : pages(layout)) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 7);
+                    content.setLeading(8);
+                    content.newLineAtOffset(40, 760);
+                    for (String line : lines) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+
+            document.save(target.toFile());
+        }
+
+        return target;
+    }
+
+    /**
+     * The same content as plain text, normalised the way the extractor does it.
+     */
+    public static String text(Layout layout) {
+        StringBuilder text = new StringBuilder();
+        for (List<String> lines : pages(layout)) {
+            for (String line : lines) {
+                text.append(line).append('\n');
+            }
+        }
+        return PDFQuestionExtractor.normalizeText(text.toString());
+    }
+
+    private static String optionText(Random random, String topic, int index, boolean verbose) {
+        String base = "Option " + (index + 1) + " about " + topic;
+        if (!verbose) {
+            return base;
+        }
+        return base + ", with " + (random.nextInt(900) + 100) + " extra words of context";
+    }
+}
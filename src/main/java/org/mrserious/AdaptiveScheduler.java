@@ -0,0 +1,455 @@
+package org.mrserious;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Picks each player's next question from what they answered before, in place of a fixed
+ * difficulty and a shuffled list.
+ * <ul>
+ * <li>Every question a player has seen is a card in a spaced-repetition schedule: a right
+ * answer pushes it further out (a day, then the interval times its ease), a wrong one
+ * brings it back in ten minutes and makes it less easy, as in SM-2. Cards sit in a
+ * min-heap by due time, so the most overdue one is always on top.</li>
+ * <li>When nothing is due, a new question is chosen. Players have a rating per category
+ * and questions an estimated difficulty, both in logits and both updated after every
+ * answer like Elo ratings. Of a few dozen random unseen questions, the one the player is
+ * closest to having a 70% chance at is served.</li>
+ * </ul>
+ * Choosing costs a heap peek and a fixed number of candidate lookups, whatever the
+ * number of players or answers. Each player's state is locked on its own, so players
+ * never wait for each other; question estimates are shared, and concurrent updates to
+ * one of them may overwrite each other, which an estimate can afford.
+ *
+ * <p>Answers are written to an {@link AnswerLog} and replayed on start. Questions are
+ * keyed in the log by a hash of their text, so progress survives re-extraction or a move
+ * to a pack; answers to questions no longer in the bank are skipped.
+ */
+final class AdaptiveScheduler implements Closeable {
+    private static final Logger logger = Logger.getLogger(AdaptiveScheduler.class.getName());
+
+    static final Path DEFAULT_LOG = Paths.get(System.getProperty("collepuz.adaptive.log",
+        Paths.get(System.getProperty("user.home"), ".collepuz", "answers.log").toString()));
+
+    // Chance of a right answer that new questions aim for
+    private static final double TARGET = 0.7;
+    private static final int CANDIDATES = 24;
+    // How far one surprising answer moves a rating, in logits
+    private static final double PLAYER_RATE = 0.3;
+    private static final double QUESTION_RATE = 0.05;
+
+    private static final long RELEARN_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    private static final long FIRST_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    private static final float START_EASE = 2.5f;
+    private static final float MIN_EASE = 1.3f;
+
+    private final QuestionStore store;
+    // Text hash of each question by bank id, and the same sorted for lookups from the log
+    private final long[] keys;
+    private final long[] sortedKeys;
+    private final int[] idsBySortedKey;
+    // Estimated difficulty by bank id, in logits
+    private final float[] ratings;
+    private final int categories;
+    private final LongSupplier clock;
+    private final Map<String, PlayerState> players = new ConcurrentHashMap<>();
+    private final LongAdder answers = new LongAdder();
+    private AnswerLog log;
+
+    /**
+     * A scheduler that keeps everything in memory, on the wall clock.
+     */
+    AdaptiveScheduler(QuestionBank bank) {
+        this(bank, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock millisecond time source, replaceable in tests and simulations
+     */
+    AdaptiveScheduler(QuestionBank bank, LongSupplier clock) {
+        this.store = bank.store();
+        this.clock = clock;
+        this.categories = store.categoryNames().size();
+
+        int size = store.size();
+        keys = new long[size];
+        ratings = new float[size];
+        for (int id = 0; id < size; id++) {
+            keys[id] = questionKey(store.text(id));
+            ratings[id] = switch (store.difficulty(id).toLowerCase(Locale.ROOT)) {
+                case "easy" -> -1;
+                case "hard" -> 1;
+                default -> 0;
+            };
+        }
+
+        // Sorted keys, each with the id it belongs to; equal texts share a key, so each
+        // id takes the first free position among its equals
+        sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        idsBySortedKey = new int[size];
+        Arrays.fill(idsBySortedKey, -1);
+        for (int id = 0; id < size; id++) {
+            int position = Arrays.binarySearch(sortedKeys, keys[id]);
+            while (position > 0 && sortedKeys[position - 1] == keys[id]) {
+                position--;
+            }
+            while (idsBySortedKey[position] >= 0) {
+                position++;
+            }
+            idsBySortedKey[position] = id;
+        }
+    }
+
+    /**
+     * A scheduler that replays {@code logFile} and records every new answer in it.
+     */
+    static AdaptiveScheduler open(QuestionBank bank, Path logFile) throws IOException {
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(bank);
+        scheduler.log = AnswerLog.open(logFile, scheduler::replay);
+        return scheduler;
+    }
+
+    /**
+     * Bank id of the question {@code player} should answer next, or -1 when the bank is empty.
+     */
+    int next(String player) {
+        if (keys.length == 0) {
+            return -1;
+        }
+
+        PlayerState state = state(player);
+        synchronized (state) {
+            if (state.cards > 0 && state.due[state.heap[0]] <= clock.getAsLong()) {
+                return state.cardId[state.heap[0]];
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int i = 0; i < CANDIDATES; i++) {
+                int id = random.nextInt(keys.length);
+                if (state.slot(id) >= 0) {
+                    continue;
+                }
+                double distance = Math.abs(expected(state, id) - TARGET);
+                if (distance < bestDistance) {
+                    best = id;
+                    bestDistance = distance;
+                }
+            }
+            if (best >= 0) {
+                return best;
+            }
+
+            // The player has seen nearly everything: review what comes due first
+            return state.cards > 0 ? state.cardId[state.heap[0]] : random.nextInt(keys.length);
+        }
+    }
+
+    /**
+     * Records that {@code player} answered question {@code id}, updating their schedule and
+     * ratings and appending to the log. A failed write is reported and the answer still
+     * counts for this run.
+     */
+    void record(String player, int id, boolean correct) {
+        long time = clock.getAsLong();
+        PlayerState state = state(player);
+        synchronized (state) {
+            apply(state, id, time, correct);
+            if (log != null) {
+                try {
+                    log.append(player, keys[id], time, correct);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "⚠️ Could not write to answer log " + log.file(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Chance that {@code player} answers question {@code id} right, by the current ratings.
+     */
+    double expected(String player, int id) {
+        PlayerState state = state(player);
+        synchronized (state) {
+            return expected(state, id);
+        }
+    }
+
+    /**
+     * Questions {@code player} has a schedule for.
+     */
+    int seen(String player) {
+        PlayerState state = players.get(player);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.cards;
+        }
+    }
+
+    int playerCount() {
+        return players.size();
+    }
+
+    /**
+     * Answers recorded or replayed since the scheduler was created.
+     */
+    long answers() {
+        return answers.sum();
+    }
+
+    /**
+     * An endless quiz for {@code player}, see {@link Quiz}.
+     */
+    Quiz quiz(String player) {
+        return new Quiz(player);
+    }
+
+    /**
+     * Serves {@code player} one scheduled question after another; {@link #recording} wraps
+     * whoever answers them, so their answers feed back into the schedule.
+     */
+    final class Quiz implements Iterator<QuizGame.Question> {
+        private final String player;
+        private int current = -1;
+
+        private Quiz(String player) {
+            this.player = player;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return keys.length > 0;
+        }
+
+        @Override
+        public QuizGame.Question next() {
+            current = AdaptiveScheduler.this.next(player);
+            if (current < 0) {
+                throw new NoSuchElementException();
+            }
+            return store.get(current);
+        }
+
+        QuizPlayer recording(QuizPlayer answering) {
+            return new QuizPlayer() {
+                @Override
+                public int choose(QuizSession session) {
+                    return answering.choose(session);
+                }
+
+                @Override
+                public void answered(QuizSession session, int choice, boolean correct) {
+                    record(player, current, correct);
+                    answering.answered(session, choice, correct);
+                }
+            };
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a of the lower-cased text, the key of a question in the log.
+     */
+    static long questionKey(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ Character.toLowerCase(text.charAt(i))) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private void replay(String player, long questionKey, long time, boolean correct) {
+        int index = Arrays.binarySearch(sortedKeys, questionKey);
+        if (index >= 0) {
+            apply(state(player), idsBySortedKey[index], time, correct);
+        }
+    }
+
+    private void apply(PlayerState state, int id, long time, boolean correct) {
+        answers.increment();
+
+        int category = store.categoryCode(id);
+        double surprise = (correct ? 1 : 0) - expected(state, id);
+        // Read first: until the first answer in a category its rating is the overall one
+        double categoryAbility = state.ability(category);
+        state.ability += PLAYER_RATE * surprise;
+        state.setCategoryAbility(category, categories, categoryAbility + PLAYER_RATE * surprise);
+        ratings[id] -= (float) (QUESTION_RATE * surprise);
+
+        int slot = state.slot(id);
+        if (slot < 0) {
+            slot = state.add(id);
+        }
+        if (correct) {
+            long interval = state.interval[slot];
+            state.interval[slot] = interval == 0 ? FIRST_INTERVAL : (long) (interval * state.ease[slot]);
+        } else {
+            state.interval[slot] = RELEARN_INTERVAL;
+            state.ease[slot] = Math.max(MIN_EASE, state.ease[slot] - 0.2f);
+        }
+        state.reschedule(slot, time + state.interval[slot]);
+    }
+
+    private double expected(PlayerState state, int id) {
+        return 1 / (1 + Math.exp(ratings[id] - state.ability(store.categoryCode(id))));
+    }
+
+    private PlayerState state(String player) {
+        return players.computeIfAbsent(player, name -> new PlayerState());
+    }
+
+    /**
+     * One player's ratings and cards. Cards are parallel arrays indexed by slot, found by
+     * bank id through an open-addressing table, and ordered by due time in a heap of slots.
+     */
+    private static final class PlayerState {
+        double ability;
+        // By category code; NaN until the player has answered in the category
+        double[] categoryAbility;
+
+        int cards;
+        int[] cardId = new int[8];
+        long[] due = new long[8];
+        long[] interval = new long[8];
+        float[] ease = new float[8];
+        int[] heap = new int[8];
+        int[] heapIndex = new int[8];
+        // Bank id -> slot + 1, 0 when free
+        int[] table = new int[16];
+
+        double ability(int category) {
+            double rating = categoryAbility != null ? categoryAbility[category] : Double.NaN;
+            return Double.isNaN(rating) ? ability : rating;
+        }
+
+        void setCategoryAbility(int category, int categories, double rating) {
+            if (categoryAbility == null) {
+                categoryAbility = new double[categories];
+                Arrays.fill(categoryAbility, Double.NaN);
+            }
+            categoryAbility[category] = rating;
+        }
+
+        int slot(int id) {
+            int mask = table.length - 1;
+            for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (cardId[entry - 1] == id) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        /**
+         * Adds a card for {@code id}, due now, and returns its slot.
+         */
+        int add(int id) {
+            if (cards == cardId.length) {
+                int capacity = cards * 2;
+                cardId = Arrays.copyOf(cardId, capacity);
+                due = Arrays.copyOf(due, capacity);
+                interval = Arrays.copyOf(interval, capacity);
+                ease = Arrays.copyOf(ease, capacity);
+                heap = Arrays.copyOf(heap, capacity);
+                heapIndex = Arrays.copyOf(heapIndex, capacity);
+            }
+            int slot = cards++;
+            cardId[slot] = id;
+            ease[slot] = START_EASE;
+
+            // At most half full, so probes stay short
+            if (cards * 2 > table.length) {
+                table = new int[table.length * 2];
+                for (int s = 0; s < cards; s++) {
+                    insert(s);
+                }
+            } else {
+                insert(slot);
+            }
+
+            heap[slot] = slot;
+            heapIndex[slot] = slot;
+            siftUp(slot);
+            return slot;
+        }
+
+        void reschedule(int slot, long time) {
+            due[slot] = time;
+            siftUp(heapIndex[slot]);
+            siftDown(heapIndex[slot]);
+        }
+
+        private void insert(int slot) {
+            int mask = table.length - 1;
+            int i = hash(cardId[slot]) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = slot + 1;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (due[heap[position]] >= due[heap[parent]]) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= cards) {
+                    return;
+                }
+                if (child + 1 < cards && due[heap[child + 1]] < due[heap[child]]) {
+                    child++;
+                }
+                if (due[heap[position]] <= due[heap[child]]) {
+                    return;
+                }
+                swap(position, child);
+                position = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int slot = heap[a];
+            heap[a] = heap[b];
+            heap[b] = slot;
+            heapIndex[heap[a]] = a;
+            heapIndex[heap[b]] = b;
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
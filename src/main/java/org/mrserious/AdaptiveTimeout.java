@@ -0,0 +1,55 @@
+package org.mrserious;
+
+import java.time.Duration;
+
+/**
+ * Request timeout that follows the latency seen so far, the way TCP sets its
+ * retransmission timeout: a smoothed mean plus four smoothed deviations, kept between
+ * {@code min} and {@code max}. Until the first answer has arrived a request gets
+ * {@code max}, and every timeout doubles the estimate.
+ */
+final class AdaptiveTimeout {
+    private final long minNanos;
+    private final long maxNanos;
+
+    // Smoothed latency and deviation, 0 until the first success
+    private double smoothedNanos;
+    private double deviationNanos;
+
+    AdaptiveTimeout(Duration min, Duration max) {
+        this.minNanos = min.toNanos();
+        this.maxNanos = Math.max(minNanos, max.toNanos());
+    }
+
+    /**
+     * Timeout for the next request.
+     */
+    synchronized Duration next() {
+        if (smoothedNanos == 0) {
+            return Duration.ofNanos(maxNanos);
+        }
+        long nanos = (long) (smoothedNanos + 4 * deviationNanos);
+        return Duration.ofNanos(Math.clamp(nanos, minNanos, maxNanos));
+    }
+
+    /**
+     * Records how long a successful request took.
+     */
+    synchronized void observe(long nanos) {
+        // RFC 6298 gains: 1/8 for the mean, 1/4 for the deviation
+        if (smoothedNanos == 0) {
+            smoothedNanos = nanos;
+            deviationNanos = nanos / 2.0;
+        } else {
+            deviationNanos += (Math.abs(smoothedNanos - nanos) - deviationNanos) / 4;
+            smoothedNanos += (nanos - smoothedNanos) / 8;
+        }
+    }
+
+    /**
+     * Records a timeout, which says nothing about the real latency except that it is higher.
+     */
+    synchronized void backOff() {
+        smoothedNanos = Math.min(maxNanos, smoothedNanos * 2);
+    }
+}
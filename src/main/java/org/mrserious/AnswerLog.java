@@ -0,0 +1,159 @@
+package org.mrserious;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only record of every answer given in adaptive quizzes, from which
+ * {@link AdaptiveScheduler} rebuilds its state on start. Records are never rewritten: a
+ * player's name is written once and numbered, and each answer after that is a fixed 22
+ * bytes. Every answer is flushed as it is appended, so a crash loses at most the one
+ * being written, and a torn record at the end is cut off when the log is next opened.
+ */
+final class AnswerLog implements Closeable {
+    private static final int MAGIC = 0x43505a4c; // "CPZL"
+    private static final int VERSION = 1;
+
+    private static final byte PLAYER = 'P';
+    private static final byte ANSWER = 'A';
+
+    /**
+     * Receives the answers already in the log, in the order they were given.
+     */
+    @FunctionalInterface
+    interface Replay {
+        void answer(String player, long questionKey, long time, boolean correct);
+    }
+
+    private final Path file;
+    private final DataOutputStream out;
+    private final Map<String, Integer> playerIds;
+
+    private AnswerLog(Path file, DataOutputStream out, Map<String, Integer> playerIds) {
+        this.file = file;
+        this.out = out;
+        this.playerIds = playerIds;
+    }
+
+    /**
+     * Opens {@code file} for appending, creating it if needed, after handing every
+     * answer in it to {@code replay}.
+     */
+    static AnswerLog open(Path file, Replay replay) throws IOException {
+        Map<String, Integer> playerIds = new HashMap<>();
+        long valid = 0;
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+
+        if (exists) {
+            List<String> players = new ArrayList<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not an answer log: " + file);
+                }
+                valid = 2 * Integer.BYTES;
+
+                while (true) {
+                    int type = in.read();
+                    if (type == -1) {
+                        break;
+                    }
+                    if (type == PLAYER) {
+                        int id = in.readInt();
+                        String name = readString(in);
+                        if (id != players.size()) {
+                            throw new IOException("Answer log " + file + " numbers players out of order");
+                        }
+                        players.add(name);
+                        playerIds.put(name, id);
+                        valid += 1 + Integer.BYTES + Integer.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+                    } else if (type == ANSWER) {
+                        int player = in.readInt();
+                        long questionKey = in.readLong();
+                        long time = in.readLong();
+                        boolean correct = in.readBoolean();
+                        if (player < 0 || player >= players.size()) {
+                            throw new IOException("Answer log " + file + " refers to unknown player " + player);
+                        }
+                        replay.answer(players.get(player), questionKey, time, correct);
+                        valid += 1 + Integer.BYTES + 2 * Long.BYTES + 1;
+                    } else {
+                        throw new IOException("Answer log " + file + " is corrupt after byte " + valid);
+                    }
+                }
+            } catch (EOFException e) {
+                // A record cut short by a crash; everything before it stands
+                System.out.printf("⚠️ Dropping a torn record at the end of %s\n", file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+                // Even the header was torn: start over
+                exists = valid > 0;
+            }
+        } else {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        if (!exists) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+        return new AnswerLog(file, out, playerIds);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    synchronized void append(String player, long questionKey, long time, boolean correct) throws IOException {
+        Integer id = playerIds.get(player);
+        if (id == null) {
+            id = playerIds.size();
+            out.writeByte(PLAYER);
+            out.writeInt(id);
+            writeString(out, player);
+            playerIds.put(player, id);
+        }
+
+        out.writeByte(ANSWER);
+        out.writeInt(id);
+        out.writeLong(questionKey);
+        out.writeLong(time);
+        out.writeBoolean(correct);
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length");
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package org.mrserious;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling a provider that keeps failing. After {@code failureThreshold} failures
+ * in a row the breaker opens and every call is refused at once for {@code openDuration}.
+ * Then a single trial call is let through: if it succeeds the breaker closes, otherwise
+ * it opens for another {@code openDuration}.
+ */
+final class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Reported instead of calling a provider whose breaker is open. When a retry finds the
+     * breaker open, the failure that was being retried is the cause.
+     */
+    static final class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        OpenException(String name, Throwable earlier) {
+            super(name + " is failing, not called until it has had time to recover", earlier);
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond time source, replaceable in tests
+     */
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a call may go ahead. Every permitted call must be followed by
+     * {@link #onSuccess} or {@link #onFailure}.
+     */
+    synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case HALF_OPEN -> false; // the trial call is still out
+            case OPEN -> {
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                yield true;
+            }
+        };
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
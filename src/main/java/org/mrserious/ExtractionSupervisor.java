@@ -0,0 +1,481 @@
+package org.mrserious;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+import org.apache.pdfbox.io.ScratchFile;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Runs PDF extractions so that one bad file cannot stall or sink a folder. Each PDF gets
+ * its own worker thread, at most {@code parallelism} at a time, and a watchdog looks at
+ * them every {@value #CHECK_MILLIS} ms:
+ *
+ * <ul>
+ *   <li>a file still going after the timeout is cancelled;
+ *   <li>when the heap left after the last collection drops below the memory budget, the
+ *       file that has allocated most is cancelled, one per collection, so the others
+ *       can finish. What a file has allocated says little about what it holds, so it is
+ *       not blamed for that: it is retried on its own once every other file is done, and
+ *       only left out of this run if it still runs short then.
+ * </ul>
+ *
+ * <p>A cancelled file gives up its slot at once, and the next PDF starts while its
+ * worker unwinds: reading the file and processing content streams both pass
+ * {@link PDFQuestionExtractor.Checkpoint}s, which throw once the file is cancelled. PDFBox
+ * keeps at most the memory budget of each document's decoded streams on the heap and
+ * spills the rest to temp files. A file whose worker throws OutOfMemoryError is treated
+ * like one cancelled for memory. Files that time out, cannot be parsed, crash the parser
+ * or run out of memory with the heap to themselves are recorded in the {@link Quarantine}
+ * and skipped until they change. Errors of the cache or the file system around the
+ * extraction are passed on as they are and not recorded.
+ */
+final class ExtractionSupervisor implements AutoCloseable {
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(Long.getLong("collepuz.pdf.timeoutSeconds", 120));
+    static final long DEFAULT_MEMORY_BUDGET = Long.getLong("collepuz.pdf.memoryBudgetMB", 256) << 20;
+
+    private static final long CHECK_MILLIS = 100;
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    /**
+     * Why a PDF was left out; the message says what happened.
+     */
+    static final class Failure extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final Quarantine.Reason reason;
+        private final boolean quarantined;
+        private final boolean earlier;
+
+        Failure(Quarantine.Reason reason, String detail, boolean quarantined, boolean earlier) {
+            super(detail);
+            this.reason = reason;
+            this.quarantined = quarantined;
+            this.earlier = earlier;
+        }
+
+        Quarantine.Reason reason() {
+            return reason;
+        }
+
+        /**
+         * Whether the file is in the quarantine, and so skipped until it changes; otherwise
+         * it is only left out of this run.
+         */
+        boolean quarantined() {
+            return quarantined;
+        }
+
+        /**
+         * Whether the file was skipped because an earlier run quarantined it.
+         */
+        boolean earlier() {
+            return earlier;
+        }
+
+        @Override
+        public String toString() {
+            return reason + ": " + getMessage();
+        }
+    }
+
+    /**
+     * Turns one PDF into questions, passing the checkpoint as it goes and buffering decoded
+     * streams in the scratch space.
+     */
+    @FunctionalInterface
+    interface Extraction {
+        List<QuizGame.Question> extract(Path pdfFile, PDFQuestionExtractor.Checkpoint checkpoint,
+                                        StreamCacheCreateFunction scratch) throws IOException;
+    }
+
+    private final int parallelism;
+    private final Duration timeout;
+    private final long memoryBudget;
+    private final Quarantine quarantine;
+    private final Extraction extraction;
+    private final Path scratchDir;
+    private final StreamCacheCreateFunction scratch;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("pdf-watchdog").daemon().factory());
+
+    // Guarded by this
+    private final Deque<Task<?>> queue = new ArrayDeque<>();
+    // Cancelled for memory, to be retried one at a time once nothing else is left
+    private final Deque<Task<?>> deferred = new ArrayDeque<>();
+    private final List<Task<?>> running = new ArrayList<>();
+    private int workers;
+    private boolean closed;
+
+    // Only touched by the watchdog
+    private long collectionsAtMemoryCancel = -1;
+
+    ExtractionSupervisor(int parallelism, Quarantine quarantine) throws IOException {
+        this(parallelism, DEFAULT_TIMEOUT, DEFAULT_MEMORY_BUDGET, quarantine);
+    }
+
+    ExtractionSupervisor(int parallelism, Duration timeout, long memoryBudget, Quarantine quarantine) throws IOException {
+        this(parallelism, timeout, memoryBudget, quarantine,
+            (pdfFile, checkpoint, scratch) -> PDFQuestionExtractor.extractFromSinglePDF(pdfFile.toFile(), checkpoint, scratch));
+    }
+
+    ExtractionSupervisor(int parallelism, Duration timeout, long memoryBudget, Quarantine quarantine,
+                         Extraction extraction) throws IOException {
+        this.parallelism = Math.max(1, parallelism);
+        this.timeout = timeout;
+        this.memoryBudget = memoryBudget;
+        this.quarantine = quarantine;
+        this.extraction = extraction;
+        this.scratchDir = Files.createTempDirectory("collepuz-pdf-scratch");
+        this.scratch = () -> new ScratchFile(MemoryUsageSetting.setupMixed(memoryBudget).setTempDir(scratchDir.toFile()));
+        watchdog.scheduleWithFixedDelay(this::inspect, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Extracts {@code pdfFile}, through {@code cache} unless it is {@code null}, and
+     * applies {@code perFile} to its questions on the same worker. The future fails with a
+     * {@link Failure} when the file is left out, now or because an earlier run quarantined it.
+     */
+    <T> CompletableFuture<T> submit(Path pdfFile, QuestionCache cache, Function<List<QuizGame.Question>, T> perFile) {
+        Quarantine.Entry known = quarantine.get(pdfFile);
+        if (known != null) {
+            return CompletableFuture.failedFuture(new Failure(known.reason(), known.detail(), true, true));
+        }
+
+        Task<T> task = new Task<>(pdfFile, cache, perFile, new CompletableFuture<>(), false);
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Extraction supervisor is closed");
+            }
+            queue.add(task);
+            startQueued();
+        }
+        return task.result;
+    }
+
+    /**
+     * Where failed files are recorded.
+     */
+    Quarantine quarantine() {
+        return quarantine;
+    }
+
+    /**
+     * Cancels whatever is still queued or running, without quarantining it, and removes
+     * the scratch files.
+     */
+    @Override
+    public void close() {
+        List<Task<?>> abandoned;
+        synchronized (this) {
+            closed = true;
+            abandoned = new ArrayList<>(queue);
+            abandoned.addAll(deferred);
+            abandoned.addAll(running);
+            queue.clear();
+            deferred.clear();
+            running.clear();
+        }
+        watchdog.shutdownNow();
+        for (Task<?> task : abandoned) {
+            task.cancelled = true;
+            if (task.thread != null) {
+                task.thread.interrupt();
+            }
+            task.result.cancel(false);
+        }
+
+        try (Stream<Path> files = Files.walk(scratchDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            // A worker still unwinding may hold a scratch file; the OS cleans up temp
+        }
+    }
+
+    // Called with the lock held
+    private void startQueued() {
+        while (running.size() < parallelism && !queue.isEmpty()) {
+            start(queue.poll());
+        }
+        // A file cancelled for memory gets the heap to itself
+        if (running.isEmpty() && !deferred.isEmpty()) {
+            start(deferred.poll());
+        }
+    }
+
+    // Called with the lock held
+    private void start(Task<?> task) {
+        running.add(task);
+        // Platform threads: the JVM cannot count what a virtual thread allocates
+        task.thread = Thread.ofPlatform().name("pdf-extract-" + workers++).daemon().unstarted(task::run);
+        task.started = System.nanoTime();
+        task.thread.start();
+    }
+
+    /**
+     * Takes {@code task} out of the running set and starts the next one; {@code false}
+     * when it was already taken out, i.e. cancelled.
+     */
+    private synchronized boolean release(Task<?> task) {
+        if (!running.remove(task)) {
+            return false;
+        }
+        if (!closed) {
+            startQueued();
+        }
+        return true;
+    }
+
+    private void fail(Task<?> task, Quarantine.Reason reason, String detail) {
+        // A file that vanished or could not be stamped is not worth remembering
+        if (task.size >= 0) {
+            quarantine.add(task.pdfFile, task.size, task.modified, reason, detail);
+            Metrics.PDFS_QUARANTINED.increment();
+        }
+        task.result.completeExceptionally(new Failure(reason, detail, task.size >= 0, false));
+    }
+
+    private void cancel(Task<?> task, Quarantine.Reason reason, String detail) {
+        task.cancelled = true;
+        if (release(task)) {
+            task.thread.interrupt();
+            fail(task, reason, detail);
+        }
+    }
+
+    /**
+     * Cancels {@code task} to free heap, and queues it to run again on its own, or leaves
+     * it out of this run, without quarantining it, if it already had the heap to itself.
+     */
+    private void cancelForMemory(Task<?> task, String detail) {
+        task.cancelled = true;
+        synchronized (this) {
+            if (!running.remove(task)) {
+                return;
+            }
+            if (!task.alone && !closed) {
+                deferred.add(task.retryAlone());
+            }
+            if (!closed) {
+                startQueued();
+            }
+        }
+        task.thread.interrupt();
+        if (task.alone) {
+            task.result.completeExceptionally(new Failure(Quarantine.Reason.MEMORY,
+                detail + ", even with the heap to itself", false, false));
+        }
+    }
+
+    private void inspect() {
+        List<Task<?>> snapshot;
+        synchronized (this) {
+            if (running.isEmpty()) {
+                return;
+            }
+            snapshot = List.copyOf(running);
+        }
+
+        long now = System.nanoTime();
+        for (Task<?> task : snapshot) {
+            if (now - task.started > timeout.toNanos()) {
+                cancel(task, Quarantine.Reason.TIMEOUT, "still extracting after " + timeout.toSeconds() + " s");
+            }
+        }
+
+        // Never hold back more than a quarter of the heap, or a small heap would cancel everything
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        long headroom = maxHeap - retainedHeap();
+        if (headroom >= Math.min(memoryBudget, maxHeap / 4)) {
+            return;
+        }
+        // Until the next collection the numbers still include what the last cancelled file held
+        long collections = collectionCount();
+        if (collections == collectionsAtMemoryCancel) {
+            return;
+        }
+
+        // Where the JVM cannot count allocations every file reads -1 and the first one goes
+        Task<?> heaviest = null;
+        long most = Long.MIN_VALUE;
+        for (Task<?> task : snapshot) {
+            long allocated = task.allocated();
+            if (!task.cancelled && allocated > most) {
+                heaviest = task;
+                most = allocated;
+            }
+        }
+        if (heaviest != null) {
+            collectionsAtMemoryCancel = collections;
+            cancelForMemory(heaviest, String.format(
+                "only %d MB of heap left while it had allocated %d MB", headroom >> 20, Math.max(0, most) >> 20));
+        }
+    }
+
+    /**
+     * Heap still in use after the most recent collection of each pool, i.e. live data
+     * rather than garbage not yet collected.
+     */
+    private static long retainedHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Something that went wrong inside the extraction of one file, as opposed to in the
+     * cache or the file system around it. Only these get a file quarantined.
+     */
+    private static final class ExtractionError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final Quarantine.Reason reason;
+
+        ExtractionError(Quarantine.Reason reason, Throwable cause) {
+            super(cause);
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * One PDF, from the queue to its result. Its worker passes checkpoints through it.
+     */
+    private final class Task<T> implements PDFQuestionExtractor.Checkpoint {
+        final Path pdfFile;
+        final QuestionCache cache;
+        final Function<List<QuizGame.Question>, T> perFile;
+        final CompletableFuture<T> result;
+        // A retry after a cancellation for memory, with nothing else running
+        final boolean alone;
+        // As the file was before extraction, or -1 when it could not be read
+        final long size;
+        final long modified;
+
+        // Set under the supervisor lock before the worker starts
+        Thread thread;
+        long started;
+        volatile long allocatedAtStart = -1;
+        volatile boolean cancelled;
+
+        Task(Path pdfFile, QuestionCache cache, Function<List<QuizGame.Question>, T> perFile,
+             CompletableFuture<T> result, boolean alone) {
+            this.pdfFile = pdfFile;
+            this.cache = cache;
+            this.perFile = perFile;
+            this.result = result;
+            this.alone = alone;
+            long size;
+            long modified;
+            try {
+                size = Files.size(pdfFile);
+                modified = Files.getLastModifiedTime(pdfFile).toMillis();
+            } catch (IOException e) {
+                size = -1;
+                modified = -1;
+            }
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public void check() throws IOException {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Extraction of " + pdfFile.getFileName() + " was cancelled");
+            }
+        }
+
+        Task<T> retryAlone() {
+            return new Task<>(pdfFile, cache, perFile, result, true);
+        }
+
+        long allocated() {
+            long start = allocatedAtStart;
+            long now = THREADS != null && start >= 0 ? THREADS.getThreadAllocatedBytes(thread.threadId()) : -1;
+            return now >= 0 ? now - start : -1;
+        }
+
+        void run() {
+            allocatedAtStart = THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+            try {
+                List<QuizGame.Question> questions = cache == null ? extract(pdfFile) : cache.getOrExtract(pdfFile, this::extract);
+                T value = perFile.apply(questions);
+                if (release(this)) {
+                    result.complete(value);
+                }
+            } catch (ExtractionError e) {
+                failed(e.reason, e.getCause());
+            } catch (Throwable e) {
+                // The cache, the file system or perFile rather than the PDF: passed on, not recorded
+                if (release(this)) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        private List<QuizGame.Question> extract(Path file) {
+            try {
+                return extraction.extract(file, this, scratch);
+            } catch (IOException e) {
+                throw new ExtractionError(Quarantine.Reason.CORRUPT, e);
+            } catch (OutOfMemoryError e) {
+                throw new ExtractionError(Quarantine.Reason.MEMORY, e);
+            } catch (RuntimeException | StackOverflowError e) {
+                throw new ExtractionError(Quarantine.Reason.CRASH, e);
+            }
+        }
+
+        private void failed(Quarantine.Reason reason, Throwable cause) {
+            if (reason == Quarantine.Reason.MEMORY && !alone) {
+                // The heap is shared, so the error hits whichever worker allocates when it runs
+                // out; the file is only to blame once it has had the heap to itself
+                cancelForMemory(this, "ran out of memory alongside other PDFs");
+                return;
+            }
+            // Once cancelled the watchdog has already decided what happens to the file
+            if (!release(this)) {
+                return;
+            }
+            if (cause instanceof NoSuchFileException || cause instanceof FileNotFoundException) {
+                // Deleted since it was listed
+                result.completeExceptionally(cause);
+                return;
+            }
+            // A parse error explains itself; for a crash the exception type is the useful part
+            fail(this, reason, reason == Quarantine.Reason.CRASH || cause.getMessage() == null
+                ? cause.toString() : cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package org.mrserious;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * One-pass decoder for HTML character references, following the HTML5 rules for text
+ * content. It covers the full named reference table from {@code html-entities.txt},
+ * including the legacy names that may omit the {@code ;}, as well as decimal and hex
+ * numeric references. Names are matched longest-first against a trie kept in a few
+ * flat arrays.
+ */
+final class HtmlEntities {
+    // What numeric references to the C1 controls 0x80-0x9F stand for (their Windows-1252 characters)
+    private static final String C1_REPLACEMENTS =
+        "€\u0081‚ƒ„…†‡ˆ‰Š‹Œ\u008DŽ\u008F"
+        + "\u0090‘’“”•–—˜™š›œ\u009DžŸ";
+
+    // Trie over the names in breadth-first order: node n is reached by LABELS[n], its children
+    // are the nodes FIRST_CHILD[n] up to FIRST_CHILD[n + 1] (sorted by label), and VALUES[n]
+    // is the expansion of the name ending at n, if any. Node 0 is the root.
+    private static final char[] LABELS;
+    private static final int[] FIRST_CHILD;
+    private static final String[] VALUES;
+    // Children of the root by ASCII label, the one level wide enough to be worth a table
+    private static final int[] ROOT_CHILD = new int[128];
+
+    static {
+        SortedMap<String, String> entities = loadEntities();
+        String[] names = entities.keySet().toArray(String[]::new);
+
+        int capacity = 1;
+        for (String name : names) {
+            capacity += name.length();
+        }
+
+        char[] labels = new char[capacity];
+        int[] firstChild = new int[capacity + 1];
+        String[] values = new String[capacity];
+
+        // Each node covers the names [from, to) that share its prefix of length depth
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        int[] depth = new int[capacity];
+        to[0] = names.length;
+
+        int count = 1;
+        for (int node = 0; node < count; node++) {
+            firstChild[node] = count;
+            int first = from[node];
+            int prefix = depth[node];
+
+            // The name equal to the prefix sorts first
+            if (first < to[node] && names[first].length() == prefix) {
+                values[node] = entities.get(names[first]);
+                first++;
+            }
+
+            while (first < to[node]) {
+                char label = names[first].charAt(prefix);
+                int last = first;
+                while (last < to[node] && names[last].charAt(prefix) == label) {
+                    last++;
+                }
+
+                labels[count] = label;
+                from[count] = first;
+                to[count] = last;
+                depth[count] = prefix + 1;
+                count++;
+                first = last;
+            }
+        }
+        firstChild[count] = count;
+
+        LABELS = Arrays.copyOf(labels, count);
+        FIRST_CHILD = Arrays.copyOf(firstChild, count + 1);
+        VALUES = Arrays.copyOf(values, count);
+
+        Arrays.fill(ROOT_CHILD, -1);
+        for (int node = FIRST_CHILD[0]; node < FIRST_CHILD[1]; node++) {
+            ROOT_CHILD[LABELS[node]] = node;
+        }
+    }
+
+    private HtmlEntities() {}
+
+    /**
+     * Decodes every character reference in {@code text}. Returns {@code text} itself when
+     * it contains none, without allocating.
+     */
+    static String decode(String text) {
+        int ampersand = text.indexOf('&');
+        if (ampersand < 0) {
+            return text;
+        }
+
+        // Every reference is longer than what it expands to, so decoding works in place
+        char[] chars = text.toCharArray();
+        int length = decode(chars, 0, chars.length, ampersand, chars, 0);
+        return length == chars.length ? text : new String(chars, 0, length);
+    }
+
+    /**
+     * Decodes a region of a character buffer, e.g. a JSON parser's, without copying it first.
+     */
+    static String decode(char[] chars, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (chars[i] == '&') {
+                char[] decoded = new char[length];
+                return new String(decoded, 0, decode(chars, offset, end, i, decoded, 0));
+            }
+        }
+        return new String(chars, offset, length);
+    }
+
+    /**
+     * Decodes {@code in[start, end)}, whose first '&' is at {@code ampersand}, into
+     * {@code out} and returns the decoded length. {@code out} may be {@code in} itself,
+     * since the output never overtakes the input.
+     */
+    private static int decode(char[] in, int start, int end, int ampersand, char[] out, int outStart) {
+        int write = outStart + (ampersand - start);
+        System.arraycopy(in, start, out, outStart, ampersand - start);
+        int read = ampersand;
+
+        while (read < end) {
+            // in[read] is an '&'
+            boolean numeric = read + 1 < end && in[read + 1] == '#';
+            long match = numeric ? matchNumeric(in, read + 2, end) : matchNamed(in, read + 1, end);
+
+            int next;
+            if (match < 0) {
+                out[write++] = '&';
+                next = read + 1;
+            } else {
+                if (numeric) {
+                    write += Character.toChars((int) match, out, write);
+                } else {
+                    String value = VALUES[(int) match];
+                    value.getChars(0, value.length(), out, write);
+                    write += value.length();
+                }
+                next = (int) (match >>> 32);
+            }
+
+            read = next;
+            while (read < end && in[read] != '&') {
+                read++;
+            }
+            System.arraycopy(in, next, out, write, read - next);
+            write += read - next;
+        }
+
+        return write - outStart;
+    }
+
+    /**
+     * Matches the digits of {@code &#123;} or {@code &#x7B;} (the ';' is optional) starting
+     * after the '#'. Returns the end offset in the high half and the code point in the low
+     * half, or -1 when no digits follow.
+     */
+    private static long matchNumeric(char[] text, int position, int end) {
+        boolean hex = position < end && (text[position] == 'x' || text[position] == 'X');
+        int radix = hex ? 16 : 10;
+        int digitsStart = hex ? position + 1 : position;
+
+        int value = 0;
+        position = digitsStart;
+        while (position < end) {
+            int digit = digitValue(text[position], radix);
+            if (digit < 0) {
+                break;
+            }
+            // Anything past U+10FFFF is invalid anyway, so stop growing there
+            value = Math.min(value * radix + digit, 0x110000);
+            position++;
+        }
+
+        if (position == digitsStart) {
+            return -1;
+        }
+        if (position < end && text[position] == ';') {
+            position++;
+        }
+
+        return (long) position << 32 | toCodePoint(value);
+    }
+
+    /**
+     * Finds the longest entity name starting at {@code position}. Returns the end offset
+     * in the high half and the trie node in the low half, or -1 if no name matches.
+     */
+    private static long matchNamed(char[] text, int position, int end) {
+        int node = 0;
+        long match = -1;
+
+        while (position < end) {
+            node = child(node, text[position]);
+            if (node < 0) {
+                break;
+            }
+            position++;
+            if (VALUES[node] != null) {
+                match = (long) position << 32 | node;
+            }
+        }
+
+        return match;
+    }
+
+    private static int child(int node, char label) {
+        if (node == 0) {
+            return label < 128 ? ROOT_CHILD[label] : -1;
+        }
+
+        int low = FIRST_CHILD[node];
+        int high = FIRST_CHILD[node + 1] - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char candidate = LABELS[middle];
+            if (candidate < label) {
+                low = middle + 1;
+            } else if (candidate > label) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int toCodePoint(int value) {
+        if (value == 0 || value > 0x10FFFF || (value >= 0xD800 && value <= 0xDFFF)) {
+            return 0xFFFD;
+        }
+        if (value >= 0x80 && value <= 0x9F) {
+            return C1_REPLACEMENTS.charAt(value - 0x80);
+        }
+        return value;
+    }
+
+    private static int digitValue(char c, int radix) {
+        // ASCII digits only; Character.digit would also accept other scripts
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (radix == 16 && c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (radix == 16 && c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static SortedMap<String, String> loadEntities() {
+        SortedMap<String, String> entities = new TreeMap<>();
+
+        InputStream in = HtmlEntities.class.getResourceAsStream("html-entities.txt");
+        if (in == null) {
+            throw new IllegalStateException("html-entities.txt is missing from the classpath");
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(" ");
+                StringBuilder value = new StringBuilder(2);
+                for (int i = 1; i < fields.length; i++) {
+                    value.appendCodePoint(Integer.parseInt(fields[i], 16));
+                }
+                entities.put(fields[0], value.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return entities;
+    }
+}
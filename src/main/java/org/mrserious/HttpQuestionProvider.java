@@ -0,0 +1,149 @@
+package org.mrserious;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * A question API reached over HTTP. The response body is decoded as it streams in. The
+ * deadline for a whole exchange is an {@link AdaptiveTimeout}, so a provider that usually
+ * answers in 300 ms is given up on after a second or two instead of the full {@code maxTimeout}.
+ */
+final class HttpQuestionProvider implements QuestionProvider {
+    @FunctionalInterface
+    interface ResponseParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    // Decoding blocks on the body stream, so it runs on threads of its own rather than the
+    // client's or the common pool's
+    private static final ExecutorService DECODERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final String name;
+    private final HttpClient httpClient;
+    private final BiFunction<Integer, String, HttpRequest> request;
+    private final ResponseParser<List<QuizGame.Question>> parser;
+    private final AdaptiveTimeout timeout;
+    private final Metrics.Stage stage;
+
+    /**
+     * @param request builds the request for a batch size and difficulty ("" for any)
+     */
+    HttpQuestionProvider(String name, HttpClient httpClient, BiFunction<Integer, String, HttpRequest> request,
+                         ResponseParser<List<QuizGame.Question>> parser, Duration minTimeout, Duration maxTimeout) {
+        this.name = name;
+        this.httpClient = httpClient;
+        this.request = request;
+        this.parser = parser;
+        this.timeout = new AdaptiveTimeout(minTimeout, maxTimeout);
+        this.stage = Metrics.stage("http." + name);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public CompletableFuture<List<QuizGame.Question>> fetch(BatchRequest batch) {
+        return send(httpClient, request.apply(batch.amount(), batch.difficulty()), name, parser, timeout, stage);
+    }
+
+    /**
+     * Sends {@code request} and parses the body of a 200 response with {@code parser}. The
+     * next {@code timeout} bounds the whole exchange, body included: a server that sends
+     * its headers and then trickles the body is cut off like one that never answers. The
+     * latency goes to {@code stage} and feeds the timeout, a failure is counted, and a
+     * request that runs out of time backs the timeout off.
+     */
+    static <T> CompletableFuture<T> send(HttpClient httpClient, HttpRequest request, String name,
+                                         ResponseParser<T> parser, AdaptiveTimeout timeout, Metrics.Stage stage) {
+        Duration limit = timeout.next();
+        HttpRequest timed = HttpRequest.newBuilder(request, (header, value) -> true).timeout(limit).build();
+        long started = System.nanoTime();
+        Decoding decoding = new Decoding();
+
+        CompletableFuture<HttpResponse<InputStream>> sent = httpClient.sendAsync(timed, HttpResponse.BodyHandlers.ofInputStream());
+        return sent
+            .thenApplyAsync(response -> {
+                try (InputStream body = response.body()) {
+                    decoding.start(body);
+                    if (response.statusCode() != 200) {
+                        throw new IOException(name + " request failed with status: " + response.statusCode());
+                    }
+                    T result = parser.parse(body);
+                    timeout.observe(System.nanoTime() - started);
+                    return result;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    decoding.finish();
+                }
+            }, DECODERS)
+            // The request timeout above only covers the wait for the headers
+            .orTimeout(limit.toNanos(), TimeUnit.NANOSECONDS)
+            .whenComplete((result, error) -> {
+                stage.record(System.nanoTime() - started);
+                if (error != null) {
+                    Metrics.HTTP_FAILURES.increment();
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        sent.cancel(true);
+                        decoding.expire();
+                    }
+                    if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+                        timeout.backOff();
+                    }
+                }
+            });
+    }
+
+    /**
+     * The body stream of one response and the thread decoding it. Closing the stream does
+     * not wake a read already waiting for data, so when the deadline passes the decoder
+     * is interrupted as well; it runs on a thread of its own, so nothing else is hit.
+     */
+    private static final class Decoding {
+        private InputStream body;
+        private Thread thread;
+        private boolean expired;
+
+        synchronized void start(InputStream body) throws HttpTimeoutException {
+            if (expired) {
+                throw new HttpTimeoutException("Response arrived after the deadline");
+            }
+            this.body = body;
+            this.thread = Thread.currentThread();
+        }
+
+        synchronized void finish() {
+            body = null;
+            thread = null;
+        }
+
+        synchronized void expire() {
+            expired = true;
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    body.close();
+                } catch (IOException e) {
+                    // Already broken, which is all that is wanted
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package org.mrserious;
+
+/**
+ * Regex-free classification and clean-up of extracted lines for the heuristic pass of
+ * {@link PDFQuestionExtractor}. Every check dispatches on the first significant character
+ * and scans the line at most once, without lower-casing or compiling anything. The rules
+ * are the ones the old {@code String.matches}/{@code replaceAll} chains implemented,
+ * including their corner cases (e.g. question keywords only count in single-line text).
+ */
+final class LineClassifier {
+    /**
+     * How a line introduces an option, as recognised by {@link #classifyOption}.
+     */
+    enum OptionMarker {
+        LETTER,            // a. / B)
+        PARENTHESIZED,     // (c)
+        BULLET,            // • · ▪ ▫
+        DASH,              // - text
+        NUMBER             // 1. / 2)
+    }
+
+    private static final String[] QUESTION_WORDS = {
+        "what", "which", "who", "when", "where", "why", "how",
+        "identify", "choose", "select", "determine"
+    };
+
+    private LineClassifier() {}
+
+    static boolean isLikelyQuestion(String text) {
+        if (text.indexOf('?') >= 0) {
+            return true;
+        }
+
+        int length = text.length();
+        if (!hasLineTerminator(text, 0, length) && containsQuestionWord(text)) {
+            return true;
+        }
+
+        // "1. ..." or "Q1 ..." where the rest of the text stays on one line
+        int start = skipRegexSpace(text, 0, length);
+        int digitsEnd = skipDigits(text, start, length);
+        if (digitsEnd > start && digitsEnd < length && text.charAt(digitsEnd) == '.'
+            && !hasLineTerminator(text, digitsEnd + 1, length)) {
+            return true;
+        }
+
+        if (start < length && (text.charAt(start) == 'q' || text.charAt(start) == 'Q')) {
+            int numberStart = skipRegexSpace(text, start + 1, length);
+            int numberEnd = skipDigits(text, numberStart, length);
+            return numberEnd > numberStart && !hasLineTerminator(text, numberEnd, length);
+        }
+
+        return false;
+    }
+
+    static boolean isLikelyOption(String line) {
+        return classifyOption(line) != null;
+    }
+
+    /**
+     * Returns the option marker the trimmed line starts with, or {@code null} if the
+     * line does not look like an option.
+     */
+    static OptionMarker classifyOption(String line) {
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int start = 0;
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        char first = line.charAt(start);
+        char second = start + 1 < end ? line.charAt(start + 1) : '\0';
+
+        if (isOptionLabel(first) && (second == '.' || second == ')')) {
+            return hasLineTerminator(line, start + 2, end) ? null : OptionMarker.LETTER;
+        }
+        if (first == '(' && isOptionLabel(second) && start + 2 < end && line.charAt(start + 2) == ')') {
+            return hasLineTerminator(line, start + 3, end) ? null : OptionMarker.PARENTHESIZED;
+        }
+        if (first == '•' || first == '·' || first == '▪' || first == '▫') {
+            int content = skipRegexSpace(line, start + 1, end);
+            return hasLineTerminator(line, content, end) ? null : OptionMarker.BULLET;
+        }
+        if (first == '-' && isRegexSpace(second)) {
+            int content = skipRegexSpace(line, start + 1, end);
+            return hasLineTerminator(line, content, end) ? null : OptionMarker.DASH;
+        }
+
+        int digitsEnd = skipDigits(line, start, end);
+        if (digitsEnd > start && digitsEnd + 1 < end
+            && (line.charAt(digitsEnd) == '.' || line.charAt(digitsEnd) == ')')
+            && isRegexSpace(line.charAt(digitsEnd + 1))) {
+            int content = skipRegexSpace(line, digitsEnd + 1, end);
+            return hasLineTerminator(line, content, end) ? null : OptionMarker.NUMBER;
+        }
+
+        return null;
+    }
+
+    static boolean isMarkedAsCorrect(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '*' || c == '✓' || c == '✔' || c == '√') {
+                return true;
+            }
+            if ((c == 'c' || c == 'C') && line.regionMatches(true, i, "correct", 0, 7)) {
+                return true;
+            }
+            if ((c == 'a' || c == 'A') && line.regionMatches(true, i, "answer", 0, 6)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Strips a leading "1.", "Q1." or "Question 1" and collapses whitespace.
+     */
+    static String cleanQuestionText(String text) {
+        int length = text.length();
+        int start = 0;
+
+        int position = skipRegexSpace(text, start, length);
+        int digitsEnd = skipDigits(text, position, length);
+        if (digitsEnd > position) {
+            start = skipRegexSpace(text, skipChar(text, digitsEnd, length, '.'), length);
+        }
+
+        position = skipRegexSpace(text, start, length);
+        if (position < length && text.charAt(position) == 'Q') {
+            int numberStart = skipRegexSpace(text, skipChar(text, position + 1, length, '.'), length);
+            digitsEnd = skipDigits(text, numberStart, length);
+            if (digitsEnd > numberStart) {
+                start = skipRegexSpace(text, skipChar(text, digitsEnd, length, '.'), length);
+            }
+        }
+
+        position = skipRegexSpace(text, start, length);
+        if (text.startsWith("Question", position)) {
+            int numberStart = skipRegexSpace(text, position + 8, length);
+            digitsEnd = skipDigits(text, numberStart, length);
+            if (numberStart > position + 8 && digitsEnd > numberStart) {
+                start = skipRegexSpace(text, skipChar(text, digitsEnd, length, '.'), length);
+            }
+        }
+
+        return collapseWhitespace(text, start, length);
+    }
+
+    /**
+     * Strips option markers, correctness marks and "(correct)"/"[correct]" tags and
+     * collapses whitespace.
+     */
+    static String cleanOptionText(String text) {
+        int length = text.length();
+        int start = 0;
+
+        int position = skipRegexSpace(text, start, length);
+        if (position + 1 < length && isOptionLabel(text.charAt(position))
+            && (text.charAt(position + 1) == '.' || text.charAt(position + 1) == ')')) {
+            start = skipRegexSpace(text, position + 2, length);
+        }
+
+        position = skipRegexSpace(text, start, length);
+        if (position + 2 < length && text.charAt(position) == '('
+            && isOptionLabel(text.charAt(position + 1)) && text.charAt(position + 2) == ')') {
+            start = skipRegexSpace(text, position + 3, length);
+        }
+
+        position = skipRegexSpace(text, start, length);
+        if (position < length && "•·▪▫-".indexOf(text.charAt(position)) >= 0) {
+            start = skipRegexSpace(text, position + 1, length);
+        }
+
+        position = skipRegexSpace(text, start, length);
+        int digitsEnd = skipDigits(text, position, length);
+        if (digitsEnd > position && digitsEnd < length
+            && (text.charAt(digitsEnd) == '.' || text.charAt(digitsEnd) == ')')) {
+            start = skipRegexSpace(text, digitsEnd + 1, length);
+        }
+
+        boolean hasMarks = false;
+        for (int i = start; i < length && !hasMarks; i++) {
+            char c = text.charAt(i);
+            hasMarks = c == '*' || c == '✓' || c == '✔' || c == '√' || c == '(' || c == '[';
+        }
+        if (!hasMarks) {
+            return collapseWhitespace(text, start, length);
+        }
+
+        // Same order as before: marks first, so "(corr*ect)" still counts as a tag
+        char[] buffer = text.substring(start).toCharArray();
+        int size = 0;
+        for (char c : buffer) {
+            if (c != '*' && c != '✓' && c != '✔' && c != '√') {
+                buffer[size++] = c;
+            }
+        }
+        size = removeTag(buffer, size, "(correct)");
+        size = removeTag(buffer, size, "[correct]");
+
+        return collapseWhitespace(new String(buffer, 0, size), 0, size);
+    }
+
+    /**
+     * Removes every {@code tag} together with the whitespace around it, in place.
+     */
+    private static int removeTag(char[] buffer, int size, String tag) {
+        int write = 0;
+        int read = 0;
+
+        while (read < size) {
+            int tagStart = read;
+            while (tagStart < size && isRegexSpace(buffer[tagStart])) {
+                tagStart++;
+            }
+
+            if (startsWith(buffer, size, tagStart, tag)) {
+                read = tagStart + tag.length();
+                while (read < size && isRegexSpace(buffer[read])) {
+                    read++;
+                }
+            } else {
+                buffer[write++] = buffer[read++];
+            }
+        }
+
+        return write;
+    }
+
+    /**
+     * Equivalent of {@code text.substring(start).replaceAll("\\s+", " ").trim()}, which
+     * only allocates when something actually changes.
+     */
+    private static String collapseWhitespace(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        boolean collapse = false;
+        for (int i = start; i < end && !collapse; i++) {
+            char c = text.charAt(i);
+            collapse = isRegexSpace(c) && (c != ' ' || isRegexSpace(text.charAt(i + 1)));
+        }
+        if (!collapse) {
+            return start == 0 && end == text.length() ? text : text.substring(start, end);
+        }
+
+        StringBuilder result = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!isRegexSpace(c)) {
+                result.append(c);
+            } else if (!isRegexSpace(text.charAt(i - 1))) {
+                result.append(' ');
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean containsQuestionWord(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (!isAsciiLetter(text.charAt(i)) || (i > 0 && isWordChar(text.charAt(i - 1)))) {
+                continue;
+            }
+
+            for (String word : QUESTION_WORDS) {
+                int end = i + word.length();
+                if (text.regionMatches(true, i, word, 0, word.length())
+                    && (end == length || !isWordChar(text.charAt(end)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLineTerminator(String text, int start, int end) {
+        // Characters the regex '.' does not match
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(char[] buffer, int size, int offset, String prefix) {
+        if (offset + prefix.length() > size) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipChar(String text, int position, int end, char c) {
+        return position < end && text.charAt(position) == c ? position + 1 : position;
+    }
+
+    private static int skipDigits(String text, int position, int end) {
+        while (position < end && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipRegexSpace(String text, int position, int end) {
+        while (position < end && isRegexSpace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isRegexSpace(char c) {
+        // \s without UNICODE_CHARACTER_CLASS
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isWordChar(char c) {
+        // \w / \b without UNICODE_CHARACTER_CLASS
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isOptionLabel(char c) {
+        return (c >= 'A' && c <= 'D') || (c >= 'a' && c <= 'd');
+    }
+}
@@ -0,0 +1,313 @@
+package org.mrserious;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Timings, allocation and counts for the stages of extraction and play, enabled with
+ * {@code -Dcollepuz.metrics=true}. Every stage keeps a {@link LatencyHistogram} and the
+ * bytes its thread allocated inside it, and every stage and counter is an MXBean under
+ * {@code org.mrserious:type=Metrics}. A report goes to {@code collepuz.metrics.file} as
+ * JSON, or to stderr as text, on exit and every {@code collepuz.metrics.intervalSeconds}.
+ * When disabled, {@link Stage#time} hands out a shared no-op timer and counters return at
+ * once, and since the switch is a constant the JIT drops both checks.
+ */
+final class Metrics {
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    static final boolean ENABLED = Boolean.getBoolean("collepuz.metrics");
+    private static final long INTERVAL_SECONDS = Long.getLong("collepuz.metrics.intervalSeconds", 0);
+    private static final String REPORT_FILE = System.getProperty("collepuz.metrics.file");
+
+    private static final long STARTED = System.nanoTime();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    private static final Map<String, Stage> STAGES = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    static final Stage PDF_LOAD = stage("pdf.load");
+    static final Stage PDF_TEXT = stage("pdf.text");
+    static final Stage PATTERN_PASS = stage("pdf.patterns");
+    static final Stage HEURISTIC_PASS = stage("pdf.heuristics");
+    static final Stage NEAR_DUPLICATES = stage("pdf.nearDuplicates");
+    static final Stage CACHE_LOAD = stage("cache.load");
+    static final Stage CACHE_SAVE = stage("cache.save");
+    static final Stage PACK_OPEN = stage("pack.open");
+    static final Stage QUIZ_ANSWER = stage("quiz.answer");
+    static final Stage SERVER_ANSWER = stage("server.answer");
+
+    static final Counter PATTERN_QUESTIONS = counter("pdf.patterns.questions");
+    static final Counter HEURISTIC_QUESTIONS = counter("pdf.heuristics.questions");
+    static final Counter PAGES = counter("pdf.pages");
+    static final Counter PDFS_QUARANTINED = counter("pdf.quarantined");
+    static final Counter HTTP_FAILURES = counter("http.failures");
+    static final Counter ONLINE_CACHE_HITS = counter("online.cacheHits");
+    static final Counter ONLINE_RETRIES = counter("online.retries");
+    static final Counter ONLINE_SHORT_CIRCUITS = counter("online.shortCircuits");
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Metrics::report, "metrics-report"));
+            if (INTERVAL_SECONDS > 0) {
+                ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("metrics-report").daemon().factory());
+                scheduler.scheduleAtFixedRate(Metrics::report, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private Metrics() {}
+
+    static Stage stage(String name) {
+        return STAGES.computeIfAbsent(name, Stage::new);
+    }
+
+    static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    public interface StageMXBean {
+        long getCount();
+
+        double getMeanMicros();
+
+        long getP50Micros();
+
+        long getP99Micros();
+
+        long getMaxMicros();
+
+        long getAllocatedBytes();
+    }
+
+    public interface CounterMXBean {
+        long getValue();
+    }
+
+    static final class Stage implements StageMXBean {
+        private final String name;
+        private final LatencyHistogram latency;
+        private final LongAdder allocatedBytes;
+
+        private Stage(String name) {
+            this.name = name;
+            this.latency = ENABLED ? new LatencyHistogram() : null;
+            this.allocatedBytes = ENABLED ? new LongAdder() : null;
+            register(name, this);
+        }
+
+        /**
+         * Starts timing; close the timer on the same thread to also count allocation.
+         */
+        Timer time() {
+            return ENABLED ? new Timer(this, System.nanoTime(), allocatedByThisThread()) : Timer.NOOP;
+        }
+
+        /**
+         * Records a duration measured elsewhere, e.g. across threads.
+         */
+        void record(long nanos) {
+            if (ENABLED) {
+                latency.record(nanos);
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return ENABLED ? latency.count() : 0;
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return ENABLED ? latency.mean() / 1000 : 0;
+        }
+
+        @Override
+        public long getP50Micros() {
+            return ENABLED ? latency.percentile(0.50) / 1000 : 0;
+        }
+
+        @Override
+        public long getP99Micros() {
+            return ENABLED ? latency.percentile(0.99) / 1000 : 0;
+        }
+
+        @Override
+        public long getMaxMicros() {
+            return ENABLED ? latency.max() / 1000 : 0;
+        }
+
+        @Override
+        public long getAllocatedBytes() {
+            return ENABLED ? allocatedBytes.sum() : 0;
+        }
+    }
+
+    static final class Timer implements AutoCloseable {
+        private static final Timer NOOP = new Timer(null, 0, -1);
+
+        private final Stage stage;
+        private final long started;
+        private final long allocatedBefore;
+
+        private Timer(Stage stage, long started, long allocatedBefore) {
+            this.stage = stage;
+            this.started = started;
+            this.allocatedBefore = allocatedBefore;
+        }
+
+        @Override
+        public void close() {
+            if (stage == null) {
+                return;
+            }
+            stage.latency.record(System.nanoTime() - started);
+
+            long allocatedAfter = allocatedByThisThread();
+            if (allocatedBefore >= 0 && allocatedAfter >= allocatedBefore) {
+                stage.allocatedBytes.add(allocatedAfter - allocatedBefore);
+            }
+        }
+    }
+
+    static final class Counter implements CounterMXBean {
+        private final LongAdder value;
+
+        private Counter(String name) {
+            this.value = ENABLED ? new LongAdder() : null;
+            register(name, this);
+        }
+
+        void add(long amount) {
+            if (ENABLED) {
+                value.add(amount);
+            }
+        }
+
+        void increment() {
+            add(1);
+        }
+
+        @Override
+        public long getValue() {
+            return ENABLED ? value.sum() : 0;
+        }
+    }
+
+    /**
+     * Writes the current report to the configured file, or to stderr.
+     */
+    static void report() {
+        try {
+            if (REPORT_FILE != null) {
+                Path file = Paths.get(REPORT_FILE);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.writeString(temp, json(), StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                System.err.print(text());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "⚠️ Could not write the metrics report", e);
+        }
+    }
+
+    static String text() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("\n📈 Metrics after %.1f s\n", (System.nanoTime() - STARTED) / 1e9));
+        out.append(String.format("%-22s %8s %10s %10s %10s %10s %10s %10s\n",
+            "stage", "count", "total ms", "mean us", "p50 us", "p99 us", "max us", "alloc MB"));
+
+        for (Stage stage : new TreeMap<>(STAGES).values()) {
+            if (stage.getCount() == 0) {
+                continue;
+            }
+            out.append(String.format("%-22s %8d %10.1f %10.1f %10d %10d %10d %10.1f\n",
+                stage.name, stage.getCount(), stage.latency.sum() / 1e6, stage.getMeanMicros(),
+                stage.getP50Micros(), stage.getP99Micros(), stage.getMaxMicros(), stage.getAllocatedBytes() / 1e6));
+        }
+
+        new TreeMap<>(COUNTERS).forEach((name, counter) -> {
+            if (counter.getValue() != 0) {
+                out.append(String.format("%-22s %8d\n", name, counter.getValue()));
+            }
+        });
+        return out.toString();
+    }
+
+    static String json() {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = new JsonFactory().createGenerator(out)) {
+            json.useDefaultPrettyPrinter();
+            json.writeStartObject();
+            json.writeNumberField("uptimeMillis", (System.nanoTime() - STARTED) / 1_000_000);
+
+            json.writeObjectFieldStart("stages");
+            for (Stage stage : new TreeMap<>(STAGES).values()) {
+                json.writeObjectFieldStart(stage.name);
+                json.writeNumberField("count", stage.getCount());
+                json.writeNumberField("totalNanos", ENABLED ? stage.latency.sum() : 0);
+                json.writeNumberField("meanMicros", stage.getMeanMicros());
+                json.writeNumberField("p50Micros", stage.getP50Micros());
+                json.writeNumberField("p99Micros", stage.getP99Micros());
+                json.writeNumberField("maxMicros", stage.getMaxMicros());
+                json.writeNumberField("allocatedBytes", stage.getAllocatedBytes());
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+
+            json.writeObjectFieldStart("counters");
+            for (Map.Entry<String, Counter> counter : new TreeMap<>(COUNTERS).entrySet()) {
+                json.writeNumberField(counter.getKey(), counter.getValue().getValue());
+            }
+            json.writeEndObject();
+
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static void register(String name, Object bean) {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean,
+                new ObjectName("org.mrserious", new Hashtable<>(Map.of("type", "Metrics", "name", ObjectName.quote(name)))));
+        } catch (JMException e) {
+            logger.log(Level.FINE, "Could not register metric " + name, e);
+        }
+    }
+
+    private static long allocatedByThisThread() {
+        // -1 where the JVM cannot tell, e.g. for virtual threads
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ENABLED && ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,362 @@
+package org.mrserious;
+
+import java.util.*;
+
+/**
+ * Corpus-wide near-duplicate detection with MinHash and locality-sensitive hashing.
+ * Each question becomes a set of shingles: word pairs of its text, with leading
+ * numbering and punctuation dropped, plus one shingle per option so that option order
+ * does not matter. A MinHash signature is cut into bands, and questions sharing a band
+ * are candidates. Candidates are confirmed by the exact Jaccard similarity of the
+ * shingle sets, so the LSH step only affects speed and recall, never precision.
+ * Adding a question costs time proportional to its length, and the whole corpus is
+ * processed in roughly linear time.
+ */
+class NearDuplicateIndex {
+    private static final int ROWS = 4;
+    private static final int MAX_BANDS = 32;
+    // Verified candidates per band; only huge buckets of near-identical stems reach this
+    private static final int MAX_CANDIDATES_PER_BAND = 64;
+
+    private static final long OPTION_SALT = 0x6a09e667f3bcc909L;
+    private static final long QUESTION_WORD = tokenHash("question");
+
+    private final double threshold;
+    private final int bands;
+    private final long[] seeds;
+
+    // Shingle sets (sorted, distinct) of the questions kept so far
+    private long[][] shingles = new long[64][];
+    private int size;
+
+    // Per band: the band key of each kept question, the previous question with the same
+    // key, and an open-addressing table from key to the newest such question (index + 1)
+    private final int[][] keys;
+    private final int[][] previous;
+    private final int[][] slots;
+
+    private int[] checkedIn = new int[64];
+    private int stamp;
+
+    // Scratch space reused between calls
+    private long[] tokens = new long[32];
+    private boolean[] numbering = new boolean[32];
+    private long[] shingleBuffer = new long[64];
+    private final int[] signature;
+    private final int[] bandKeys;
+
+    /**
+     * @param threshold Jaccard similarity in (0, 1] from which two questions count as duplicates
+     */
+    NearDuplicateIndex(double threshold) {
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("Similarity threshold must be in (0, 1]: " + threshold);
+        }
+        this.threshold = threshold;
+
+        // Put the S-curve of the banding below the threshold, so pairs just above it are
+        // still very likely to meet in some band: P(candidate) = 1 - (1 - s^ROWS)^bands
+        double knee = Math.max(threshold - 0.15, 0.1);
+        this.bands = (int) Math.min(MAX_BANDS, Math.ceil(Math.pow(1 / knee, ROWS)));
+
+        this.seeds = new long[bands * ROWS];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            seeds[i] = seed;
+        }
+        this.signature = new int[seeds.length];
+        this.bandKeys = new int[bands];
+
+        this.keys = new int[bands][64];
+        this.previous = new int[bands][64];
+        this.slots = new int[bands][128];
+    }
+
+    /**
+     * Returns {@code questions} without the near-duplicates of earlier entries, keeping
+     * the first occurrence of each.
+     */
+    static List<QuizGame.Question> removeNearDuplicates(List<QuizGame.Question> questions, double threshold) {
+        NearDuplicateIndex index = new NearDuplicateIndex(threshold);
+        List<QuizGame.Question> unique = new ArrayList<>(questions.size());
+
+        for (QuizGame.Question question : questions) {
+            if (index.add(question)) {
+                unique.add(question);
+            }
+        }
+
+        return unique;
+    }
+
+    /**
+     * Adds {@code question} unless it is a near-duplicate of one already in the index.
+     * Returns whether it was added.
+     */
+    boolean add(QuizGame.Question question) {
+        long[] set = shingle(question);
+        if (set.length == 0) {
+            // Nothing to compare on, e.g. only punctuation; keep it rather than guess
+            return true;
+        }
+
+        computeSignature(set);
+        for (int band = 0; band < bands; band++) {
+            bandKeys[band] = bandKey(band);
+        }
+
+        stamp++;
+        for (int band = 0; band < bands; band++) {
+            int candidate = head(band, bandKeys[band]);
+            for (int checked = 0; candidate >= 0 && checked < MAX_CANDIDATES_PER_BAND; checked++) {
+                if (checkedIn[candidate] != stamp) {
+                    checkedIn[candidate] = stamp;
+                    if (isSimilar(set, shingles[candidate])) {
+                        return false;
+                    }
+                }
+                candidate = previous[band][candidate];
+            }
+        }
+
+        insert(set);
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Approximate heap held by the index, in bytes.
+     */
+    long footprintBytes() {
+        long bytes = 16L + 8L * shingles.length + 4L * checkedIn.length;
+        for (int i = 0; i < size; i++) {
+            bytes += 16 + 8L * shingles[i].length;
+        }
+        for (int band = 0; band < bands; band++) {
+            bytes += 48 + 4L * (keys[band].length + previous[band].length + slots[band].length);
+        }
+        return bytes;
+    }
+
+    private boolean isSimilar(long[] a, long[] b) {
+        int smaller = Math.min(a.length, b.length);
+        int larger = Math.max(a.length, b.length);
+        if (smaller < threshold * larger) {
+            return false; // even full overlap cannot reach the threshold
+        }
+
+        int intersection = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return intersection >= threshold * (a.length + b.length - intersection);
+    }
+
+    private void computeSignature(long[] set) {
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long shingle : set) {
+            for (int i = 0; i < signature.length; i++) {
+                int value = (int) mix(shingle ^ seeds[i]);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+    }
+
+    private int bandKey(int band) {
+        long key = band;
+        for (int row = 0; row < ROWS; row++) {
+            key = key * 0x100000001B3L + signature[band * ROWS + row];
+        }
+        return (int) mix(key);
+    }
+
+    private int head(int band, int key) {
+        int[] table = slots[band];
+        int mask = table.length - 1;
+        for (int slot = key & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int question = table[slot] - 1;
+            if (keys[band][question] == key) {
+                return question;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long[] set) {
+        if (size == shingles.length) {
+            int capacity = size * 2;
+            shingles = Arrays.copyOf(shingles, capacity);
+            checkedIn = Arrays.copyOf(checkedIn, capacity);
+            for (int band = 0; band < bands; band++) {
+                keys[band] = Arrays.copyOf(keys[band], capacity);
+                previous[band] = Arrays.copyOf(previous[band], capacity);
+            }
+        }
+
+        int question = size++;
+        shingles[question] = set;
+
+        for (int band = 0; band < bands; band++) {
+            keys[band][question] = bandKeys[band];
+            previous[band][question] = -1;
+
+            // Keep the table at most half full; rebuilding only needs the bucket heads
+            if (slots[band].length < 2 * size) {
+                int[] old = slots[band];
+                slots[band] = new int[old.length * 2];
+                for (int entry : old) {
+                    if (entry != 0) {
+                        place(band, entry - 1);
+                    }
+                }
+            }
+            place(band, question);
+        }
+    }
+
+    /**
+     * Makes {@code question} the head of its bucket in {@code band}.
+     */
+    private void place(int band, int question) {
+        int[] table = slots[band];
+        int mask = table.length - 1;
+        int key = keys[band][question];
+
+        int slot = key & mask;
+        while (table[slot] != 0 && keys[band][table[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] != 0 && table[slot] - 1 != question) {
+            previous[band][question] = table[slot] - 1;
+        }
+        table[slot] = question + 1;
+    }
+
+    /**
+     * Returns the sorted, distinct shingles of a question.
+     */
+    private long[] shingle(QuizGame.Question question) {
+        int count = 0;
+
+        int tokenCount = tokenize(question.text());
+        int first = 0;
+        while (first + 1 < tokenCount) {
+            // Leading "1", "Q1", "Question 1" numbering, as long as some text remains
+            if (numbering[first]) {
+                first++;
+            } else if (tokens[first] == QUESTION_WORD && first + 2 < tokenCount && numbering[first + 1]) {
+                first += 2;
+            } else {
+                break;
+            }
+        }
+
+        if (tokenCount - first == 1) {
+            shingleBuffer[count++] = mix(tokens[first]);
+        }
+        for (int i = first; i + 1 < tokenCount; i++) {
+            shingleBuffer = grow(shingleBuffer, count);
+            shingleBuffer[count++] = mix(tokens[i] * 0x9E3779B97F4A7C15L + tokens[i + 1]);
+        }
+
+        for (String option : question.options()) {
+            int optionTokens = tokenize(option);
+            if (optionTokens == 0) {
+                continue;
+            }
+
+            long hash = OPTION_SALT;
+            for (int i = 0; i < optionTokens; i++) {
+                hash = mix(hash * 0x100000001B3L + tokens[i]);
+            }
+            shingleBuffer = grow(shingleBuffer, count);
+            shingleBuffer[count++] = hash;
+        }
+
+        long[] set = Arrays.copyOf(shingleBuffer, count);
+        Arrays.sort(set);
+
+        int distinct = 0;
+        for (int i = 0; i < set.length; i++) {
+            if (i == 0 || set[i] != set[i - 1]) {
+                set[distinct++] = set[i];
+            }
+        }
+        return distinct == set.length ? set : Arrays.copyOf(set, distinct);
+    }
+
+    /**
+     * Splits {@code text} into lower-cased runs of letters and digits, storing their hashes
+     * in {@code tokens} and whether each looks like numbering ("12", "q3") in {@code numbering}.
+     */
+    private int tokenize(String text) {
+        int count = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length; ) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            long hash = 0xcbf29ce484222325L;
+            boolean digitsAfterFirst = true;
+            for (; i < length && Character.isLetterOrDigit(c = text.charAt(i)); i++) {
+                hash = (hash ^ Character.toLowerCase(c)) * 0x100000001B3L;
+                if (i > start && (c < '0' || c > '9')) {
+                    digitsAfterFirst = false;
+                }
+            }
+
+            char head = text.charAt(start);
+            boolean isNumbering = digitsAfterFirst
+                && ((head >= '0' && head <= '9') || ((head == 'q' || head == 'Q') && i - start > 1));
+
+            if (count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, count * 2);
+                numbering = Arrays.copyOf(numbering, count * 2);
+            }
+            tokens[count] = hash;
+            numbering[count] = isNumbering;
+            count++;
+        }
+
+        return count;
+    }
+
+    private static long tokenHash(String word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash = (hash ^ word.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long[] grow(long[] array, int count) {
+        return count < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static long mix(long z) {
+        // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,302 @@
+package org.mrserious;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The Open Trivia Database, asked with a session token so that no question comes back
+ * twice while the token lives, whichever quiz or pool fill asked for it. A token that
+ * expired or ran out of questions is replaced. OpenTDB answers response code 5 when one
+ * IP calls more than once every five seconds, so request starts are spaced at least
+ * {@code minInterval} apart, and further when OpenTDB still reports a rate limit.
+ *
+ * <p>{@link #fetch} serves one batch, for the online quiz. {@link #fill} collects a large
+ * pool: it keeps several requests in flight, spreads them over the wanted categories,
+ * asks for no more than the pool still lacks, and drops repeats as each batch arrives.
+ */
+final class OpenTDBClient implements QuestionProvider {
+    private static final Logger logger = Logger.getLogger(OpenTDBClient.class.getName());
+
+    // Most questions OpenTDB returns per request
+    static final int MAX_AMOUNT = 50;
+
+    // OpenTDB response codes
+    static final int SUCCESS = 0;
+    static final int NO_RESULTS = 1;
+    static final int INVALID_PARAMETER = 2;
+    static final int TOKEN_NOT_FOUND = 3;
+    static final int TOKEN_EMPTY = 4;
+    static final int RATE_LIMIT = 5;
+
+    // Failed requests in a row after which a fill stops asking a category
+    private static final int MAX_FAILURES = 3;
+
+    /**
+     * OpenTDB answered, but with a response code other than success.
+     */
+    static final class ResponseException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int responseCode;
+
+        ResponseException(int responseCode) {
+            super("OpenTDB answered with response code " + responseCode);
+            this.responseCode = responseCode;
+        }
+
+        int responseCode() {
+            return responseCode;
+        }
+    }
+
+    private record Batch(int responseCode, List<QuizGame.Question> questions) {}
+
+    private final HttpClient httpClient;
+    private final URI api;
+    private final long minIntervalNanos;
+    private final AdaptiveTimeout timeout;
+    private final Metrics.Stage stage = Metrics.stage("http.OpenTDB");
+
+    // Guarded by this
+    private CompletableFuture<String> token;
+    private long nextStart = System.nanoTime();
+
+    /**
+     * @param api the question endpoint, e.g. {@code https://opentdb.com/api.php}; the token
+     *            endpoint is {@code api_token.php} next to it
+     */
+    OpenTDBClient(HttpClient httpClient, URI api, Duration minInterval, Duration minTimeout, Duration maxTimeout) {
+        this.httpClient = httpClient;
+        this.api = api;
+        this.minIntervalNanos = minInterval.toNanos();
+        this.timeout = new AdaptiveTimeout(minTimeout, maxTimeout);
+    }
+
+    @Override
+    public String name() {
+        return "OpenTDB";
+    }
+
+    @Override
+    public CompletableFuture<List<QuizGame.Question>> fetch(BatchRequest request) {
+        return fetch(Math.min(request.amount(), MAX_AMOUNT), request.difficulty(), true);
+    }
+
+    private CompletableFuture<List<QuizGame.Question>> fetch(int amount, String difficulty, boolean retry) {
+        CompletableFuture<String> token = token();
+        return token.thenCompose(t -> send(amount, difficulty, 0, t)).thenCompose(batch -> {
+            int code = batch.responseCode();
+            if (code == SUCCESS) {
+                return CompletableFuture.completedFuture(batch.questions());
+            }
+            if (retry && (code == TOKEN_NOT_FOUND || code == TOKEN_EMPTY || code == RATE_LIMIT)) {
+                // A fresh token starts over on all questions; a rate limit just needs a later start
+                if (code == RATE_LIMIT) {
+                    slowDown();
+                } else {
+                    dropToken(token);
+                }
+                return fetch(amount, difficulty, false);
+            }
+            return CompletableFuture.failedFuture(new ResponseException(code));
+        });
+    }
+
+    /**
+     * Collects up to {@code target} distinct questions of {@code difficulty} ("" for any)
+     * from {@code categories} (any when empty), with at most {@code maxInFlight} requests
+     * out at once. Completes with fewer questions when every category has run out or
+     * keeps failing.
+     */
+    CompletableFuture<List<QuizGame.Question>> fill(int target, String difficulty, Collection<Integer> categories,
+                                                    int maxInFlight) {
+        return new Fill(target, difficulty, categories.isEmpty() ? List.of(0) : categories, maxInFlight).start();
+    }
+
+    private static final class Category {
+        final int id;
+        int amount = MAX_AMOUNT;
+        int failures;
+
+        Category(int id) {
+            this.id = id;
+        }
+    }
+
+    private final class Fill {
+        private final int target;
+        private final String difficulty;
+        private final int maxInFlight;
+        private final Deque<Category> active = new ArrayDeque<>();
+        private final Set<String> seen = new HashSet<>();
+        private final List<QuizGame.Question> pool = new ArrayList<>();
+        private final CompletableFuture<List<QuizGame.Question>> done = new CompletableFuture<>();
+
+        // Requests out, and the questions they asked for
+        private int inFlight;
+        private int requested;
+
+        Fill(int target, String difficulty, Collection<Integer> categories, int maxInFlight) {
+            this.target = target;
+            this.difficulty = difficulty;
+            this.maxInFlight = Math.max(1, maxInFlight);
+            for (int id : new LinkedHashSet<>(categories)) {
+                active.add(new Category(id));
+            }
+        }
+
+        synchronized CompletableFuture<List<QuizGame.Question>> start() {
+            pump();
+            return done;
+        }
+
+        private synchronized void pump() {
+            while (inFlight < maxInFlight && !active.isEmpty() && pool.size() + requested < target) {
+                // Round robin over the categories still active
+                Category category = active.pollFirst();
+                active.addLast(category);
+
+                int amount = Math.min(category.amount, target - pool.size() - requested);
+                inFlight++;
+                requested += amount;
+
+                CompletableFuture<String> token = token();
+                token.thenCompose(t -> send(amount, difficulty, category.id, t))
+                    .whenComplete((batch, error) -> onBatch(category, amount, token, batch, error));
+            }
+
+            if (inFlight == 0 && (pool.size() >= target || active.isEmpty())) {
+                done.complete(List.copyOf(pool));
+            }
+        }
+
+        private synchronized void onBatch(Category category, int amount, CompletableFuture<String> token,
+                                          Batch batch, Throwable error) {
+            inFlight--;
+            requested -= amount;
+
+            if (error != null) {
+                logger.log(Level.FINE, "OpenTDB request failed", error);
+                if (++category.failures >= MAX_FAILURES) {
+                    active.remove(category);
+                }
+            } else {
+                switch (batch.responseCode()) {
+                    case SUCCESS -> {
+                        int before = pool.size();
+                        for (QuizGame.Question question : batch.questions()) {
+                            if (pool.size() < target && seen.add(key(question))) {
+                                pool.add(question);
+                            }
+                        }
+                        // Only repeats, e.g. without a token, count as a failure
+                        if (pool.size() > before) {
+                            category.failures = 0;
+                        } else if (++category.failures >= MAX_FAILURES) {
+                            active.remove(category);
+                        }
+                    }
+                    case NO_RESULTS -> {
+                        // Fewer questions left than asked for: ask for fewer
+                        category.amount /= 2;
+                        if (category.amount == 0) {
+                            active.remove(category);
+                        }
+                    }
+                    case TOKEN_NOT_FOUND, RATE_LIMIT -> {
+                        if (batch.responseCode() == RATE_LIMIT) {
+                            slowDown();
+                        } else {
+                            dropToken(token);
+                        }
+                        if (++category.failures >= MAX_FAILURES) {
+                            active.remove(category);
+                        }
+                    }
+                    // TOKEN_EMPTY: everything in the category has been served; anything else will not get better
+                    default -> active.remove(category);
+                }
+            }
+
+            pump();
+        }
+    }
+
+    private CompletableFuture<Batch> send(int amount, String difficulty, int category, String token) {
+        StringBuilder url = new StringBuilder(api.toString()).append("?amount=").append(amount).append("&type=multiple");
+        if (!difficulty.isEmpty()) {
+            url.append("&difficulty=").append(difficulty);
+        }
+        if (category > 0) {
+            url.append("&category=").append(category);
+        }
+        if (token != null) {
+            url.append("&token=").append(URLEncoder.encode(token, StandardCharsets.UTF_8));
+        }
+
+        return get(URI.create(url.toString()), body -> {
+            List<QuizGame.Question> questions = new ArrayList<>(amount);
+            int responseCode = QuestionJsonReader.readOpenTDB(body, questions::add);
+            return new Batch(responseCode, questions);
+        });
+    }
+
+    /**
+     * The current token, requested on first use. Completes with {@code null} when no
+     * token could be had, in which case requests go without one and the next asks again.
+     */
+    private synchronized CompletableFuture<String> token() {
+        if (token == null || token.isDone() && token.join() == null) {
+            token = get(api.resolve("api_token.php?command=request"), QuestionJsonReader::readOpenTDBToken)
+                .exceptionally(error -> {
+                    logger.log(Level.FINE, "Could not get an OpenTDB session token", error);
+                    return null;
+                });
+        }
+        return token;
+    }
+
+    private synchronized void dropToken(CompletableFuture<String> stale) {
+        if (token == stale) {
+            token = null;
+        }
+    }
+
+    /**
+     * Nanoseconds to wait before the next request may start, booking that start.
+     */
+    private synchronized long reserveStart() {
+        long now = System.nanoTime();
+        long start = Math.max(now, nextStart);
+        nextStart = start + minIntervalNanos;
+        return start - now;
+    }
+
+    private synchronized void slowDown() {
+        nextStart = Math.max(nextStart, System.nanoTime() + Math.max(minIntervalNanos, TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Requests {@code uri} once the last request started at least {@code minInterval} ago,
+     * whichever endpoint it went to.
+     */
+    private <T> CompletableFuture<T> get(URI uri, HttpQuestionProvider.ResponseParser<T> parser) {
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Accept", "application/json").build();
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(reserveStart(), TimeUnit.NANOSECONDS))
+            .thenCompose(ignored -> HttpQuestionProvider.send(httpClient, request, name(), parser, timeout, stage));
+    }
+
+    private static String key(QuizGame.Question question) {
+        return question.text().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+}
@@ -1,18 +1,36 @@
 package org.mrserious;
 
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PDFQuestionExtractor {
-    // Regex patterns for different question formats
-    private static final Pattern QUESTION_PATTERNS = Pattern.compile(
+    /**
+     * Version of what extraction makes of a PDF, stored with cached questions. Bump it with
+     * any change that can alter the questions extracted from the same file, in the patterns,
+     * {@link QuestionScanner}, {@link LineClassifier}, streaming or question cleaning, so that
+     * caches built by the older code are dropped instead of served until each PDF changes.
+     */
+    static final int EXTRACTOR_VERSION = 1;
+
+    // Regex patterns for different question formats. The pattern pass runs through
+    // QuestionScanner, which follows these and only falls back to them for odd lines
+    static final Pattern QUESTION_PATTERNS = Pattern.compile(
     "(?i)(?:^|\\n)\\s*(?:" +
             "(?:\\d+\\.?\\s*)" +           // 1. Question
             "|(?:Q\\.?\\s*\\d+\\.?\\s*)" + // Q1. Question
@@ -21,150 +39,410 @@ public class PDFQuestionExtractor {
     Pattern.MULTILINE | Pattern.DOTALL
     );
 
-    private static final Pattern OPTION_PATTERN = Pattern.compile(
+    static final Pattern OPTION_PATTERN = Pattern.compile(
         "(?i)(?:^|\\n)\\s*([A-D])\\.?\\s*[\\)\\.]?\\s*([^\\n]+?)(?=\\n|$)",
         Pattern.MULTILINE
     );
 
-    private static final Pattern ANSWER_PATTERN = Pattern.compile(
+    static final Pattern ANSWER_PATTERN = Pattern.compile(
         "(?i)(?:answer|correct|solution)\\s*:?\\s*([A-D])",
         Pattern.MULTILINE
     );
 
+    // Paragraphs scanned for options by the heuristic pass, starting at the question itself
+    static final int HEURISTIC_LOOKAHEAD = 5;
+
+    // Documents longer than this are stripped in windows of PAGE_WINDOW pages
+    private static final int STREAMING_THRESHOLD_PAGES = Integer.getInteger("collepuz.pdf.streamingThreshold", 50);
+    private static final int PAGE_WINDOW = Math.max(1, Integer.getInteger("collepuz.pdf.pageWindow", 10));
+
+    // Jaccard similarity from which questions from different PDFs count as the same question
+    private static final double DUPLICATE_THRESHOLD = Double.parseDouble(
+        System.getProperty("collepuz.dedup.threshold", "0.8"));
+
+    // Number of PDFs parsed at once; each worker holds one open PDDocument
+    static final int DEFAULT_PARALLELISM = Integer.getInteger(
+        "collepuz.pdf.parallelism",
+        Math.min(4, Runtime.getRuntime().availableProcessors())
+    );
+
     public static List<QuizGame.Question> extractQuestionsFromPDFs(String folderPath) throws Exception {
+        return extractQuestionsFromPDFs(folderPath, DEFAULT_PARALLELISM);
+    }
+
+    public static List<QuizGame.Question> extractQuestionsFromPDFs(String folderPath, int parallelism) throws Exception {
+        List<List<QuizGame.Question>> perFile = extractFolder(folderPath, parallelism, Function.identity());
+        return perFile == null ? Collections.emptyList() : merge(perFile);
+    }
+
+    /**
+     * The questions of one PDF, with a search index segment over them.
+     */
+    record IndexedFile(List<QuizGame.Question> questions, QuestionIndex index) {
+        static IndexedFile of(List<QuizGame.Question> questions) {
+            return new IndexedFile(questions, QuestionIndex.of(questions));
+        }
+    }
+
+    /**
+     * Extracts a folder into a bank that can be searched. Each PDF is indexed on the
+     * worker that extracted it, as soon as it is done, and the segments are joined once
+     * the near-duplicates are gone.
+     */
+    static QuestionBank extractBank(String folderPath, int parallelism) throws Exception {
+        List<IndexedFile> files = extractFolder(folderPath, parallelism, IndexedFile::of);
+        return files == null ? new QuestionBank(List.of()) : mergeIndexed(files);
+    }
+
+    /**
+     * Extracts every PDF in a folder, see {@link #extractAll}; {@code null} when there is no such folder.
+     */
+    private static <T> List<T> extractFolder(String folderPath, int parallelism,
+                                             Function<List<QuizGame.Question>, T> perFile) throws Exception {
         System.out.println("📖 Extracting questions from PDF files using PDFBox...");
 
         Path folder = Paths.get(folderPath);
         if (!Files.exists(folder) || !Files.isDirectory(folder)) {
             System.out.println("❌ Folder not found: " + folderPath);
-            return Collections.emptyList();
+            return null;
         }
 
-        List<QuizGame.Question> allQuestions = new ArrayList<>();
+        List<Path> pdfFiles = listPDFs(folder);
+        QuestionCache cache = QuestionCache.forFolder(folder);
+        List<T> results;
+        try (ExtractionSupervisor supervisor = new ExtractionSupervisor(parallelism, Quarantine.forFolder(folder))) {
+            results = extractAll(pdfFiles, supervisor, cache, perFile);
+        }
 
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.pdf")) {
-            for (Path pdfFile : stream) {
-                System.out.println("⏳ Processing: " + pdfFile.getFileName());
-                List<QuizGame.Question> questions = extractFromSinglePDF(pdfFile.toFile());
-                allQuestions.addAll(questions);
-                System.out.printf("   ✅ Found %d questions\n", questions.size());
+        if (cache != null) {
+            try (Metrics.Timer _ = Metrics.CACHE_SAVE.time()) {
+                cache.save();
             }
         }
 
+        return results;
+    }
+
+    /**
+     * As {@link #merge}, into a bank whose search index is joined from the files' segments.
+     */
+    static QuestionBank mergeIndexed(List<IndexedFile> files) {
+        List<List<QuizGame.Question>> perFile = new ArrayList<>(files.size());
+        for (IndexedFile file : files) {
+            perFile.add(file.questions());
+        }
+        List<QuizGame.Question> merged = merge(perFile);
+
+        // The merge keeps the order and the very instances of the questions it does not drop
+        List<QuestionIndex> segments = new ArrayList<>(files.size());
+        List<int[]> idMaps = new ArrayList<>(files.size());
+        int next = 0;
+        for (IndexedFile file : files) {
+            int[] idMap = new int[file.questions().size()];
+            for (int i = 0; i < idMap.length; i++) {
+                idMap[i] = next < merged.size() && merged.get(next) == file.questions().get(i) ? next++ : -1;
+            }
+            segments.add(file.index());
+            idMaps.add(idMap);
+        }
+
+        return new QuestionBank(merged, QuestionIndex.merge(segments, idMaps, merged.size()));
+    }
+
+    /**
+     * Joins the questions of several PDFs, in the given order, and removes the
+     * near-duplicates between them.
+     */
+    static List<QuizGame.Question> merge(Collection<List<QuizGame.Question>> perFile) {
+        List<QuizGame.Question> allQuestions = new ArrayList<>();
+        for (List<QuizGame.Question> questions : perFile) {
+            allQuestions.addAll(questions);
+        }
+
         if (allQuestions.isEmpty()) {
             System.out.println("⚠️ No questions extracted from PDFs. Check PDF format.");
             return Collections.emptyList();
         }
 
+        // The same question often turns up in several PDFs with different numbering,
+        // punctuation or option order
+        int extracted = allQuestions.size();
+        try (Metrics.Timer _ = Metrics.NEAR_DUPLICATES.time()) {
+            allQuestions = NearDuplicateIndex.removeNearDuplicates(allQuestions, DUPLICATE_THRESHOLD);
+        }
+        if (allQuestions.size() < extracted) {
+            System.out.printf("🧹 Removed %d near-duplicate questions\n", extracted - allQuestions.size());
+        }
+
         System.out.printf("✅ Total extracted: %d questions from PDFs\n", allQuestions.size());
         return allQuestions;
     }
 
-    private static List<QuizGame.Question> extractFromSinglePDF(File pdfFile) {
-        List<QuizGame.Question> questions = new ArrayList<>();
+    static List<Path> listPDFs(Path folder) throws IOException {
+        List<Path> pdfFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.pdf")) {
+            for (Path pdfFile : stream) {
+                pdfFiles.add(pdfFile);
+            }
+        }
 
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
+        // Sort so the merged question list doesn't depend on directory or completion order
+        pdfFiles.sort(Comparator.comparing(Path::toString));
+        return pdfFiles;
+    }
 
-            // Clean up the text
-            text = text.replaceAll("\\r\\n", "\n")
-                .replaceAll("\\r", "\n")
-                .replaceAll("\\n{3,}", "\n\n");
+    /**
+     * Extracts each PDF under {@code supervisor} and applies {@code perFile} to its
+     * questions on the same worker, returning the results in the order of
+     * {@code pdfFiles}. PDFs the supervisor gives up on are reported and left out.
+     */
+    static <T> List<T> extractAll(List<Path> pdfFiles, ExtractionSupervisor supervisor, QuestionCache cache,
+                                  Function<List<QuizGame.Question>, T> perFile) throws Exception {
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<T>> futures = new ArrayList<>();
+        for (Path pdfFile : pdfFiles) {
+            futures.add(supervisor.submit(pdfFile, cache, questions -> {
+                reportProgress(pdfFile, completed.incrementAndGet(), pdfFiles.size(), questions.size());
+                return perFile.apply(questions);
+            }).whenComplete((_, failure) -> {
+                if (failure != null) {
+                    reportFailure(pdfFile, completed.incrementAndGet(), pdfFiles.size(), failure);
+                }
+            }));
+        }
 
-            questions.addAll(extractQuestionsUsingPatterns(text));
-            questions.addAll(extractQuestionsUsingHeuristics(text));
-        } catch (IOException e) {
-            System.out.printf("⚠️ Error reading PDF %s: %s\n", pdfFile.getName(), e.getMessage());
+        // Collect in submission order so the merge is deterministic
+        List<T> results = new ArrayList<>();
+        int failed = 0;
+        int quarantined = 0;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                // A PDF deleted while the folder is extracted is left out like a broken one
+                if (!(e.getCause() instanceof IOException)) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+                failed++;
+                if (e.getCause() instanceof ExtractionSupervisor.Failure f && f.quarantined()) {
+                    quarantined++;
+                }
+            }
         }
 
-        return removeDuplicates(questions);
+        if (failed > 0) {
+            Path list = supervisor.quarantine().file();
+            System.out.printf("🚫 %d of %d PDFs left out%s\n", failed, pdfFiles.size(), quarantined == 0 || list == null
+                ? "" : "; the " + quarantined + " quarantined are listed in " + list + " and retried once they change");
+        }
+        return results;
     }
 
-    private static List<QuizGame.Question> extractQuestionsUsingPatterns(String text) {
-        List<QuizGame.Question> questions = new ArrayList<>();
+    private static void reportProgress(Path pdfFile, int done, int total, int questionCount) {
+        System.out.printf("⏳ [%d/%d] %s\n   ✅ Found %d questions\n", done, total, pdfFile.getFileName(), questionCount);
+    }
 
-        Matcher questionMatcher = QUESTION_PATTERNS.matcher(text);
+    private static void reportFailure(Path pdfFile, int done, int total, Throwable failure) {
+        if (failure instanceof CompletionException wrapped && wrapped.getCause() != null) {
+            failure = wrapped.getCause();
+        }
+        String outcome = switch (failure) {
+            case ExtractionSupervisor.Failure f when f.earlier() -> "⏭️ Skipped, quarantined earlier: " + f;
+            case ExtractionSupervisor.Failure f when f.quarantined() -> "🚫 Quarantined, it " + f;
+            case ExtractionSupervisor.Failure f -> "⚠️ Left out for now, it " + f;
+            default -> "⚠️ Error reading PDF: " + failure.getMessage();
+        };
+        System.out.printf("⏳ [%d/%d] %s\n   %s\n", done, total, pdfFile.getFileName(), outcome);
+    }
 
-        while (questionMatcher.find()) {
-            String questionText = questionMatcher.group(1).trim();
-            int questionEnd = questionMatcher.end();
+    /**
+     * Called between units of work on a PDF, so a supervisor can abandon the file by
+     * throwing from it.
+     */
+    @FunctionalInterface
+    interface Checkpoint {
+        Checkpoint NONE = () -> {};
 
-            // Look for options after the question
-            String remainingText = text.substring(questionEnd);
-            String[] lines = remainingText.split("\n", 20); // Look at next 20 lines max
+        void check() throws IOException;
+    }
 
-            Map<String, String> options = new HashMap<>();
-            String correctAnswer = "";
+    /**
+     * Extracts one PDF on its own, keeping decoded streams in memory. An unreadable file
+     * is reported and yields no questions.
+     */
+    static List<QuizGame.Question> extractFromSinglePDF(File pdfFile) {
+        try {
+            return extractFromSinglePDF(pdfFile, Checkpoint.NONE, IOUtils.createMemoryOnlyStreamCache());
+        } catch (IOException e) {
+            System.out.printf("⚠️ Error reading PDF %s: %s\n", pdfFile.getName(), e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
-            for (String line : lines) {
-                Matcher optionMatcher = OPTION_PATTERN.matcher(line);
-                if (optionMatcher.find()) {
-                    String optionLabel = optionMatcher.group(1).toUpperCase();
-                    String optionText = optionMatcher.group(2).trim();
-                    options.put(optionLabel, optionText);
-                }
+    /**
+     * Extracts one PDF, passing {@code checkpoint} as the file is read and as each
+     * content stream operator is processed, and buffering decoded streams in
+     * {@code scratch}.
+     */
+    static List<QuizGame.Question> extractFromSinglePDF(File pdfFile, Checkpoint checkpoint,
+                                                        StreamCacheCreateFunction scratch) throws IOException {
+        List<QuizGame.Question> questions = new ArrayList<>();
 
-                // Check for answer in this section
-                Matcher answerMatcher = ANSWER_PATTERN.matcher(line);
-                if (answerMatcher.find()) {
-                    correctAnswer = answerMatcher.group(1).toUpperCase();
+        try (PDDocument document = load(pdfFile, checkpoint, scratch)) {
+            PDFTextStripper stripper = new PDFTextStripper() {
+                @Override
+                protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+                    // A malformed content stream can loop or grow without ever reading the file again
+                    checkpoint.check();
+                    super.processOperator(operator, operands);
                 }
-
-                // Stop if we hit another question or empty lines
-                if (line.trim().isEmpty() || QUESTION_PATTERNS.matcher(line).find()) {
-                    break;
+            };
+            int pageCount = document.getNumberOfPages();
+            Metrics.PAGES.add(pageCount);
+
+            if (pageCount > STREAMING_THRESHOLD_PAGES) {
+                // Strip a few pages at a time so the whole document text is never held at once
+                StreamingQuestionParser parser = new StreamingQuestionParser();
+                for (int start = 1; start <= pageCount; start += PAGE_WINDOW) {
+                    stripper.setStartPage(start);
+                    stripper.setEndPage(Math.min(start + PAGE_WINDOW - 1, pageCount));
+                    parser.accept(getText(stripper, document));
+                    checkpoint.check();
                 }
+                questions.addAll(parser.finish());
+            } else {
+                String text = normalizeText(getText(stripper, document));
+
+                checkpoint.check();
+                questions.addAll(extractQuestionsUsingPatterns(text));
+                checkpoint.check();
+                questions.addAll(extractQuestionsUsingHeuristics(text));
             }
+        }
 
-            if (options.size() >= 2) {
-                List<String> optionsList = new ArrayList<>(options.values());
+        return removeDuplicates(questions);
+    }
 
-                // If no explicit correct answer found, try to detect it
-                if (correctAnswer.isEmpty()) {
-                    correctAnswer = detectCorrectAnswer(options, remainingText);
-                }
+    private static PDDocument load(File pdfFile, Checkpoint checkpoint, StreamCacheCreateFunction scratch)
+        throws IOException {
+        try (Metrics.Timer _ = Metrics.PDF_LOAD.time()) {
+            RandomAccessRead source = checkpoint == Checkpoint.NONE
+                ? new RandomAccessReadBufferedFile(pdfFile) : new CheckedFile(pdfFile, checkpoint);
+            try {
+                // The document closes the source once loaded
+                return Loader.loadPDF(source, "", null, null, scratch);
+            } catch (Throwable e) {
+                IOUtils.closeQuietly(source);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A PDF file that passes a checkpoint every so often as it is read, so even a parser
+     * lost in a broken cross-reference table can be stopped.
+     */
+    private static final class CheckedFile extends RandomAccessReadBufferedFile {
+        private final Checkpoint checkpoint;
+        private int reads;
+
+        CheckedFile(File file, Checkpoint checkpoint) throws IOException {
+            super(file);
+            this.checkpoint = checkpoint;
+        }
 
-                String correctAnswerText = options.getOrDefault(correctAnswer, optionsList.getFirst());
-                questions.add(new QuizGame.Question(
-                    cleanQuestionText(questionText),
-                    optionsList,
-                    correctAnswerText,
-                    "medium",
-                    "PDF Extract"
-                ));
+        @Override
+        public int read() throws IOException {
+            // The parser reads mostly a byte at a time
+            if ((++reads & 0xFFF) == 0) {
+                checkpoint.check();
             }
+            return super.read();
         }
 
-        return questions;
+        @Override
+        public int read(byte[] b, int offset, int length) throws IOException {
+            checkpoint.check();
+            return super.read(b, offset, length);
+        }
     }
 
-    private static List<QuizGame.Question> extractQuestionsUsingHeuristics(String text) {
+    private static String getText(PDFTextStripper stripper, PDDocument document) throws IOException {
+        try (Metrics.Timer _ = Metrics.PDF_TEXT.time()) {
+            return stripper.getText(document);
+        }
+    }
+
+    static String normalizeText(String text) {
+        // Clean up the text
+        return text.replaceAll("\\r\\n", "\n")
+            .replaceAll("\\r", "\n")
+            .replaceAll("\\n{3,}", "\n\n");
+    }
+
+    static List<QuizGame.Question> extractQuestionsUsingPatterns(String text) {
         List<QuizGame.Question> questions = new ArrayList<>();
+        extractQuestionsUsingPatterns(text, 0, text.length(), questions);
+        return questions;
+    }
+
+    /**
+     * Pattern pass over {@code text} from {@code from}, adding questions whose text starts
+     * before {@code limit}; anything after it is only used as lookahead for options and
+     * answers. Returns where the next search has to resume, which may be past
+     * {@code limit} when the last question ran on into the lookahead.
+     */
+    static int extractQuestionsUsingPatterns(String text, int from, int limit, List<QuizGame.Question> questions) {
+        try (Metrics.Timer _ = Metrics.PATTERN_PASS.time()) {
+            int found = questions.size();
+            int resumeAt = new QuestionScanner(text).scan(from, limit, questions);
+            Metrics.PATTERN_QUESTIONS.add(questions.size() - found);
+            return resumeAt;
+        }
+    }
+
+    static List<QuizGame.Question> extractQuestionsUsingHeuristics(String text) {
         String[] paragraphs = text.split("\n\n+");
+        return extractQuestionsUsingHeuristics(paragraphs, paragraphs.length);
+    }
 
-        for (int i = 0; i < paragraphs.length; i++) {
+    /**
+     * Heuristic pass over the first {@code count} paragraphs; the paragraphs after them
+     * are only used as lookahead for options.
+     */
+    static List<QuizGame.Question> extractQuestionsUsingHeuristics(String[] paragraphs, int count) {
+        try (Metrics.Timer _ = Metrics.HEURISTIC_PASS.time()) {
+            List<QuizGame.Question> questions = heuristicPass(paragraphs, count);
+            Metrics.HEURISTIC_QUESTIONS.add(questions.size());
+            return questions;
+        }
+    }
+
+    private static List<QuizGame.Question> heuristicPass(String[] paragraphs, int count) {
+        List<QuizGame.Question> questions = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
             String paragraph = paragraphs[i];
 
             // Check if this looks like a question
-            if (isLikelyQuestion(paragraph)) {
+            if (LineClassifier.isLikelyQuestion(paragraph)) {
                 List<String> options = new ArrayList<>();
                 String correctAnswer = "";
 
                 // Look in current and next few paragraph list as options
-                for (int j = i; j < Math.min(i + 5, paragraphs.length); j++) {
+                for (int j = i; j < Math.min(i + HEURISTIC_LOOKAHEAD, paragraphs.length); j++) {
                     String currentPara = paragraphs[j];
 
                     // Extract bullet points or numbered lists as options
                     String[] lines = currentPara.split("\n");
                     for (String line : lines) {
-                        if (isLikelyOption(line)) {
-                            String option = cleanOptionText(line);
+                        if (LineClassifier.isLikelyOption(line)) {
+                            String option = LineClassifier.cleanOptionText(line);
                             if (!option.isEmpty() && !options.contains(option)) {
                                 options.add(option);
 
                                 // Check if this option is marked as correct
-                                if (isMarkedAsCorrect(line)) {
+                                if (LineClassifier.isMarkedAsCorrect(line)) {
                                     correctAnswer = option;
                                 }
                             }
@@ -178,7 +456,7 @@ public class PDFQuestionExtractor {
                     }
 
                     questions.add(new QuizGame.Question(
-                        cleanQuestionText(paragraph),
+                        LineClassifier.cleanQuestionText(paragraph),
                         options,
                         correctAnswer,
                         "medium",
@@ -191,72 +469,7 @@ public class PDFQuestionExtractor {
         return questions;
     }
 
-    private static boolean isLikelyQuestion(String text) {
-        text = text.toLowerCase();
-        return text.contains("?") ||
-            text.matches(".*\\b(?:what|which|who|when|where|why|how)\\b.*") ||
-            text.matches(".*\\b(?:identify|choose|select|determine)\\b.*") ||
-            text.matches("^\\s*\\d+\\..*") ||
-            text.matches("^\\s*q\\s*\\d+.*");
-    }
-
-    private static boolean isLikelyOption(String line) {
-        line = line.trim().toLowerCase();
-        return line.matches("^[a-d][\\.\\)].*") ||
-            line.matches("^\\([a-d]\\).*") ||
-            line.matches("^[•·▪▫]\\s*.*") ||
-            line.matches("^-\\s+.*") ||
-            line.matches("^\\d+[\\.\\)]\\s+.*");
-    }
-
-    private static boolean isMarkedAsCorrect(String line) {
-        line = line.toLowerCase();
-        return line.contains("*") ||
-            line.contains("✓") ||
-            line.contains("correct") ||
-            line.contains("answer") ||
-            line.contains("✔") ||
-            line.contains("√");
-    }
-
-    private static String detectCorrectAnswer(Map<String, String> options, String context) {
-        context = context.toLowerCase();
-
-        // Look for patterns like "the answer is A" or "correct answer: B"
-        Pattern answerPattern = Pattern.compile(
-            "(?:answer|correct|solution)\\s*(?:is|:)?\\s*([a-d])",
-            Pattern.CASE_INSENSITIVE
-        );
-
-        Matcher matcher = answerPattern.matcher(context);
-        if (matcher.find()) {
-            return matcher.group(1).toUpperCase();
-        }
-
-        return options.keySet().stream().findFirst().orElse("A");
-    }
-
-    private static String cleanQuestionText(String text) {
-        return text.replaceAll("^\\s*\\d+\\.?\\s*", "")
-            .replaceAll("^\\s*Q\\.?\\s*\\d+\\.?\\s*", "")
-            .replaceAll("^\\s*Question\\s+\\d+\\.?\\s*", "")
-            .replaceAll("\\s+", " ")
-            .trim();
-    }
-
-    private static String cleanOptionText(String text) {
-        return text.replaceAll("^\\s*[A-Da-d][\\.\\)]\\s*", "")
-            .replaceAll("^\\s*\\([A-Da-d]\\)\\s*", "")
-            .replaceAll("^\\s*[•·▪▫-]\\s*", "")
-            .replaceAll("^\\s*\\d+[\\.\\)]\\s*", "")
-            .replaceAll("[*✓✔√]", "")
-            .replaceAll("\\s*\\(correct\\)\\s*", "")
-            .replaceAll("\\s*\\[correct\\]\\s*", "")
-            .replaceAll("\\s+", " ")
-            .trim();
-    }
-
-    private static List<QuizGame.Question> removeDuplicates(List<QuizGame.Question> questions) {
+    static List<QuizGame.Question> removeDuplicates(List<QuizGame.Question> questions) {
         Set<String> seen = new HashSet<>();
         List<QuizGame.Question> unique = new ArrayList<>();
 
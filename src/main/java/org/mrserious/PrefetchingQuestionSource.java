@@ -0,0 +1,212 @@
+package org.mrserious;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Online question source that keeps a bounded buffer filled in the background. Batches are
+ * requested asynchronously from two {@link QuestionProvider}s: the primary gets a head start of
+ * {@code hedgeDelay}, after which (or as soon as it fails) the backup is raced against it
+ * and the first non-empty batch wins. A refill starts whenever the buffer drops to half a
+ * batch, so once the first question has arrived the quiz does not wait on the network.
+ */
+class PrefetchingQuestionSource implements Iterator<QuizGame.Question>, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(PrefetchingQuestionSource.class.getName());
+
+    // Consecutive refills that may come back empty (failed, or only repeats) before giving up
+    private static final int MAX_EMPTY_REFILLS = 3;
+    private static final long POLL_MILLIS = 100;
+
+    private final QuestionProvider primary;
+    private final QuestionProvider backup;
+    private final int batchSize;
+    private final Duration hedgeDelay;
+    private final BlockingQueue<QuizGame.Question> buffer;
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final AtomicInteger rounds = new AtomicInteger();
+
+    private volatile String difficulty = "";
+    private volatile int emptyRefills;
+    private volatile boolean received;
+    private volatile boolean closed;
+    private volatile Throwable lastError;
+    private QuizGame.Question next;
+
+    PrefetchingQuestionSource(QuestionProvider primary, QuestionProvider backup, int batchSize, Duration hedgeDelay) {
+        this.primary = primary;
+        this.backup = backup;
+        this.batchSize = batchSize;
+        this.hedgeDelay = hedgeDelay;
+        this.buffer = new ArrayBlockingQueue<>(2 * batchSize);
+    }
+
+    /**
+     * Sends the first request and returns right away.
+     */
+    PrefetchingQuestionSource start() {
+        refill();
+        return this;
+    }
+
+    /**
+     * Restricts the questions handed out from now on to {@code difficulty}. Buffered
+     * questions of other levels are dropped and later batches ask for this level only.
+     */
+    void setDifficulty(String difficulty) {
+        this.difficulty = difficulty;
+        buffer.removeIf(question -> !matchesDifficulty(question));
+        refill();
+    }
+
+    /**
+     * Waits until a question is buffered, which only takes time before the first batch
+     * has arrived. Returns {@code false} once both providers keep failing and the buffer
+     * is empty.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+
+        try {
+            while ((next = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (isExhausted()) {
+                    return false;
+                }
+                refill();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        if (buffer.size() <= batchSize / 2) {
+            refill();
+        }
+        return true;
+    }
+
+    @Override
+    public QuizGame.Question next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        QuizGame.Question question = next;
+        next = null;
+        return question;
+    }
+
+    /**
+     * Why the last batch could not be fetched, or {@code null} if it could.
+     */
+    Throwable lastError() {
+        return lastError;
+    }
+
+    /**
+     * Questions waiting in the buffer, at most two batches.
+     */
+    int buffered() {
+        return buffer.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        buffer.clear();
+    }
+
+    private boolean isExhausted() {
+        return closed || (!refilling.get() && buffer.isEmpty() && emptyRefills >= emptyRefillLimit());
+    }
+
+    private int emptyRefillLimit() {
+        // Until something has arrived, one failed round is enough to fall back
+        return received ? MAX_EMPTY_REFILLS : 1;
+    }
+
+    private void refill() {
+        if (closed || emptyRefills >= emptyRefillLimit() || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        fetchHedged(difficulty).whenComplete((questions, error) -> {
+            int added = 0;
+            if (questions != null) {
+                for (QuizGame.Question question : questions) {
+                    if (matchesDifficulty(question) && buffer.remainingCapacity() > 0 && seen.add(question.text())) {
+                        buffer.offer(question);
+                        added++;
+                    }
+                }
+            } else {
+                logger.log(Level.FINE, "Question prefetch failed", error);
+            }
+            lastError = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+            received |= added > 0;
+            emptyRefills = added > 0 ? 0 : emptyRefills + 1;
+            refilling.set(false);
+
+            if (buffer.size() <= batchSize / 2) {
+                refill();
+            }
+        });
+    }
+
+    /**
+     * Fetches one batch from the primary provider, starting the backup after
+     * {@code hedgeDelay} or on a primary failure. Fails only when both fail. The losing
+     * request is left to finish so its body stream is still drained and closed.
+     */
+    private CompletableFuture<List<QuizGame.Question>> fetchHedged(String difficulty) {
+        CompletableFuture<List<QuizGame.Question>> winner = new CompletableFuture<>();
+        QuestionProvider.BatchRequest request = new QuestionProvider.BatchRequest(
+            batchSize, difficulty, rounds.getAndIncrement());
+        AtomicInteger failures = new AtomicInteger();
+        AtomicBoolean backupStarted = new AtomicBoolean();
+
+        Runnable startBackup = () -> {
+            if (!winner.isDone() && !closed && backupStarted.compareAndSet(false, true)) {
+                backup.fetch(request).whenComplete((questions, error) -> settle(winner, questions, error, failures));
+            }
+        };
+
+        primary.fetch(request).whenComplete((questions, error) -> {
+            if (!settle(winner, questions, error, failures)) {
+                startBackup.run();
+            }
+        });
+        CompletableFuture.delayedExecutor(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS).execute(startBackup);
+
+        return winner;
+    }
+
+    /**
+     * Completes {@code winner} with a non-empty batch, or fails it on the second failure.
+     * Returns whether this call produced a usable batch.
+     */
+    private static boolean settle(CompletableFuture<List<QuizGame.Question>> winner,
+                                  List<QuizGame.Question> questions, Throwable error, AtomicInteger failures) {
+        if (error == null && !questions.isEmpty()) {
+            winner.complete(questions);
+            return true;
+        }
+        if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(error != null ? error : new IllegalStateException("Both providers returned no questions"));
+        }
+        return false;
+    }
+
+    private boolean matchesDifficulty(QuizGame.Question question) {
+        String wanted = difficulty;
+        return wanted.isEmpty() || question.difficulty().isEmpty() || question.difficulty().equalsIgnoreCase(wanted);
+    }
+}
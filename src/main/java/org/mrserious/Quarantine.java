@@ -0,0 +1,159 @@
+package org.mrserious;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PDFs that could not be extracted, with the reason, so a file that hangs or breaks the
+ * parser is not parsed again on every start. An entry stands for as long as the file
+ * keeps the size and modification time it had when it failed; replacing or touching the
+ * file gives it another try. The list is a tab-separated text file next to the question
+ * cache, one line per PDF, so it can be read, and deleted to retry everything.
+ */
+final class Quarantine {
+    enum Reason {
+        TIMEOUT("timed out"),
+        MEMORY("ran out of memory"),
+        CORRUPT("could not be read"),
+        CRASH("crashed the parser");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    record Entry(long size, long modified, Reason reason, String detail) {
+        @Override
+        public String toString() {
+            return reason + ": " + detail;
+        }
+    }
+
+    // null when the list is only kept for this run
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private Quarantine(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the quarantine list of a question folder. Without the question cache
+     * ({@code -Dcollepuz.cache=false}) it only lasts for this run.
+     */
+    static Quarantine forFolder(Path folder) {
+        if (!QuestionCache.enabled()) {
+            return inMemory();
+        }
+        Quarantine quarantine = new Quarantine(QuestionCache.fileFor(folder, ".quarantine"));
+        quarantine.load();
+        return quarantine;
+    }
+
+    static Quarantine inMemory() {
+        return new Quarantine(null);
+    }
+
+    /**
+     * Why {@code pdfFile} was quarantined, or {@code null} if it was not or has changed since.
+     */
+    Entry get(Path pdfFile) {
+        String key = key(pdfFile);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            if (entry.size() == Files.size(pdfFile) && entry.modified() == Files.getLastModifiedTime(pdfFile).toMillis()) {
+                return entry;
+            }
+        } catch (IOException e) {
+            // Gone; dropped below
+        }
+        if (entries.remove(key, entry)) {
+            save();
+        }
+        return null;
+    }
+
+    /**
+     * Records that {@code pdfFile}, as it was when {@code size} and {@code modified} were
+     * read, failed for {@code reason}, and writes the list out.
+     */
+    void add(Path pdfFile, long size, long modified, Reason reason, String detail) {
+        // Tabs and line breaks would split the line when it is read back
+        String flat = detail == null ? "" : detail.replaceAll("[\\t\\r\\n]+", " ");
+        entries.put(key(pdfFile), new Entry(size, modified, reason, flat));
+        save();
+    }
+
+    /**
+     * Where the list is kept, or {@code null} when it is only kept for this run.
+     */
+    Path file() {
+        return file;
+    }
+
+    private static String key(Path pdfFile) {
+        return pdfFile.toAbsolutePath().normalize().toString();
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length < 5) {
+                    continue;
+                }
+                try {
+                    Entry entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                        Reason.valueOf(fields[3]), fields[4]);
+                    // PDFs deleted since are forgotten
+                    if (Files.exists(Path.of(fields[0]))) {
+                        entries.put(fields[0], entry);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // A line from a newer version or edited by hand
+                }
+            }
+        } catch (IOException e) {
+            System.out.printf("⚠️ Could not read quarantine list %s: %s\n", file, e.getMessage());
+        }
+    }
+
+    private synchronized void save() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.write(String.join("\t", e.getKey(), Long.toString(entry.size()),
+                        Long.toString(entry.modified()), entry.reason().name(), entry.detail()));
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Only costs another attempt at the file next time
+            System.out.printf("⚠️ Could not write quarantine list %s: %s\n", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.mrserious;
+
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * In-memory index of a question pool by difficulty and category. Questions are grouped
+ * into one compact id array per (difficulty, category) pair, and each facet value maps
+ * to the groups it covers. A sample of k questions draws k positions from the matching
+ * groups with a partial Fisher-Yates shuffle. That costs O(k) plus a binary search over
+ * the groups per pick, so the pool itself is never copied, scanned or shuffled.
+ * Difficulties are matched ignoring case. The questions themselves live in a
+ * {@link QuestionStore}, and only the sampled ones are materialised as records. A bank
+ * opened from a {@link QuestionPack} takes its groups from the pack instead of indexing.
+ * Topic quizzes search a {@link QuestionIndex} over the text, either handed over with
+ * the pool or built from the store on the first search.
+ */
+class QuestionBank {
+    private static final int[] NO_BUCKETS = new int[0];
+
+    private final QuestionStore store;
+    // Question ids per (difficulty, category) pair
+    private final Bucket[] buckets;
+    private final Map<String, int[]> bucketsByDifficulty = new HashMap<>();
+    private final Map<String, int[]> bucketsByCategory = new HashMap<>();
+    private final Map<String, Integer> bucketByPair = new HashMap<>();
+    // Built on first use unless handed over
+    private volatile QuestionIndex index;
+
+    QuestionBank(Collection<QuizGame.Question> pool) {
+        this(QuestionStore.of(pool));
+    }
+
+    /**
+     * A bank over {@code pool} with {@code index} already built over it, in the same order.
+     */
+    QuestionBank(Collection<QuizGame.Question> pool, QuestionIndex index) {
+        this(QuestionStore.of(pool));
+        if (index.size() != pool.size()) {
+            throw new IllegalArgumentException("Index covers " + index.size() + " questions, pool has " + pool.size());
+        }
+        this.index = index;
+    }
+
+    /**
+     * The ids of the questions with one (lower-case) difficulty and one category.
+     */
+    record Bucket(String difficulty, String category, IntBuffer ids) {}
+
+    QuestionBank(QuestionStore store) {
+        this(store, index(store));
+    }
+
+    QuestionBank(QuestionStore store, List<Bucket> buckets) {
+        this.store = store;
+        this.buckets = buckets.toArray(Bucket[]::new);
+
+        for (int bucket = 0; bucket < this.buckets.length; bucket++) {
+            Bucket group = this.buckets[bucket];
+            if (group.ids().limit() == 0) {
+                throw new IllegalArgumentException("Empty question group " + group.difficulty() + "/" + group.category());
+            }
+            bucketByPair.put(pairKey(group.difficulty(), group.category()), bucket);
+            addBucket(bucketsByDifficulty, group.difficulty(), bucket);
+            addBucket(bucketsByCategory, group.category(), bucket);
+        }
+    }
+
+    private static List<Bucket> index(QuestionStore store) {
+        int size = store.size();
+
+        // Difficulty codes that differ only in case share a group
+        List<String> difficultyNames = store.difficultyNames();
+        List<String> categoryNames = store.categoryNames();
+        Map<String, Integer> groups = new HashMap<>();
+        int[] groupOf = new int[difficultyNames.size()];
+        for (int code = 0; code < groupOf.length; code++) {
+            groupOf[code] = groups.computeIfAbsent(normalize(difficultyNames.get(code)), key -> groups.size());
+        }
+
+        // First pass: number the pairs and size their buckets
+        int[] bucketOf = new int[size];
+        int[][] bucketByCodes = new int[groups.size()][];
+        List<String> difficultyOf = new ArrayList<>();
+        List<String> categoryOf = new ArrayList<>();
+        int[] sizes = new int[16];
+
+        for (int id = 0; id < size; id++) {
+            int group = groupOf[store.difficultyCode(id)];
+            int category = store.categoryCode(id);
+            if (bucketByCodes[group] == null) {
+                bucketByCodes[group] = new int[categoryNames.size()];
+                Arrays.fill(bucketByCodes[group], -1);
+            }
+
+            int bucket = bucketByCodes[group][category];
+            if (bucket < 0) {
+                bucket = difficultyOf.size();
+                bucketByCodes[group][category] = bucket;
+                difficultyOf.add(normalize(store.difficulty(id)));
+                categoryOf.add(categoryNames.get(category));
+            }
+            if (bucket == sizes.length) {
+                sizes = Arrays.copyOf(sizes, bucket * 2);
+            }
+            sizes[bucket]++;
+            bucketOf[id] = bucket;
+        }
+
+        // Second pass: fill them, keeping ids in pool order
+        int[][] ids = new int[difficultyOf.size()][];
+        for (int bucket = 0; bucket < ids.length; bucket++) {
+            ids[bucket] = new int[sizes[bucket]];
+        }
+        int[] filled = new int[ids.length];
+        for (int id = 0; id < size; id++) {
+            ids[bucketOf[id]][filled[bucketOf[id]]++] = id;
+        }
+
+        List<Bucket> buckets = new ArrayList<>(ids.length);
+        for (int bucket = 0; bucket < ids.length; bucket++) {
+            buckets.add(new Bucket(difficultyOf.get(bucket), categoryOf.get(bucket), IntBuffer.wrap(ids[bucket])));
+        }
+        return buckets;
+    }
+
+    int size() {
+        return store.size();
+    }
+
+    QuestionStore store() {
+        return store;
+    }
+
+    /**
+     * The question groups, with read-only id views, e.g. for writing them to a pack.
+     */
+    List<Bucket> buckets() {
+        List<Bucket> views = new ArrayList<>(buckets.length);
+        for (Bucket bucket : buckets) {
+            views.add(new Bucket(bucket.difficulty(), bucket.category(), bucket.ids().asReadOnlyBuffer()));
+        }
+        return views;
+    }
+
+    /**
+     * The full-text index over the questions, built from the store if the bank got none.
+     */
+    QuestionIndex index() {
+        QuestionIndex built = index;
+        if (built == null) {
+            synchronized (this) {
+                built = index;
+                if (built == null) {
+                    built = QuestionIndex.of(store);
+                    index = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    Set<String> difficulties() {
+        return Collections.unmodifiableSet(bucketsByDifficulty.keySet());
+    }
+
+    Set<String> categories() {
+        return Collections.unmodifiableSet(bucketsByCategory.keySet());
+    }
+
+    /**
+     * Number of questions whose difficulty is one of {@code difficulties} (any when empty)
+     * and whose category is {@code category} (any when {@code null}).
+     */
+    int count(Set<String> difficulties, String category) {
+        int count = 0;
+        for (int bucket : matchingBuckets(difficulties, category)) {
+            count += buckets[bucket].ids().limit();
+        }
+        return count;
+    }
+
+    List<QuizGame.Question> sample(int k, Set<String> difficulties, String category) {
+        return sample(k, difficulties, category, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Returns up to {@code k} distinct random questions matching the filter of
+     * {@link #count}, in random order.
+     */
+    List<QuizGame.Question> sample(int k, Set<String> difficulties, String category, RandomGenerator random) {
+        int[] matching = matchingBuckets(difficulties, category);
+
+        // Matching questions as one virtual array: bucket i covers [starts[i], starts[i + 1])
+        int[] starts = new int[matching.length + 1];
+        for (int i = 0; i < matching.length; i++) {
+            starts[i + 1] = starts[i] + buckets[matching[i]].ids().limit();
+        }
+        int total = starts[matching.length];
+        k = Math.min(k, total);
+
+        // Partial Fisher-Yates: only the positions touched so far are remembered
+        Map<Integer, Integer> swapped = new HashMap<>(2 * k);
+        List<QuizGame.Question> sample = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(total - i);
+            int picked = swapped.getOrDefault(j, j);
+            swapped.put(j, swapped.getOrDefault(i, i));
+            sample.add(questionAt(matching, starts, picked));
+        }
+
+        return sample;
+    }
+
+    /**
+     * Returns up to {@code k} distinct random questions that match {@code query}, see
+     * {@link QuestionIndex}, and whose difficulty is one of {@code difficulties} (any
+     * when empty), in random order.
+     */
+    List<QuizGame.Question> sampleMatching(int k, String query, Set<String> difficulties, RandomGenerator random) {
+        int[] ids = index().search(query);
+
+        int total = ids.length;
+        if (!difficulties.isEmpty()) {
+            Set<String> levels = new HashSet<>();
+            for (String difficulty : difficulties) {
+                levels.add(normalize(difficulty));
+            }
+            // search returns a fresh array, so it can be filtered and shuffled in place
+            total = 0;
+            for (int id : ids) {
+                if (levels.contains(normalize(store.difficulty(id)))) {
+                    ids[total++] = id;
+                }
+            }
+        }
+        k = Math.min(k, total);
+
+        List<QuizGame.Question> sample = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(total - i);
+            int picked = ids[j];
+            ids[j] = ids[i];
+            sample.add(store.get(picked));
+        }
+        return sample;
+    }
+
+    private QuizGame.Question questionAt(int[] matching, int[] starts, int position) {
+        // Buckets are never empty, so the starts are strictly increasing
+        int index = Arrays.binarySearch(starts, position);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return store.get(buckets[matching[index]].ids().get(position - starts[index]));
+    }
+
+    private int[] matchingBuckets(Set<String> difficulties, String category) {
+        if (difficulties.isEmpty()) {
+            if (category == null) {
+                int[] all = new int[buckets.length];
+                Arrays.setAll(all, bucket -> bucket);
+                return all;
+            }
+            return bucketsByCategory.getOrDefault(category, NO_BUCKETS);
+        }
+
+        int[] matching = new int[difficulties.size()];
+        int count = 0;
+        Set<String> seen = new HashSet<>();
+
+        for (String difficulty : difficulties) {
+            String key = normalize(difficulty);
+            if (!seen.add(key)) {
+                continue;
+            }
+
+            if (category != null) {
+                Integer bucket = bucketByPair.get(pairKey(key, category));
+                if (bucket != null) {
+                    matching = grow(matching, count);
+                    matching[count++] = bucket;
+                }
+            } else {
+                for (int bucket : bucketsByDifficulty.getOrDefault(key, NO_BUCKETS)) {
+                    matching = grow(matching, count);
+                    matching[count++] = bucket;
+                }
+            }
+        }
+
+        return Arrays.copyOf(matching, count);
+    }
+
+    private static void addBucket(Map<String, int[]> index, String key, int bucket) {
+        int[] existing = index.getOrDefault(key, NO_BUCKETS);
+        int[] updated = Arrays.copyOf(existing, existing.length + 1);
+        updated[existing.length] = bucket;
+        index.put(key, updated);
+    }
+
+    private static int[] grow(int[] array, int count) {
+        return count < array.length ? array : Arrays.copyOf(array, Math.max(4, array.length * 2));
+    }
+
+    private static String normalize(String difficulty) {
+        return difficulty.toLowerCase(Locale.ROOT);
+    }
+
+    private static String pairKey(String difficulty, String category) {
+        return difficulty + '\u0000' + category;
+    }
+}
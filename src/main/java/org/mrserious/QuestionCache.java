@@ -0,0 +1,229 @@
+package org.mrserious;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Persistent cache of questions extracted from PDFs, so unchanged files are not
+ * re-parsed on every start. Entries are keyed by absolute path and validated by
+ * size and modification time; when those differ, the SHA-256 of the content decides
+ * whether the file really changed (e.g. after a copy that only touched the mtime). The
+ * whole cache is dropped when it was written by another
+ * {@link PDFQuestionExtractor#EXTRACTOR_VERSION}.
+ */
+public class QuestionCache {
+    private static final int MAGIC = 0x43505a43; // "CPZC"
+    // 2: unreadable PDFs are quarantined instead of cached as empty, so older caches,
+    // which hold those empty lists, are dropped. 3: the header names the extractor version
+    private static final int VERSION = 3;
+
+    private final Path cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+    private volatile boolean dirty;
+
+    private record Entry(long size, long modified, byte[] hash, List<QuizGame.Question> questions) {}
+
+    private QuestionCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Opens the cache for a question folder, or returns {@code null} when caching is
+     * disabled with {@code -Dcollepuz.cache=false}.
+     */
+    public static QuestionCache forFolder(Path folder) {
+        if (!enabled()) {
+            return null;
+        }
+
+        QuestionCache cache = new QuestionCache(fileFor(folder, ".bin"));
+        try (Metrics.Timer _ = Metrics.CACHE_LOAD.time()) {
+            cache.load();
+        }
+        return cache;
+    }
+
+    static boolean enabled() {
+        return Boolean.parseBoolean(System.getProperty("collepuz.cache", "true"));
+    }
+
+    /**
+     * The file in the cache directory that holds state for a question folder, named
+     * after the folder's path and ending in {@code extension}.
+     */
+    static Path fileFor(Path folder, String extension) {
+        Path cacheDir = Paths.get(System.getProperty("collepuz.cache.dir",
+            Paths.get(System.getProperty("user.home"), ".collepuz", "cache").toString()));
+        String folderKey = HexFormat.of().formatHex(
+            sha256(folder.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8)), 0, 8);
+        return cacheDir.resolve(folderKey + extension);
+    }
+
+    /**
+     * Returns the cached questions for a PDF, running the extractor and recording its
+     * result when the file is new or has changed.
+     */
+    public List<QuizGame.Question> getOrExtract(Path pdfFile, Function<Path, List<QuizGame.Question>> extractor)
+        throws IOException {
+        String key = pdfFile.toAbsolutePath().normalize().toString();
+        used.add(key);
+
+        long size = Files.size(pdfFile);
+        long modified = Files.getLastModifiedTime(pdfFile).toMillis();
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.size() == size && entry.modified() == modified) {
+            return entry.questions();
+        }
+
+        byte[] hash = hashFile(pdfFile);
+        if (entry != null && entry.size() == size && Arrays.equals(entry.hash(), hash)) {
+            entries.put(key, new Entry(size, modified, hash, entry.questions()));
+            dirty = true;
+            return entry.questions();
+        }
+
+        List<QuizGame.Question> questions = extractor.apply(pdfFile);
+        entries.put(key, new Entry(size, modified, hash, questions));
+        dirty = true;
+        return questions;
+    }
+
+    /**
+     * Writes the cache back to disk, dropping entries for PDFs that were not seen in
+     * this run. Failures only cost a re-parse next time, so they are reported, not thrown.
+     */
+    public void save() {
+        if (entries.keySet().retainAll(used)) {
+            dirty = true;
+        }
+        if (!dirty) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(PDFQuestionExtractor.EXTRACTOR_VERSION);
+                out.writeInt(entries.size());
+
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    writeString(out, e.getKey());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.modified());
+                    out.write(entry.hash());
+                    out.writeInt(entry.questions().size());
+
+                    for (QuizGame.Question question : entry.questions()) {
+                        writeString(out, question.text());
+                        out.writeShort(question.options().size());
+                        for (String option : question.options()) {
+                            writeString(out, option);
+                        }
+                        writeString(out, question.correctAnswer());
+                        writeString(out, question.difficulty());
+                        writeString(out, question.category());
+                    }
+                }
+            }
+
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            System.out.printf("⚠️ Could not write question cache %s: %s\n", cacheFile, e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || in.readInt() != PDFQuestionExtractor.EXTRACTOR_VERSION) {
+                return;
+            }
+
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String key = readString(in);
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] hash = new byte[32];
+                in.readFully(hash);
+
+                int questionCount = in.readInt();
+                List<QuizGame.Question> questions = new ArrayList<>(questionCount);
+                for (int q = 0; q < questionCount; q++) {
+                    String text = readString(in);
+                    int optionCount = in.readUnsignedShort();
+                    List<String> options = new ArrayList<>(optionCount);
+                    for (int o = 0; o < optionCount; o++) {
+                        options.add(readString(in));
+                    }
+                    questions.add(new QuizGame.Question(text, options, readString(in), readString(in), readString(in)));
+                }
+
+                entries.put(key, new Entry(size, modified, hash, questions));
+            }
+        } catch (IOException e) {
+            // A truncated or foreign file just means a cold start
+            entries.clear();
+            System.out.printf("⚠️ Ignoring unreadable question cache %s: %s\n", cacheFile, e.getMessage());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] hashFile(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return digest.digest();
+    }
+
+    private static byte[] sha256(byte[] data) {
+        return newDigest().digest(data);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
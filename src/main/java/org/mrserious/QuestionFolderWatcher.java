@@ -0,0 +1,225 @@
+package org.mrserious;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps a {@link QuestionBank} in step with a PDF folder while the game runs. A
+ * {@link WatchService} reports PDFs being added, changed or removed; a burst of events
+ * (a file copied in over several seconds, a dozen files dropped at once) is folded into
+ * one refresh that starts once the folder has been quiet for the debounce delay. A
+ * refresh re-extracts and re-indexes only the PDFs whose size or modification time
+ * changed, under an {@link ExtractionSupervisor}, merges them with the questions and index segments already
+ * held for the other files and publishes a new bank with a single volatile write. Banks are never modified after they
+ * are published, so readers of {@link #get} never block and never see a partial update. A
+ * PDF that hangs or cannot be parsed is quarantined, so it holds up one refresh at most.
+ */
+final class QuestionFolderWatcher implements Supplier<QuestionBank>, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(QuestionFolderWatcher.class.getName());
+
+    static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(Long.getLong("collepuz.watch.debounceMillis", 1000));
+
+    private record Stamp(long size, long modified) {}
+
+    private record Extracted(Stamp stamp, PDFQuestionExtractor.IndexedFile file) {}
+
+    private final Path folder;
+    private final Duration debounce;
+    private final QuestionCache cache;
+    private final WatchService watchService;
+    private final ExtractionSupervisor extractors;
+    // Runs every refresh, one at a time, so the state below has a single writer
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("pdf-refresh").daemon().factory());
+
+    // Per PDF, in path order; only touched on the refresher thread
+    private final Map<Path, Extracted> extracted = new TreeMap<>();
+    private volatile QuestionBank bank = new QuestionBank(List.of());
+
+    // Guarded by this
+    private ScheduledFuture<?> pendingRefresh;
+
+    QuestionFolderWatcher(Path folder) throws IOException {
+        this(folder, PDFQuestionExtractor.DEFAULT_PARALLELISM, DEFAULT_DEBOUNCE);
+    }
+
+    QuestionFolderWatcher(Path folder, int parallelism, Duration debounce) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            throw new NoSuchFileException(folder.toString(), null, "not a folder");
+        }
+        this.folder = folder;
+        this.debounce = debounce;
+        this.cache = QuestionCache.forFolder(folder);
+        this.watchService = folder.getFileSystem().newWatchService();
+        this.extractors = new ExtractionSupervisor(parallelism, Quarantine.forFolder(folder));
+    }
+
+    /**
+     * Extracts the folder once, publishes the first bank and starts watching.
+     */
+    QuestionFolderWatcher start() throws IOException, InterruptedException {
+        // Watch before the first scan, so a PDF dropped in meanwhile still triggers a refresh
+        folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        try {
+            refresher.submit(this::refresh).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not extract " + folder, e.getCause());
+        }
+
+        Thread.ofPlatform().name("pdf-watch").daemon().start(this::watch);
+        return this;
+    }
+
+    /**
+     * The latest published bank. Hold on to the result for as long as a consistent view
+     * is needed, e.g. for one quiz session.
+     */
+    @Override
+    public QuestionBank get() {
+        return bank;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (pendingRefresh != null) {
+                pendingRefresh.cancel(false);
+            }
+        }
+        watchService.close();
+        refresher.shutdownNow();
+        extractors.close();
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW means events were lost, so only a rescan can tell what changed
+                    if (event.kind() == OVERFLOW || event.context() instanceof Path name && isPdf(name)) {
+                        relevant = true;
+                    }
+                }
+                if (relevant) {
+                    scheduleRefresh();
+                }
+
+                if (!key.reset()) {
+                    logger.warning("⚠️ Stopped watching " + folder + ", it is no longer accessible");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private synchronized void scheduleRefresh() {
+        // Every event pushes the refresh back, so it runs once the folder has settled
+        if (pendingRefresh != null) {
+            pendingRefresh.cancel(false);
+        }
+        try {
+            pendingRefresh = refresher.schedule(this::refresh, debounce.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    private void refresh() {
+        try {
+            Map<Path, Stamp> current = new TreeMap<>();
+            for (Path pdfFile : PDFQuestionExtractor.listPDFs(folder)) {
+                Stamp stamp = stamp(pdfFile);
+                if (stamp != null) {
+                    current.put(pdfFile, stamp);
+                }
+            }
+
+            int removed = extracted.size();
+            extracted.keySet().retainAll(current.keySet());
+            removed -= extracted.size();
+
+            // The stamp is taken before extracting: a write that lands during the
+            // extraction changes the modification time again and triggers another round
+            Map<Path, Future<PDFQuestionExtractor.IndexedFile>> changed = new TreeMap<>();
+            current.forEach((pdfFile, stamp) -> {
+                Extracted known = extracted.get(pdfFile);
+                if (known == null || !known.stamp().equals(stamp)) {
+                    changed.put(pdfFile, extractors.submit(pdfFile, cache, PDFQuestionExtractor.IndexedFile::of));
+                }
+            });
+
+            if (changed.isEmpty() && removed == 0) {
+                return;
+            }
+
+            for (Map.Entry<Path, Future<PDFQuestionExtractor.IndexedFile>> entry : changed.entrySet()) {
+                try {
+                    PDFQuestionExtractor.IndexedFile file = entry.getValue().get();
+                    extracted.put(entry.getKey(), new Extracted(current.get(entry.getKey()), file));
+                    System.out.printf("🔄 %s\n   ✅ Found %d questions\n", entry.getKey().getFileName(), file.questions().size());
+                } catch (ExecutionException e) {
+                    // Left out of the bank; the next change to the file retries it
+                    extracted.remove(entry.getKey());
+                    switch (e.getCause()) {
+                        case ExtractionSupervisor.Failure f when f.earlier() ->
+                            logger.fine("Skipping quarantined " + entry.getKey() + ", it " + f);
+                        case ExtractionSupervisor.Failure f when f.quarantined() ->
+                            System.out.printf("🔄 %s\n   🚫 Quarantined, it %s\n", entry.getKey().getFileName(), f);
+                        case ExtractionSupervisor.Failure f ->
+                            System.out.printf("🔄 %s\n   ⚠️ Left out for now, it %s\n", entry.getKey().getFileName(), f);
+                        default -> logger.log(Level.WARNING, "⚠️ Could not extract " + entry.getKey(), e.getCause());
+                    }
+                }
+            }
+
+            // Unchanged PDFs keep their index segments; only the join is redone
+            List<PDFQuestionExtractor.IndexedFile> files = new ArrayList<>();
+            for (Extracted file : extracted.values()) {
+                files.add(file.file());
+            }
+            bank = PDFQuestionExtractor.mergeIndexed(files);
+
+            if (cache != null) {
+                try (Metrics.Timer _ = Metrics.CACHE_SAVE.time()) {
+                    cache.save();
+                }
+            }
+            System.out.printf("🔄 Question bank now has %d questions (%d PDFs extracted, %d removed)\n",
+                bank.size(), changed.size(), removed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "⚠️ Could not rescan " + folder, e);
+        }
+    }
+
+    private static Stamp stamp(Path pdfFile) {
+        try {
+            return new Stamp(Files.size(pdfFile), Files.getLastModifiedTime(pdfFile).toMillis());
+        } catch (IOException e) {
+            // Deleted since it was listed
+            return null;
+        }
+    }
+
+    private static boolean isPdf(Path name) {
+        // Same rule as the listing in PDFQuestionExtractor
+        return name.toString().endsWith(".pdf");
+    }
+}
@@ -0,0 +1,413 @@
+package org.mrserious;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Full-text inverted index over question and option text, for topic quizzes such as
+ * every question mentioning photosynthesis. Terms are runs of letters and digits,
+ * lower-cased, split the same way {@link NearDuplicateIndex} reads a question. Text is
+ * indexed as stored, and PDF questions are stored after
+ * {@link LineClassifier#cleanQuestionText}, so their numbering never becomes a term.
+ *
+ * <p>Terms are kept sorted, which turns a prefix into one contiguous range. Each term's
+ * postings are its question ids in ascending order, as gaps written in 7-bit varints end
+ * to end in one byte array. Most gaps in a large bank fit in one or two bytes.
+ *
+ * <p>A PDF folder is indexed one file at a time as the extraction workers finish each
+ * PDF, into segments numbered from 0. {@link #merge} then renumbers the segments into
+ * one index over the merged bank, leaving out the near-duplicates the merge dropped.
+ *
+ * <p>Queries are words, all of which must match. {@code word*} matches any term starting
+ * with {@code word}, {@code -word} leaves out questions containing it, and {@code OR}
+ * separates alternatives: {@code photosynthesis OR chlorophyll -exam*}.
+ */
+final class QuestionIndex {
+    private static final int[] NONE = new int[0];
+
+    private final int size;
+    private final String[] terms;
+    private final int[] frequencies;
+    // Postings of term t are postings[postingStarts[t], postingStarts[t + 1])
+    private final int[] postingStarts;
+    private final byte[] postings;
+
+    private QuestionIndex(int size, String[] terms, int[] frequencies, int[] postingStarts, byte[] postings) {
+        this.size = size;
+        this.terms = terms;
+        this.frequencies = frequencies;
+        this.postingStarts = postingStarts;
+        this.postings = postings;
+    }
+
+    /**
+     * Indexes {@code questions}, numbered from 0 in list order.
+     */
+    static QuestionIndex of(List<QuizGame.Question> questions) {
+        Builder builder = new Builder();
+        questions.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Indexes every question in {@code store}, e.g. one opened from a pack.
+     */
+    static QuestionIndex of(QuestionStore store) {
+        Builder builder = new Builder();
+        for (int id = 0; id < store.size(); id++) {
+            builder.add(store.get(id));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Joins segments into one index over {@code size} questions. {@code idMaps.get(s)[i]}
+     * is the new id of question i of segment s, or -1 to leave it out. New ids must rise
+     * from segment to segment and within each, as they do when a merge keeps order.
+     */
+    static QuestionIndex merge(List<QuestionIndex> segments, List<int[]> idMaps, int size) {
+        Builder builder = new Builder();
+        for (int s = 0; s < segments.size(); s++) {
+            QuestionIndex segment = segments.get(s);
+            int[] idMap = idMaps.get(s);
+
+            for (int term = 0; term < segment.terms.length; term++) {
+                Builder.Postings merged = builder.postings(segment.terms[term]);
+                for (int id : segment.decode(term)) {
+                    if (idMap[id] >= 0) {
+                        merged.add(idMap[id]);
+                    }
+                }
+            }
+        }
+        builder.size = size;
+        return builder.build();
+    }
+
+    /**
+     * Number of questions indexed.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of distinct terms.
+     */
+    int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Ids of the questions matching {@code query}, in ascending order.
+     */
+    int[] search(String query) {
+        int[] result = NONE;
+        List<String> clauses = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR")) {
+                result = union(result, conjunction(clauses));
+                clauses.clear();
+            } else if (!word.isEmpty()) {
+                clauses.add(word);
+            }
+        }
+        return union(result, conjunction(clauses));
+    }
+
+    /**
+     * Ids of the questions containing {@code term}, which is lower-cased first.
+     */
+    int[] postings(String term) {
+        int index = Arrays.binarySearch(terms, term.toLowerCase(Locale.ROOT));
+        return index >= 0 ? decode(index) : NONE;
+    }
+
+    /**
+     * Ids of the questions containing a term that starts with {@code prefix}.
+     */
+    int[] prefix(String prefix) {
+        prefix = prefix.toLowerCase(Locale.ROOT);
+        int first = Arrays.binarySearch(terms, prefix);
+        if (first < 0) {
+            first = -first - 1;
+        }
+        int last = first;
+        while (last < terms.length && terms[last].startsWith(prefix)) {
+            last++;
+        }
+
+        if (last == first) {
+            return NONE;
+        }
+        if (last - first == 1) {
+            return decode(first);
+        }
+        // Many terms: mark their questions in a bit set, then read it back in order
+        long[] bits = new long[(size + 63) >>> 6];
+        for (int term = first; term < last; term++) {
+            for (int id : decode(term)) {
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+        return fromBits(bits);
+    }
+
+    /**
+     * Approximate heap held by the index, in bytes.
+     */
+    long footprintBytes() {
+        long bytes = 5 * 16 + (long) terms.length * 8 + (long) frequencies.length * 4
+            + (long) postingStarts.length * 4 + postings.length;
+        for (String term : terms) {
+            bytes += 40 + term.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Splits {@code text} into index terms, as done for questions and queries.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, new StringBuilder(), tokens::add);
+        return tokens;
+    }
+
+    private static void tokenize(String text, StringBuilder token, Consumer<String> sink) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                i++;
+                continue;
+            }
+            token.setLength(0);
+            for (; i < length && Character.isLetterOrDigit(c = text.charAt(i)); i++) {
+                token.append(Character.toLowerCase(c));
+            }
+            sink.accept(token.toString());
+        }
+    }
+
+    private int[] conjunction(List<String> clauses) {
+        List<int[]> required = new ArrayList<>();
+        List<int[]> excluded = new ArrayList<>();
+
+        for (String clause : clauses) {
+            boolean exclude = clause.length() > 1 && clause.charAt(0) == '-';
+            boolean isPrefix = clause.endsWith("*");
+            List<String> words = tokenize(clause);
+            if (words.isEmpty()) {
+                continue;
+            }
+
+            // "photo-synthesis" needs both words; with a '*' only the last one is a prefix
+            int[] matches = null;
+            for (int w = 0; w < words.size(); w++) {
+                int[] word = isPrefix && w == words.size() - 1 ? prefix(words.get(w)) : postings(words.get(w));
+                matches = matches == null ? word : intersect(matches, word);
+            }
+            (exclude ? excluded : required).add(matches);
+        }
+
+        if (required.isEmpty()) {
+            return NONE;
+        }
+        // Rarest first, so every intersection is bounded by the smallest list
+        required.sort(Comparator.comparingInt(ids -> ids.length));
+        int[] result = required.getFirst();
+        for (int i = 1; i < required.size() && result.length > 0; i++) {
+            result = intersect(result, required.get(i));
+        }
+        for (int[] ids : excluded) {
+            result = subtract(result, ids);
+        }
+        return result;
+    }
+
+    private int[] decode(int term) {
+        int[] ids = new int[frequencies[term]];
+        int position = postingStarts[term];
+        int id = -1;
+        for (int i = 0; i < ids.length; i++) {
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = postings[position++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            id += gap;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private static int[] intersect(int[] small, int[] large) {
+        if (small.length > large.length) {
+            return intersect(large, small);
+        }
+        int[] result = new int[small.length];
+        int count = 0;
+        int from = 0;
+        for (int id : small) {
+            // Gallop ahead, then binary search the last step
+            int step = 1;
+            int to = from;
+            while (to < large.length && large[to] < id) {
+                from = to;
+                to += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(large, from, Math.min(to + 1, large.length), id);
+            if (found >= 0) {
+                result[count++] = id;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+            if (from >= large.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] subtract(int[] ids, int[] excluded) {
+        int[] result = new int[ids.length];
+        int count = 0;
+        int j = 0;
+        for (int id : ids) {
+            while (j < excluded.length && excluded[j] < id) {
+                j++;
+            }
+            if (j == excluded.length || excluded[j] != id) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int next = j == b.length || i < a.length && a[i] <= b[j] ? a[i] : b[j];
+            result[count++] = next;
+            while (i < a.length && a[i] == next) {
+                i++;
+            }
+            while (j < b.length && b[j] == next) {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] fromBits(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] ids = new int[count];
+        int next = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                ids[next++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Adds questions one at a time, numbering them from 0.
+     */
+    static final class Builder {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final StringBuilder token = new StringBuilder();
+        private int size;
+
+        /**
+         * Ids of one term, as varint gaps, growing as questions are added.
+         */
+        private static final class Postings {
+            byte[] bytes = new byte[4];
+            int length;
+            int count;
+            int last = -1;
+
+            void add(int id) {
+                // A term repeated within a question is posted once
+                if (id == last) {
+                    return;
+                }
+                if (length + 5 > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                int gap = id - last;
+                while ((gap & ~0x7F) != 0) {
+                    bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                    gap >>>= 7;
+                }
+                bytes[length++] = (byte) gap;
+                last = id;
+                count++;
+            }
+        }
+
+        /**
+         * Indexes the text and options of {@code question} and returns its id.
+         */
+        int add(QuizGame.Question question) {
+            int id = size++;
+            tokenize(question.text(), token, term -> postings(term).add(id));
+            for (String option : question.options()) {
+                tokenize(option, token, term -> postings(term).add(id));
+            }
+            return id;
+        }
+
+        QuestionIndex build() {
+            String[] terms = postings.entrySet().stream()
+                .filter(entry -> entry.getValue().count > 0)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toArray(String[]::new);
+
+            int[] frequencies = new int[terms.length];
+            int[] postingStarts = new int[terms.length + 1];
+            long total = 0;
+            for (int t = 0; t < terms.length; t++) {
+                Postings list = postings.get(terms[t]);
+                frequencies[t] = list.count;
+                total += list.length;
+                if (total > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Question index is limited to 2 GB of postings");
+                }
+                postingStarts[t + 1] = (int) total;
+            }
+
+            byte[] bytes = new byte[(int) total];
+            for (int t = 0; t < terms.length; t++) {
+                Postings list = postings.get(terms[t]);
+                System.arraycopy(list.bytes, 0, bytes, postingStarts[t], list.length);
+            }
+            return new QuestionIndex(size, terms, frequencies, postingStarts, bytes);
+        }
+
+        private Postings postings(String term) {
+            return postings.computeIfAbsent(term, key -> new Postings());
+        }
+    }
+}
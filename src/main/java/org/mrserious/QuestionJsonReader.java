@@ -0,0 +1,274 @@
+package org.mrserious;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Streaming decoder for the OpenTDB and QuizAPI response formats. The body is read
+ * token by token with Jackson's {@link JsonParser}, and each question is handed on
+ * as soon as its object closes. No intermediate String or {@code JsonNode} tree is
+ * built for the whole body. HTML entities are decoded straight from the parser's
+ * character buffer as each value is read.
+ */
+final class QuestionJsonReader {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private QuestionJsonReader() {}
+
+    static List<QuizGame.Question> readOpenTDB(InputStream in) throws IOException {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        readOpenTDB(in, questions::add);
+        return questions;
+    }
+
+    /**
+     * Reads {@code {"response_code": n, "results": [...]}}, passes each question to
+     * {@code sink} and returns the response code (0 when it is missing).
+     */
+    static int readOpenTDB(InputStream in, Consumer<QuizGame.Question> sink) throws IOException {
+        int responseCode = 0;
+        try (JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an OpenTDB response object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (field.equals("results") && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        sink.accept(readOpenTDBQuestion(parser));
+                    }
+                } else if (field.equals("response_code") && value == JsonToken.VALUE_NUMBER_INT) {
+                    responseCode = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return responseCode;
+    }
+
+    /**
+     * Reads an OpenTDB token response, {@code {"response_code": 0, "token": "..."}}, and
+     * returns the token, or {@code null} when the response has none or a non-zero code.
+     */
+    static String readOpenTDBToken(InputStream in) throws IOException {
+        int responseCode = 0;
+        String token = null;
+        try (JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an OpenTDB token object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (field.equals("token") && value == JsonToken.VALUE_STRING) {
+                    token = parser.getText();
+                } else if (field.equals("response_code") && value == JsonToken.VALUE_NUMBER_INT) {
+                    responseCode = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return responseCode == 0 ? token : null;
+    }
+
+    /**
+     * Reads {@code {"trivia_categories": [{"id": 9, "name": "..."}, ...]}} into id to name.
+     */
+    static Map<Integer, String> readOpenTDBCategories(InputStream in) throws IOException {
+        Map<Integer, String> categories = new LinkedHashMap<>();
+        try (JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an OpenTDB category object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (field.equals("trivia_categories") && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Integer id = null;
+                        String name = null;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = parser.currentName();
+                            JsonToken token = parser.nextToken();
+                            if (key.equals("id") && token == JsonToken.VALUE_NUMBER_INT) {
+                                id = parser.getIntValue();
+                            } else if (key.equals("name")) {
+                                name = readText(parser);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        if (id != null && name != null) {
+                            categories.put(id, name);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return categories;
+    }
+
+    static List<QuizGame.Question> readQuizApi(InputStream in) throws IOException {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        readQuizApi(in, questions::add);
+        return questions;
+    }
+
+    /**
+     * Reads a QuizAPI array and passes each question to {@code sink}. Questions with no
+     * recognisable correct answer are skipped.
+     */
+    static void readQuizApi(InputStream in, Consumer<QuizGame.Question> sink) throws IOException {
+        try (JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a QuizAPI response array");
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                QuizGame.Question question = readQuizApiQuestion(parser);
+                if (question != null) {
+                    sink.accept(question);
+                }
+            }
+        }
+    }
+
+    private static QuizGame.Question readOpenTDBQuestion(JsonParser parser) throws IOException {
+        String text = null;
+        String correctAnswer = null;
+        String difficulty = "";
+        String category = "";
+        List<String> options = new ArrayList<>(4);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "question" -> text = readText(parser);
+                case "correct_answer" -> correctAnswer = readText(parser);
+                case "difficulty" -> difficulty = Objects.requireNonNullElse(readText(parser), "");
+                case "category" -> category = Objects.requireNonNullElse(readText(parser), "");
+                case "incorrect_answers" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            // A null or nested entry is no option
+                            String option = readText(parser);
+                            if (option != null) {
+                                options.add(option);
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (text == null || correctAnswer == null) {
+            throw new JsonParseException(parser, "OpenTDB question without question or correct_answer");
+        }
+
+        options.add(correctAnswer);
+        Collections.shuffle(options);
+        return new QuizGame.Question(text, options, correctAnswer, difficulty, category);
+    }
+
+    private static QuizGame.Question readQuizApiQuestion(JsonParser parser) throws IOException {
+        String text = null;
+        String correctKey = null;
+        String difficulty = "";
+        String category = "";
+        Map<String, String> answers = new LinkedHashMap<>();
+        Set<String> flaggedCorrect = new HashSet<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "question" -> text = readText(parser);
+                case "correct_answer" -> correctKey = readText(parser);
+                case "difficulty" -> difficulty = Objects.requireNonNullElse(readText(parser), "").toLowerCase();
+                case "category" -> category = Objects.requireNonNullElse(readText(parser), "");
+                case "answers" -> {
+                    // {"answer_a": "...", "answer_b": null, ...}
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = parser.currentName();
+                            parser.nextToken();
+                            String answer = readText(parser);
+                            if (answer != null) {
+                                answers.put(key, answer);
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "correct_answers" -> {
+                    // {"answer_a_correct": "true", ...}
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = parser.currentName();
+                            parser.nextToken();
+                            if (key.endsWith("_correct") && "true".equals(parser.getValueAsString())) {
+                                flaggedCorrect.add(key.substring(0, key.length() - "_correct".length()));
+                            }
+                            parser.skipChildren();
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (correctKey == null || !answers.containsKey(correctKey)) {
+            correctKey = answers.keySet().stream().filter(flaggedCorrect::contains).findFirst().orElse(null);
+        }
+        if (text == null || correctKey == null || answers.size() < 2) {
+            return null;
+        }
+
+        List<String> options = new ArrayList<>(answers.values());
+        Collections.shuffle(options);
+        return new QuizGame.Question(text, options, answers.get(correctKey), difficulty, category);
+    }
+
+    /**
+     * Returns the current scalar as text with HTML entities decoded, or {@code null} for
+     * JSON null and for objects and arrays, which are skipped.
+     */
+    private static String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return HtmlEntities.decode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+}
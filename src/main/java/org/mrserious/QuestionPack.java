@@ -0,0 +1,266 @@
+package org.mrserious;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Precompiled question bank on disk. A pack is the columns of a {@link QuestionStore} and
+ * the difficulty/category groups of a {@link QuestionBank}, each in its own section:
+ * <pre>
+ * header     magic "CPZK", version, question/string/group counts, then offset and length of
+ *            every section below
+ * table      difficulty and category names, and per group its difficulty, category and
+ *            the range of its ids in the group section
+ * groups     question ids of every group, group after group (int32)
+ * difficulty difficulty code per question (int16)
+ * category   category code per question (int16)
+ * answers    correct option per question, -1 when the answer is stored as a string (int8)
+ * questions  first string of every question, plus the end (int32)
+ * strings    start of every string in the text section, plus the end (int32)
+ * text       UTF-8 strings end to end
+ * </pre>
+ * {@link #open} reads the header and the small table and maps every other section with
+ * {@link FileChannel#map}, so opening costs the same for a thousand questions or a
+ * million, the columns take no heap, and pages are only read when a question is served.
+ * Sections start on 8-byte boundaries and are big-endian, the {@link ByteBuffer} default.
+ */
+final class QuestionPack {
+    private static final int MAGIC = 0x43505a4b; // "CPZK"
+    private static final int VERSION = 1;
+
+    private static final int TABLE = 0;
+    private static final int GROUPS = 1;
+    private static final int DIFFICULTY = 2;
+    private static final int CATEGORY = 3;
+    private static final int ANSWERS = 4;
+    private static final int QUESTIONS = 5;
+    private static final int STRINGS = 6;
+    private static final int TEXT = 7;
+    private static final int SECTIONS = 8;
+
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + SECTIONS * 2 * Long.BYTES;
+
+    private QuestionPack() {}
+
+    /**
+     * Compiles {@code bank} into a pack at {@code file}, replacing it atomically.
+     */
+    static void write(QuestionBank bank, Path file) throws IOException {
+        QuestionStore.Columns columns = bank.store().columns();
+        List<QuestionBank.Bucket> buckets = bank.buckets();
+
+        ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+        sections[TABLE] = table(columns, buckets);
+        sections[GROUPS] = groups(buckets, bank.size());
+        sections[DIFFICULTY] = bytes(columns.difficultyCodes().limit() * Short.BYTES);
+        sections[DIFFICULTY].asShortBuffer().put(columns.difficultyCodes());
+        sections[CATEGORY] = bytes(columns.categoryCodes().limit() * Short.BYTES);
+        sections[CATEGORY].asShortBuffer().put(columns.categoryCodes());
+        sections[ANSWERS] = columns.answerOption();
+        sections[QUESTIONS] = bytes(columns.firstString().limit() * Integer.BYTES);
+        sections[QUESTIONS].asIntBuffer().put(columns.firstString());
+        sections[STRINGS] = bytes(columns.stringStarts().limit() * Integer.BYTES);
+        sections[STRINGS].asIntBuffer().put(columns.stringStarts());
+        sections[TEXT] = columns.arena();
+
+        ByteBuffer header = bytes(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION)
+            .putInt(bank.size()).putInt(columns.stringStarts().limit() - 1).putInt(buckets.size()).putInt(0);
+        long offset = align(HEADER_BYTES);
+        for (ByteBuffer section : sections) {
+            header.putLong(offset).putLong(section.remaining());
+            offset = align(offset + section.remaining());
+        }
+        header.flip();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header, 0);
+            long position = align(HEADER_BYTES);
+            for (ByteBuffer section : sections) {
+                int length = section.remaining();
+                writeFully(channel, section, position);
+                position = align(position + length);
+            }
+            channel.force(true);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a pack written by {@link #write}. The header and section bounds are checked,
+     * the offsets inside the sections are not: a pack damaged after it was written fails
+     * with an {@link IndexOutOfBoundsException} when the affected question is served.
+     */
+    static QuestionBank open(Path file) throws IOException {
+        try (Metrics.Timer _ = Metrics.PACK_OPEN.time();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Not a question pack: " + file);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a question pack: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported question pack version " + version + ": " + file);
+            }
+            int questionCount = header.getInt();
+            int stringCount = header.getInt();
+            int bucketCount = header.getInt();
+            header.getInt();
+
+            MappedByteBuffer[] sections = new MappedByteBuffer[SECTIONS];
+            for (int i = 0; i < SECTIONS; i++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (offset < HEADER_BYTES || length < 0 || length > Integer.MAX_VALUE || offset > fileSize - length) {
+                    throw new IOException("Corrupt question pack section " + i + ": " + file);
+                }
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+
+            expectLength(sections[GROUPS], (long) questionCount * Integer.BYTES, file);
+            expectLength(sections[DIFFICULTY], (long) questionCount * Short.BYTES, file);
+            expectLength(sections[CATEGORY], (long) questionCount * Short.BYTES, file);
+            expectLength(sections[ANSWERS], questionCount, file);
+            expectLength(sections[QUESTIONS], (questionCount + 1L) * Integer.BYTES, file);
+            expectLength(sections[STRINGS], (stringCount + 1L) * Integer.BYTES, file);
+
+            DataInputStream table = new DataInputStream(new ByteArrayInputStream(bytesOf(sections[TABLE])));
+            String[] difficulties = readStrings(table);
+            String[] categories = readStrings(table);
+
+            IntBuffer groupIds = sections[GROUPS].asIntBuffer();
+            List<QuestionBank.Bucket> buckets = new ArrayList<>(bucketCount);
+            for (int i = 0; i < bucketCount; i++) {
+                String difficulty = readString(table);
+                String category = readString(table);
+                int start = table.readInt();
+                int length = table.readInt();
+                if (start < 0 || length < 0 || start > questionCount - length) {
+                    throw new IOException("Corrupt question pack group " + i + ": " + file);
+                }
+                buckets.add(new QuestionBank.Bucket(difficulty, category, groupIds.slice(start, length)));
+            }
+
+            QuestionStore store = new QuestionStore(new QuestionStore.Columns(
+                difficulties,
+                categories,
+                sections[DIFFICULTY].asShortBuffer(),
+                sections[CATEGORY].asShortBuffer(),
+                sections[ANSWERS],
+                sections[QUESTIONS].asIntBuffer(),
+                sections[STRINGS].asIntBuffer(),
+                sections[TEXT]
+            ));
+            return new QuestionBank(store, buckets);
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new IOException("Corrupt question pack: " + file, e);
+        }
+    }
+
+    private static ByteBuffer table(QuestionStore.Columns columns, List<QuestionBank.Bucket> buckets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        writeStrings(out, columns.difficulties());
+        writeStrings(out, columns.categories());
+        int start = 0;
+        for (QuestionBank.Bucket bucket : buckets) {
+            writeString(out, bucket.difficulty());
+            writeString(out, bucket.category());
+            out.writeInt(start);
+            out.writeInt(bucket.ids().limit());
+            start += bucket.ids().limit();
+        }
+
+        out.flush();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer groups(List<QuestionBank.Bucket> buckets, int size) {
+        ByteBuffer groups = bytes(size * Integer.BYTES);
+        IntBuffer ids = groups.asIntBuffer();
+        for (QuestionBank.Bucket bucket : buckets) {
+            ids.put(bucket.ids());
+        }
+        return groups;
+    }
+
+    private static ByteBuffer bytes(int size) {
+        return ByteBuffer.allocate(size);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & -8L;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void expectLength(ByteBuffer section, long length, Path file) throws IOException {
+        if (section.capacity() != length) {
+            throw new IOException("Corrupt question pack, a section has the wrong size: " + file);
+        }
+    }
+
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), bytes);
+        return bytes;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) {
+            throw new EOFException("Truncated name list");
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte[] bytes = in.readNBytes(Math.max(0, length));
+        if (length < 0 || bytes.length != length) {
+            throw new EOFException("Truncated string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,22 @@
+package org.mrserious;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A source of question batches for the online mode, such as one trivia API. Fetches are
+ * asynchronous and a failure is reported through the future, never thrown. Providers are
+ * shared by every quiz in the JVM, so implementations must be thread-safe.
+ */
+interface QuestionProvider {
+    /**
+     * A batch of {@code amount} questions of {@code difficulty} ("" for any).
+     * {@code round} counts the batches one consumer has asked for, so that a cache can
+     * tell a repeated request from a request for more questions.
+     */
+    record BatchRequest(int amount, String difficulty, int round) {}
+
+    String name();
+
+    CompletableFuture<List<QuizGame.Question>> fetch(BatchRequest request);
+}
@@ -0,0 +1,434 @@
+package org.mrserious;
+
+import java.util.*;
+import java.util.regex.Matcher;
+
+/**
+ * Single-pass scanner behind the pattern pass of {@link PDFQuestionExtractor}. It walks
+ * the text once, recognising numbered question lines and then the option and answer
+ * lines that follow them, and produces the same records the regular expressions do.
+ * Nothing after a question is copied: lines are handled as offsets into the text, and
+ * the searches that can run to the end of the text (the closing {@code ?}, the option and
+ * answer on the catch-all last lookahead line, and a fallback answer) keep what they found
+ * between questions, so the whole pass stays linear in the length of the text.
+ */
+class QuestionScanner {
+    // Options and answers are looked for in the rest of the question line plus 18 more;
+    // the 20th "line" is everything left, as with split("\n", 20)
+    private static final int LOOKAHEAD_LINES = 20;
+
+    private final String text;
+    private final int length;
+
+    // First '?' at or after questionMarkFrom, or length if there is none
+    private int questionMarkFrom = Integer.MAX_VALUE;
+    private int questionMark;
+
+    // First "answer is B"-style hint at or after answerHintFrom, or -1 if there is none
+    private int answerHintFrom = Integer.MAX_VALUE;
+    private int answerHintAt;
+    private String answerHint;
+
+    // First OPTION_PATTERN match searching from optionFrom, which starts at optionAt, or -1 if there is none
+    private int optionFrom = Integer.MAX_VALUE;
+    private int optionAt;
+    private String optionLabel;
+    private String optionText;
+
+    // First ANSWER_PATTERN match searching from answerFrom, which starts at answerAt, or -1 if there is none
+    private int answerFrom = Integer.MAX_VALUE;
+    private int answerAt;
+    private String answerLabel;
+
+    // Set by matchQuestionStart: where the question text starts and ends (exclusive)
+    private int questionStart;
+    private int questionEnd;
+
+    QuestionScanner(String text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Adds the questions whose text starts in {@code [from, limit)} and returns the
+     * offset the next scan has to resume from.
+     */
+    int scan(int from, int limit, List<QuizGame.Question> questions) {
+        int resumeAt = from;
+        int position = from;
+
+        while (position < length || position == 0) {
+            if (!isMatchStart(position)) {
+                position++;
+                continue;
+            }
+
+            int afterSpace = skipRegexSpace(position, length);
+            if (!matchQuestionStart(afterSpace, length, true)) {
+                position = Math.max(position + 1, afterSpace);
+                continue;
+            }
+            if (questionStart >= limit) {
+                break;
+            }
+
+            resumeAt = questionEnd;
+            readQuestion(questions);
+            position = resumeAt;
+        }
+
+        return Math.max(resumeAt, limit);
+    }
+
+    private void readQuestion(List<QuizGame.Question> questions) {
+        // matchQuestionStart is reused on the lines below, so keep this question's span
+        String questionText = text.substring(questionStart, questionEnd).trim();
+        int textEnd = questionEnd;
+
+        Map<String, String> options = new HashMap<>();
+        String correctAnswer = "";
+
+        int lineStart = textEnd;
+        for (int lineNumber = 1; lineNumber <= LOOKAHEAD_LINES; lineNumber++) {
+            if (lineNumber == LOOKAHEAD_LINES) {
+                correctAnswer = readRestWithPatterns(lineStart, options, correctAnswer);
+                break;
+            }
+            int lineEnd = indexOfNewline(lineStart);
+
+            if (hasOtherLineTerminator(lineStart, lineEnd)) {
+                // Rare shapes where the plain line rules do not hold; let the regexes decide
+                correctAnswer = readLineWithPatterns(lineStart, lineEnd, options, correctAnswer);
+                if (isBlank(lineStart, lineEnd)
+                    || PDFQuestionExtractor.QUESTION_PATTERNS.matcher(text).region(lineStart, lineEnd).find()) {
+                    break;
+                }
+            } else {
+                readOption(lineStart, lineEnd, options);
+
+                String answer = readAnswer(lineStart, lineEnd);
+                if (answer != null) {
+                    correctAnswer = answer;
+                }
+
+                // Stop if we hit another question or empty lines
+                if (isBlank(lineStart, lineEnd) || matchQuestionStart(skipRegexSpace(lineStart, lineEnd), lineEnd, false)) {
+                    break;
+                }
+            }
+
+            if (lineEnd >= length) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        if (options.size() >= 2) {
+            List<String> optionsList = new ArrayList<>(options.values());
+
+            // If no explicit correct answer found, try to detect it
+            if (correctAnswer.isEmpty()) {
+                String hint = findAnswerHint(textEnd);
+                correctAnswer = hint != null ? hint : options.keySet().stream().findFirst().orElse("A");
+            }
+
+            String correctAnswerText = options.getOrDefault(correctAnswer, optionsList.getFirst());
+            questions.add(new QuizGame.Question(
+                LineClassifier.cleanQuestionText(questionText),
+                optionsList,
+                correctAnswerText,
+                "medium",
+                "PDF Extract"
+            ));
+        }
+    }
+
+    private String readLineWithPatterns(int start, int end, Map<String, String> options, String correctAnswer) {
+        Matcher optionMatcher = PDFQuestionExtractor.OPTION_PATTERN.matcher(text).region(start, end);
+        if (optionMatcher.find()) {
+            options.put(optionMatcher.group(1).toUpperCase(), optionMatcher.group(2).trim());
+        }
+
+        Matcher answerMatcher = PDFQuestionExtractor.ANSWER_PATTERN.matcher(text).region(start, end);
+        return answerMatcher.find() ? answerMatcher.group(1).toUpperCase() : correctAnswer;
+    }
+
+    /**
+     * As {@link #readLineWithPatterns} for the catch-all last lookahead line, which runs
+     * to the end of the text. Questions are scanned in order, so a match found for one
+     * question is reused by the next ones until the scan moves past it.
+     */
+    private String readRestWithPatterns(int start, Map<String, String> options, String correctAnswer) {
+        Matcher optionMatcher = PDFQuestionExtractor.OPTION_PATTERN.matcher(text).region(start, length);
+        // Only a fresh search lets ^ match at its first position, so that one is checked on its own
+        if (optionMatcher.lookingAt()) {
+            options.put(optionMatcher.group(1).toUpperCase(), optionMatcher.group(2).trim());
+        } else {
+            if (start < optionFrom || (optionAt >= 0 && start > optionAt)) {
+                optionFrom = start;
+                optionAt = -1;
+                if (optionMatcher.region(start, length).find()) {
+                    optionAt = optionMatcher.start();
+                    optionLabel = optionMatcher.group(1).toUpperCase();
+                    optionText = optionMatcher.group(2).trim();
+                }
+            }
+            if (optionAt >= 0) {
+                options.put(optionLabel, optionText);
+            }
+        }
+
+        if (start < answerFrom || (answerAt >= 0 && start > answerAt)) {
+            answerFrom = start;
+            answerAt = -1;
+            Matcher answerMatcher = PDFQuestionExtractor.ANSWER_PATTERN.matcher(text).region(start, length);
+            if (answerMatcher.find()) {
+                answerAt = answerMatcher.start();
+                answerLabel = answerMatcher.group(1).toUpperCase();
+            }
+        }
+        return answerAt >= 0 ? answerLabel : correctAnswer;
+    }
+
+    /**
+     * Whether a match of the question pattern may begin at {@code position}: the start of
+     * the text, a newline, or the start of a line.
+     */
+    private boolean isMatchStart(int position) {
+        if (position == 0 || (position < length && text.charAt(position) == '\n')) {
+            return true;
+        }
+        if (position >= length) {
+            return false;
+        }
+
+        char previous = text.charAt(position - 1);
+        return previous == '\n' || previous == '\u0085' || previous == '\u2028' || previous == '\u2029'
+            || (previous == '\r' && text.charAt(position) != '\n');
+    }
+
+    /**
+     * Matches a question number ("1.", "Q1.", "Question 1") at {@code start}, followed by
+     * text up to the first {@code ?} before {@code end}. On success, questionStart and
+     * questionEnd hold the span of the question text including the {@code ?}.
+     */
+    private boolean matchQuestionStart(int start, int end, boolean wholeText) {
+        int position = start;
+        if (position >= end) {
+            return false;
+        }
+
+        char first = text.charAt(position);
+        if (isDigit(first)) {
+            // Plain number
+        } else if (first == 'q' || first == 'Q') {
+            if (matchesIgnoreCase(position, end, "question") && position + 8 < end && isRegexSpace(text.charAt(position + 8))) {
+                position = skipRegexSpace(position + 8, end);
+            } else {
+                position++;
+                if (position < end && text.charAt(position) == '.') {
+                    position++;
+                }
+                position = skipRegexSpace(position, end);
+            }
+        } else {
+            return false;
+        }
+
+        int digitsStart = position;
+        while (position < end && isDigit(text.charAt(position))) {
+            position++;
+        }
+        int digits = position - digitsStart;
+        if (digits == 0) {
+            return false;
+        }
+
+        int suffixStart = position;
+        if (position < end && text.charAt(position) == '.') {
+            position++;
+        }
+        position = skipRegexSpace(position, end);
+
+        int mark = wholeText ? nextQuestionMark(position + 1) : indexOf('?', position + 1, end);
+        if (mark < end) {
+            questionStart = position;
+            questionEnd = mark + 1;
+            return true;
+        }
+
+        // The only way the lazy question text can still match is by giving one character
+        // of the number back to a lone trailing '?'
+        boolean canGiveBack = digits > 1 || position > suffixStart;
+        if (position < end && text.charAt(position) == '?' && canGiveBack) {
+            questionStart = position - 1;
+            questionEnd = position + 1;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void readOption(int start, int end, Map<String, String> options) {
+        int position = skipRegexSpace(start, end);
+        if (position >= end || !isOptionLabel(text.charAt(position))) {
+            return;
+        }
+
+        String label = String.valueOf(Character.toUpperCase(text.charAt(position)));
+        int labelEnd = position + 1;
+        if (labelEnd >= end) {
+            return;
+        }
+
+        position = labelEnd;
+        if (position < end && text.charAt(position) == '.') {
+            position++;
+        }
+        position = skipRegexSpace(position, end);
+        if (position < end && (text.charAt(position) == ')' || text.charAt(position) == '.')) {
+            position++;
+        }
+        position = skipRegexSpace(position, end);
+
+        // With nothing left after the label, the option text backtracks to the last character
+        int optionStart = position < end ? position : end - 1;
+        options.put(label, text.substring(optionStart, end).trim());
+    }
+
+    /**
+     * Finds an "answer: B" / "correct B" / "solution B" mark anywhere in the line.
+     */
+    private String readAnswer(int start, int end) {
+        for (int position = start; position < end; position++) {
+            int keywordEnd = matchAnswerKeyword(position, end);
+            if (keywordEnd < 0) {
+                continue;
+            }
+
+            int letter = skipRegexSpace(keywordEnd, end);
+            if (letter < end && text.charAt(letter) == ':') {
+                letter++;
+            }
+            letter = skipRegexSpace(letter, end);
+
+            if (letter < end && isOptionLabel(text.charAt(letter))) {
+                return String.valueOf(Character.toUpperCase(text.charAt(letter)));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks for "the answer is B"-style hints anywhere after {@code from}. Questions are
+     * scanned in order, so the last hit is reused until the scan moves past it.
+     */
+    private String findAnswerHint(int from) {
+        if (from >= answerHintFrom && (answerHintAt < 0 || from <= answerHintAt)) {
+            return answerHint;
+        }
+
+        answerHintFrom = from;
+        answerHintAt = -1;
+        answerHint = null;
+
+        for (int position = from; position < length; position++) {
+            int keywordEnd = matchAnswerKeyword(position, length);
+            if (keywordEnd < 0) {
+                continue;
+            }
+
+            int letter = skipRegexSpace(keywordEnd, length);
+            if (matchesIgnoreCase(letter, length, "is")) {
+                letter += 2;
+            } else if (letter < length && text.charAt(letter) == ':') {
+                letter++;
+            }
+            letter = skipRegexSpace(letter, length);
+
+            if (letter < length && isOptionLabel(text.charAt(letter))) {
+                answerHintAt = position;
+                answerHint = String.valueOf(Character.toUpperCase(text.charAt(letter)));
+                break;
+            }
+        }
+
+        return answerHint;
+    }
+
+    private int matchAnswerKeyword(int position, int end) {
+        for (String keyword : new String[]{"answer", "correct", "solution"}) {
+            if (matchesIgnoreCase(position, end, keyword)) {
+                return position + keyword.length();
+            }
+        }
+        return -1;
+    }
+
+    private int nextQuestionMark(int from) {
+        if (from < questionMarkFrom || from > questionMark) {
+            questionMarkFrom = from;
+            int mark = from < length ? text.indexOf('?', from) : -1;
+            questionMark = mark < 0 ? length : mark;
+        }
+        return questionMark;
+    }
+
+    private int indexOf(char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private int indexOfNewline(int from) {
+        int newline = text.indexOf('\n', from);
+        return newline < 0 ? length : newline;
+    }
+
+    private boolean hasOtherLineTerminator(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBlank(int start, int end) {
+        // Same notion of blank as String.trim()
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesIgnoreCase(int position, int end, String word) {
+        return position + word.length() <= end && text.regionMatches(true, position, word, 0, word.length());
+    }
+
+    private int skipRegexSpace(int position, int end) {
+        while (position < end && isRegexSpace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isRegexSpace(char c) {
+        // \s without UNICODE_CHARACTER_CLASS
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isOptionLabel(char c) {
+        return (c >= 'A' && c <= 'D') || (c >= 'a' && c <= 'd');
+    }
+}
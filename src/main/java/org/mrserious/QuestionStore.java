@@ -0,0 +1,310 @@
+package org.mrserious;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Columnar storage for a large question pool. Difficulties and categories are interned
+ * to 16-bit codes. Question texts, options and answers are UTF-8 strings laid end to
+ * end in one byte arena (on the heap or, with {@code -Dcollepuz.store.offHeap=true},
+ * in a direct buffer), located through a single offset array. When the correct answer
+ * is one of the options, it is stored as that option's index instead of a second copy.
+ * {@link #get} materialises a regular {@link QuizGame.Question} on demand, so callers
+ * keep the record API, and only the questions actually served ever exist as objects.
+ * The columns are buffers so that a {@link QuestionPack} can hand over memory-mapped
+ * ones unchanged; all reads are absolute, so a store is safe to share between threads.
+ */
+final class QuestionStore {
+    private static final boolean OFF_HEAP = Boolean.getBoolean("collepuz.store.offHeap");
+    private static final int MAX_CODES = 1 << 16;
+
+    private final String[] difficulties;
+    private final String[] categories;
+    private final ShortBuffer difficultyCodes;
+    private final ShortBuffer categoryCodes;
+
+    private final ByteBuffer arena;
+    // Strings of question i are [firstString[i], firstString[i + 1]): text, options, and
+    // the answer when it is not an option; string s is arena[stringStarts[s], stringStarts[s + 1])
+    private final IntBuffer firstString;
+    private final IntBuffer stringStarts;
+    // Index of the correct answer among the options, or -1 when it is stored separately
+    private final ByteBuffer answerOption;
+
+    /**
+     * The raw columns of a store, as written to and mapped from a question pack.
+     */
+    record Columns(String[] difficulties, String[] categories, ShortBuffer difficultyCodes,
+                   ShortBuffer categoryCodes, ByteBuffer answerOption, IntBuffer firstString,
+                   IntBuffer stringStarts, ByteBuffer arena) {}
+
+    QuestionStore(Columns columns) {
+        int size = columns.difficultyCodes().limit();
+        if (columns.categoryCodes().limit() != size || columns.answerOption().limit() != size
+            || columns.firstString().limit() != size + 1) {
+            throw new IllegalArgumentException("Question columns differ in length");
+        }
+
+        this.difficulties = columns.difficulties();
+        this.categories = columns.categories();
+        this.difficultyCodes = columns.difficultyCodes();
+        this.categoryCodes = columns.categoryCodes();
+        this.answerOption = columns.answerOption();
+        this.firstString = columns.firstString();
+        this.stringStarts = columns.stringStarts();
+        this.arena = columns.arena();
+    }
+
+    private QuestionStore(Builder builder) {
+        this(builder.columns());
+    }
+
+    static QuestionStore of(Collection<QuizGame.Question> questions) {
+        Builder builder = new Builder(OFF_HEAP);
+        questions.forEach(builder::add);
+        return builder.build();
+    }
+
+    int size() {
+        return difficultyCodes.limit();
+    }
+
+    /**
+     * Builds the record for question {@code id}.
+     */
+    QuizGame.Question get(int id) {
+        int first = firstString.get(id);
+        int last = firstString.get(id + 1);
+        int answer = answerOption.get(id);
+
+        String[] options = new String[(answer >= 0 ? last : last - 1) - first - 1];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = string(first + 1 + i);
+        }
+
+        return new QuizGame.Question(
+            string(first),
+            List.of(options),
+            answer >= 0 ? options[answer] : string(last - 1),
+            difficulty(id),
+            category(id)
+        );
+    }
+
+    /**
+     * The text of question {@code id}, without building the whole record.
+     */
+    String text(int id) {
+        return string(firstString.get(id));
+    }
+
+    String difficulty(int id) {
+        return difficulties[difficultyCode(id)];
+    }
+
+    String category(int id) {
+        return categories[categoryCode(id)];
+    }
+
+    int difficultyCode(int id) {
+        return Short.toUnsignedInt(difficultyCodes.get(id));
+    }
+
+    int categoryCode(int id) {
+        return Short.toUnsignedInt(categoryCodes.get(id));
+    }
+
+    /**
+     * Distinct difficulties, indexed by code.
+     */
+    List<String> difficultyNames() {
+        return List.of(difficulties);
+    }
+
+    /**
+     * Distinct categories, indexed by code.
+     */
+    List<String> categoryNames() {
+        return List.of(categories);
+    }
+
+    /**
+     * Read-only views of the columns, e.g. for writing them to a pack.
+     */
+    Columns columns() {
+        return new Columns(difficulties.clone(), categories.clone(),
+            difficultyCodes.asReadOnlyBuffer(), categoryCodes.asReadOnlyBuffer(), answerOption.asReadOnlyBuffer(),
+            firstString.asReadOnlyBuffer(), stringStarts.asReadOnlyBuffer(), arena.asReadOnlyBuffer());
+    }
+
+    /**
+     * Approximate heap held by the store, in bytes, excluding direct or mapped columns.
+     */
+    long heapBytes() {
+        long bytes = 6 * 16;
+        for (String name : difficulties) {
+            bytes += 40 + name.length();
+        }
+        for (String name : categories) {
+            bytes += 40 + name.length();
+        }
+        for (Buffer column : buffers()) {
+            bytes += column.isDirect() ? 64 : columnBytes(column);
+        }
+        return bytes;
+    }
+
+    /**
+     * Bytes of the columns held in direct or memory-mapped buffers.
+     */
+    long offHeapBytes() {
+        long bytes = 0;
+        for (Buffer column : buffers()) {
+            if (column.isDirect()) {
+                bytes += columnBytes(column);
+            }
+        }
+        return bytes;
+    }
+
+    private List<Buffer> buffers() {
+        return List.of(difficultyCodes, categoryCodes, answerOption, firstString, stringStarts, arena);
+    }
+
+    private static long columnBytes(Buffer column) {
+        int width = switch (column) {
+            case ShortBuffer _ -> Short.BYTES;
+            case IntBuffer _ -> Integer.BYTES;
+            default -> 1;
+        };
+        return (long) width * column.capacity();
+    }
+
+    private String string(int index) {
+        int start = stringStarts.get(index);
+        int length = stringStarts.get(index + 1) - start;
+
+        if (arena.hasArray()) {
+            return new String(arena.array(), arena.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        arena.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class Builder {
+        private final boolean offHeap;
+        private final Map<String, Integer> difficulties = new LinkedHashMap<>();
+        private final Map<String, Integer> categories = new LinkedHashMap<>();
+
+        private int size;
+        private short[] difficultyCodes = new short[64];
+        private short[] categoryCodes = new short[64];
+        private byte[] answerOption = new byte[64];
+        private int[] firstString = new int[65];
+
+        private int strings;
+        private int[] stringStarts = new int[257];
+        private byte[] arena = new byte[16 * 1024];
+        private int arenaSize;
+
+        Builder(boolean offHeap) {
+            this.offHeap = offHeap;
+        }
+
+        /**
+         * Appends a question and returns its id.
+         */
+        int add(QuizGame.Question question) {
+            if (size == difficultyCodes.length) {
+                int capacity = size * 2;
+                difficultyCodes = Arrays.copyOf(difficultyCodes, capacity);
+                categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+                answerOption = Arrays.copyOf(answerOption, capacity);
+                firstString = Arrays.copyOf(firstString, capacity + 1);
+            }
+
+            int id = size++;
+            difficultyCodes[id] = (short) intern(difficulties, question.difficulty());
+            categoryCodes[id] = (short) intern(categories, question.category());
+
+            firstString[id] = strings;
+            addString(question.text());
+            List<String> options = question.options();
+            for (String option : options) {
+                addString(option);
+            }
+
+            int answer = options.indexOf(question.correctAnswer());
+            if (answer >= 0 && answer <= Byte.MAX_VALUE) {
+                answerOption[id] = (byte) answer;
+            } else {
+                answerOption[id] = -1;
+                addString(question.correctAnswer());
+            }
+            firstString[id + 1] = strings;
+
+            return id;
+        }
+
+        QuestionStore build() {
+            return new QuestionStore(this);
+        }
+
+        private Columns columns() {
+            ByteBuffer text;
+            if (offHeap) {
+                text = ByteBuffer.allocateDirect(arenaSize);
+                text.put(0, arena, 0, arenaSize);
+            } else {
+                text = ByteBuffer.wrap(Arrays.copyOf(arena, arenaSize));
+            }
+
+            return new Columns(
+                difficulties.keySet().toArray(String[]::new),
+                categories.keySet().toArray(String[]::new),
+                ShortBuffer.wrap(Arrays.copyOf(difficultyCodes, size)),
+                ShortBuffer.wrap(Arrays.copyOf(categoryCodes, size)),
+                ByteBuffer.wrap(Arrays.copyOf(answerOption, size)),
+                IntBuffer.wrap(Arrays.copyOf(firstString, size + 1)),
+                IntBuffer.wrap(Arrays.copyOf(stringStarts, strings + 1)),
+                text
+            );
+        }
+
+        private void addString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Integer.MAX_VALUE - 8 - arenaSize) {
+                throw new IllegalStateException("Question store is limited to 2 GB of text");
+            }
+
+            if (arenaSize + bytes.length > arena.length) {
+                arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(2L * arena.length, (long) arenaSize + bytes.length)));
+            }
+            System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+            arenaSize += bytes.length;
+
+            if (strings + 1 == stringStarts.length) {
+                stringStarts = Arrays.copyOf(stringStarts, stringStarts.length * 2);
+            }
+            stringStarts[++strings] = arenaSize;
+        }
+
+        private static int intern(Map<String, Integer> codes, String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (codes.size() == MAX_CODES) {
+                    throw new IllegalStateException("More than " + MAX_CODES + " distinct values: " + value);
+                }
+                code = codes.size();
+                codes.put(value, code);
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.mrserious;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+
+/**
+ * Plays many quizzes without a console through {@link QuizEngine}, each thread with its
+ * own players, sessions and latency histogram, so threads share nothing while they run.
+ * Reports sessions per second, per-answer latency and, where the JVM can tell, bytes
+ * allocated per answer.
+ */
+final class QuizBatch {
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    /**
+     * @param allocatedBytes allocated by the worker threads, or -1 where the JVM cannot tell
+     */
+    record Report(long sessions, long answers, long correct, long elapsedNanos,
+                  LatencyHistogram answerLatency, long allocatedBytes) {
+
+        double sessionsPerSecond() {
+            return sessions * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        double answersPerSecond() {
+            return answers * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        void print(PrintStream out) {
+            out.printf("🏁 %,d sessions, %,d answers (%.1f%% right) in %.2f s%n",
+                sessions, answers, correct * 100.0 / Math.max(1, answers), elapsedNanos / 1e9);
+            out.printf("   %,.0f sessions/s, %,.0f answers/s%n", sessionsPerSecond(), answersPerSecond());
+            out.printf("   answer latency: mean %,.0f ns, p50 %,d ns, p99 %,d ns, p99.9 %,d ns, max %,d ns%n",
+                answerLatency.mean(), answerLatency.percentile(0.5), answerLatency.percentile(0.99),
+                answerLatency.percentile(0.999), answerLatency.max());
+            if (allocatedBytes >= 0 && answers > 0) {
+                out.printf("   allocated: %,.1f bytes/answer, %,.0f bytes/session%n",
+                    (double) allocatedBytes / answers, (double) allocatedBytes / Math.max(1, sessions));
+            }
+        }
+    }
+
+    private QuizBatch() {}
+
+    /**
+     * Plays {@code sessions} quizzes of {@code difficulty} drawn from {@code bank} on
+     * {@code threads} threads. Each thread makes its player once, from its own random
+     * generator, and keeps it for all its sessions.
+     */
+    static Report run(QuestionBank bank, String difficulty, long sessions, int threads,
+                      Function<RandomGenerator, QuizPlayer> players) throws InterruptedException {
+        threads = (int) Math.clamp(threads, 1, Math.max(1, sessions));
+        List<Callable<Report>> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            long share = sessions / threads + (t < sessions % threads ? 1 : 0);
+            workers.add(() -> play(bank, difficulty, share, players));
+        }
+
+        long started = System.nanoTime();
+        List<Future<Report>> results;
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            results = pool.invokeAll(workers);
+        }
+        long elapsed = System.nanoTime() - started;
+
+        long played = 0;
+        long answers = 0;
+        long correct = 0;
+        long allocated = 0;
+        LatencyHistogram latency = new LatencyHistogram();
+        for (Future<Report> result : results) {
+            Report report;
+            try {
+                report = result.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A batch worker failed", e.getCause());
+            }
+            played += report.sessions();
+            answers += report.answers();
+            correct += report.correct();
+            allocated = allocated < 0 || report.allocatedBytes() < 0 ? -1 : allocated + report.allocatedBytes();
+            latency.add(report.answerLatency());
+        }
+        return new Report(played, answers, correct, elapsed, latency, allocated);
+    }
+
+    private static Report play(QuestionBank bank, String difficulty, long sessions,
+                               Function<RandomGenerator, QuizPlayer> players) {
+        RandomGenerator random = ThreadLocalRandom.current();
+        QuizPlayer player = players.apply(random);
+        LatencyHistogram latency = new LatencyHistogram();
+        long answers = 0;
+        long correct = 0;
+
+        long allocatedBefore = allocatedByThisThread();
+        long started = System.nanoTime();
+        for (long i = 0; i < sessions; i++) {
+            QuizSession session = new QuizSession(QuizGame.selectQuestions(bank, difficulty), random);
+            QuizEngine.play(session, player, latency);
+            answers += session.answered();
+            correct += session.score();
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocatedAfter = allocatedByThisThread();
+
+        long allocated = allocatedBefore >= 0 && allocatedAfter >= allocatedBefore ? allocatedAfter - allocatedBefore : -1;
+        return new Report(sessions, answers, correct, elapsed, latency, allocated);
+    }
+
+    private static long allocatedByThisThread() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+package org.mrserious;
+
+/**
+ * Quiz rules without any I/O: asks a {@link QuizPlayer} for each answer in a
+ * {@link QuizSession} and scores it. The console quiz and batch runs both play through
+ * here. Apart from the player, an answer allocates nothing, so a batch run can play
+ * millions of sessions without the garbage collector taking over the measurement.
+ */
+final class QuizEngine {
+    private QuizEngine() {}
+
+    /**
+     * Plays {@code session} to its end, or until the player quits. Returns whether every
+     * question was played.
+     */
+    static boolean play(QuizSession session, QuizPlayer player) {
+        return play(session, player, null);
+    }
+
+    /**
+     * As {@link #play(QuizSession, QuizPlayer)}, recording in {@code answerLatency}, unless
+     * {@code null}, how long each answer took from moving on to the question until it was scored.
+     */
+    static boolean play(QuizSession session, QuizPlayer player, LatencyHistogram answerLatency) {
+        while (session.hasNext()) {
+            long started = answerLatency != null ? System.nanoTime() : 0;
+            session.next();
+
+            int choice = player.choose(session);
+            if (choice == QuizPlayer.QUIT) {
+                return false;
+            }
+
+            boolean correct = false;
+            if (choice >= 1 && choice <= session.optionCount()) {
+                correct = session.answer(choice);
+            } else {
+                session.forfeit();
+            }
+            if (answerLatency != null) {
+                answerLatency.record(System.nanoTime() - started);
+            }
+
+            player.answered(session, choice, correct);
+        }
+        return true;
+    }
+}
@@ -1,16 +1,23 @@
 package org.mrserious;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParseException;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.random.RandomGenerator;
 
 public class QuizGame {
     private static final Logger logger = Logger.getLogger(QuizGame.class.getName());
@@ -18,13 +25,59 @@ public class QuizGame {
     private static final HttpClient httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
-    private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    // Free Quiz APIs
-    private static final String OPENTB_API = "https://opentdb.com/api.php";
-    private static final String QUIZ_API = "http://quizapi.io/api/v1/questions";
+    // Free Quiz APIs, overridable to point the game at a local stub
+    private static final String OPENTB_API = System.getProperty("collepuz.opentdb.url", "https://opentdb.com/api.php");
+    private static final String QUIZ_API = System.getProperty("collepuz.quizapi.url", "http://quizapi.io/api/v1/questions");
+
+    private static final int QUIZ_LENGTH = 20;
+    private static final int ONLINE_BATCH_SIZE = 20;
+    // How long OpenTDB may take before QuizAPI is asked as well
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(Long.getLong("collepuz.online.hedgeDelayMillis", 2000));
+
+    // Online requests: adaptive timeout range, and how the providers are shielded
+    private static final Duration MIN_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration MAX_TIMEOUT = Duration.ofMillis(Long.getLong("collepuz.online.timeoutMillis", 10_000));
+    private static final int BREAKER_FAILURES = 5;
+    private static final Duration BREAKER_OPEN = Duration.ofSeconds(30);
+    private static final double RETRY_RATIO = 0.2;
+    private static final double MIN_RETRIES_PER_SECOND = 1;
+    private static final Duration RETRY_DELAY = Duration.ofMillis(250);
+    private static final Duration CACHE_TTL = Duration.ofSeconds(Long.getLong("collepuz.online.cacheSeconds", 60));
+    private static final int CACHE_ENTRIES = 64;
+    // OpenTDB allows one request per IP every five seconds
+    private static final Duration OPENTDB_INTERVAL = Duration.ofMillis(Long.getLong("collepuz.opentdb.minIntervalMillis", 5000));
+    private static final int OPENTDB_PARALLELISM = Integer.getInteger("collepuz.opentdb.parallelism", 4);
+
+    // Open Trivia Database first, QuizAPI raced against it when it is slow or failing.
+    // Shared by every quiz in the JVM, so the breakers and caches see all the traffic
+    private static final OpenTDBClient OPENTDB_CLIENT = new OpenTDBClient(
+            httpClient, URI.create(OPENTB_API), OPENTDB_INTERVAL, MIN_TIMEOUT, MAX_TIMEOUT);
+    private static final QuestionProvider OPENTDB = resilient(OPENTDB_CLIENT);
+    private static final QuestionProvider QUIZAPI = resilient(new HttpQuestionProvider(
+            "QuizAPI", httpClient, QuizGame::quizApiRequest, QuestionJsonReader::readQuizApi, MIN_TIMEOUT, MAX_TIMEOUT));
+
+    private static final int DEFAULT_SERVER_PORT = 7070;
+    private static final int SEARCH_RESULTS = 20;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("pack")) {
+            pack(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("search")) {
+            search(args);
+            return;
+        }
 
-    public static void main() {
         System.out.println("🎓 Welcome to the Ultimate CollePuz 🎓");
         System.out.println("======================================");
 
@@ -35,246 +88,457 @@ public class QuizGame {
         }
     }
 
-    private static void startQuizSession() throws Exception {
-        System.out.print("\n\uD83D\uDCC1 Enter path to your PDF questions folder (or press Enter to use online quiz): ");
-        String folderPath = scanner.nextLine().trim();
+    /**
+     * {@code serve <pdf folder | pack> [port] [--watch]}: hosts quizzes for many players at once,
+     * see {@link QuizServer}. With {@code --watch}, PDFs added to or changed in the folder are
+     * picked up while the server runs, see {@link QuestionFolderWatcher}.
+     */
+    private static void serve(String[] args) {
+        List<String> options = new ArrayList<>(List.of(args).subList(1, args.length));
+        boolean watch = options.remove("--watch");
+        if (options.isEmpty() || options.size() > 2 || watch && !Files.isDirectory(Paths.get(options.getFirst()))) {
+            System.out.println("Usage: serve <pdf folder | pack> [port] [--watch]  (--watch needs a folder)");
+            return;
+        }
+        int port = options.size() == 2 ? Integer.parseInt(options.get(1)) : DEFAULT_SERVER_PORT;
 
-        List<Question> questions;
-        if (folderPath.isEmpty()) {
-            questions = getOnlineQuestions();
-        } else {
-            questions = PDFQuestionExtractor.extractQuestionsFromPDFs(folderPath);
+        try {
+            if (watch) {
+                try (QuestionFolderWatcher watcher = new QuestionFolderWatcher(Paths.get(options.getFirst())).start();
+                     QuizServer server = new QuizServer(watcher, port).start()) {
+                    System.out.printf("🌐 Serving %d questions on port %d, watching %s for new PDFs\n",
+                        watcher.get().size(), server.port(), options.getFirst());
+                    server.awaitClose();
+                }
+                return;
+            }
+
+            QuestionBank bank = loadBank(options.getFirst());
+            if (bank == null) {
+                System.out.println("❌ No questions found. Exiting...");
+                return;
+            }
+
+            try (QuizServer server = new QuizServer(bank, port).start()) {
+                System.out.printf("🌐 Serving %d questions on port %d\n", bank.size(), server.port());
+                server.awaitClose();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "❌ The quiz server stopped", e);
         }
+    }
 
-        if (questions.isEmpty()) {
-            System.out.println("❌ No questions found. Exiting...");
+    /**
+     * {@code batch <pdf folder | pack> [sessions] [threads] [random | accuracy:p | script:file] [easy | medium | hard]}:
+     * plays quizzes without a console through {@link QuizEngine}, see {@link QuizBatch},
+     * and reports sessions per second and per-answer latency. A script has one choice per
+     * line, replayed from the top for every session.
+     */
+    private static void batch(String[] args) {
+        if (args.length < 2 || args.length > 6) {
+            System.out.println("Usage: batch <pdf folder | pack> [sessions] [threads] [random | accuracy:p | script:file] [easy | medium | hard]");
             return;
         }
+        long sessions = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String player = args.length > 4 ? args[4] : "random";
+        String difficulty = args.length > 5 ? args[5] : "medium";
 
-        Collections.shuffle(questions);
+        try {
+            Function<RandomGenerator, QuizPlayer> players;
+            if (player.equals("random")) {
+                players = QuizPlayer::random;
+            } else if (player.startsWith("accuracy:")) {
+                double accuracy = Double.parseDouble(player.substring("accuracy:".length()));
+                players = random -> QuizPlayer.accurate(accuracy, random);
+            } else if (player.startsWith("script:")) {
+                int[] choices = QuizPlayer.parseScript(Files.readAllLines(Paths.get(player.substring("script:".length()))));
+                players = random -> QuizPlayer.scripted(choices);
+            } else {
+                System.out.println("❌ Unknown player: " + player + " (random, accuracy:p or script:file)");
+                return;
+            }
 
-        System.out.println("\n\uD83C\uDFAF Select difficulty level:");
-        System.out.println("1. Easy");
-        System.out.println("2. Medium");
-        System.out.println("3. Hard");
-        System.out.print("Choice (1-3): ");
+            QuestionBank bank = loadBank(args[1]);
+            if (bank == null) {
+                System.out.println("❌ No questions found. Exiting...");
+                return;
+            }
 
-        int difficultyChoice = scanner.nextInt();
-        scanner.nextLine(); // consume newline
+            System.out.printf("🤖 Playing %,d sessions on %d threads...\n", sessions, threads);
+            QuizBatch.run(bank, difficulty, sessions, threads, players).print(System.out);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "❌ The batch run failed", e);
+        }
+    }
 
-        String difficulty = switch (difficultyChoice) {
-            case 1 -> "easy";
-            case 3 -> "hard";
-            default -> "medium";
-        };
+    /**
+     * {@code search <pdf folder | pack> <query...>}: lists the questions matching a
+     * {@link QuestionIndex} query, e.g. {@code search notes "photosynthesis OR chlorophyll -exam*"}.
+     */
+    private static void search(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: search <pdf folder | pack> <query...>");
+            return;
+        }
+        String query = String.join(" ", List.of(args).subList(2, args.length));
 
-        // Filter questions by difficulty if available
-        List<Question> filteredQuestions = questions.stream()
-                .filter(q -> q.difficulty().equalsIgnoreCase(difficulty) || q.difficulty().isEmpty())
-                .toList();
+        try {
+            QuestionBank bank = loadBank(args[1]);
+            if (bank == null) {
+                System.out.println("❌ No questions found. Exiting...");
+                return;
+            }
 
-        if (filteredQuestions.isEmpty()) {
-            filteredQuestions = questions; // Use all questions if no match
+            long started = System.nanoTime();
+            QuestionIndex index = bank.index();
+            long indexed = System.nanoTime();
+            int[] ids = index.search(query);
+            long searched = System.nanoTime();
+
+            System.out.printf("🔎 %,d of %,d questions match \"%s\" (%.2f ms; index of %,d terms, %,d KB, ready in %.0f ms)\n",
+                    ids.length, bank.size(), query, (searched - indexed) / 1e6,
+                    index.termCount(), index.footprintBytes() / 1024, (indexed - started) / 1e6);
+            for (int i = 0; i < Math.min(SEARCH_RESULTS, ids.length); i++) {
+                Question question = bank.store().get(ids[i]);
+                System.out.printf("%d. [%s - %s] %s\n", i + 1, question.difficulty(), question.category(), question.text());
+            }
+            if (ids.length > SEARCH_RESULTS) {
+                System.out.printf("... and %,d more\n", ids.length - SEARCH_RESULTS);
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "❌ The search failed", e);
         }
-
-        startQuiz(filteredQuestions);
     }
 
-    private static List<Question> getOnlineQuestions() {
-        System.out.println("\n📚 Getting questions from online sources...");
+    /**
+     * {@code pack <pdf folder | OpenTDB or QuizAPI json | opentdb:count[:category,...]> <pack file>}:
+     * compiles the questions into a {@link QuestionPack}, which later starts open instantly
+     * in place of the folder. {@code opentdb:} downloads {@code count} distinct questions.
+     */
+    private static void pack(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: pack <pdf folder | OpenTDB or QuizAPI json | opentdb:count[:category,...]> <pack file>");
+            return;
+        }
 
-        // Try Open Trivia Database first
         try {
-            return getQuestionsFromOpenTDB();
+            Path source = Paths.get(args[1]);
+            List<Question> questions;
+            if (args[1].startsWith("opentdb:")) {
+                questions = fillFromOpenTDB(args[1].substring("opentdb:".length()));
+            } else if (Files.isDirectory(source)) {
+                questions = PDFQuestionExtractor.extractQuestionsFromPDFs(args[1]);
+            } else {
+                questions = readDump(source);
+            }
+            if (questions.isEmpty()) {
+                System.out.println("❌ No questions found. Nothing to pack.");
+                return;
+            }
+
+            Path pack = Paths.get(args[2]);
+            QuestionPack.write(new QuestionBank(questions), pack);
+            System.out.printf("📦 Packed %d questions into %s (%,d bytes)\n", questions.size(), pack, Files.size(pack));
         } catch (Exception e) {
-            System.out.println("⚠️ Primary API failed, trying backup...");
-            return getBackupQuestions();
+            logger.log(Level.SEVERE, "❌ Could not build the question pack", e);
         }
     }
 
-    private static List<Question> getQuestionsFromOpenTDB() throws Exception {
-        String url = OPENTB_API + "?amount=20&type=multiple";
+    /**
+     * {@code count[:category,...]}, with OpenTDB category ids, e.g. {@code 2000:9,17}.
+     */
+    private static List<Question> fillFromOpenTDB(String spec) {
+        String[] parts = spec.split(":", 2);
+        int count = Integer.parseInt(parts[0]);
+        List<Integer> categories = new ArrayList<>();
+        if (parts.length == 2 && !parts[1].isBlank()) {
+            for (String id : parts[1].split(",")) {
+                categories.add(Integer.parseInt(id.trim()));
+            }
+        }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .timeout(Duration.ofSeconds(30))
-                .header("Accept", "application/json")
-                .build();
+        System.out.printf("🌐 Fetching %d questions from OpenTDB...\n", count);
+        List<Question> questions = OPENTDB_CLIENT.fill(count, "", categories, OPENTDB_PARALLELISM).join();
+        System.out.printf("✅ Got %d distinct questions\n", questions.size());
+        return questions;
+    }
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("API request failed with status: " + response.statusCode());
+    /**
+     * Reads a saved API response: an OpenTDB object or a QuizAPI array.
+     */
+    private static List<Question> readDump(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return QuestionJsonReader.readOpenTDB(in);
+        } catch (JsonParseException e) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                return QuestionJsonReader.readQuizApi(in);
+            }
         }
+    }
 
-        JsonNode root = objectMapper.readTree(response.body());
-        JsonNode results = root.get("results");
+    /**
+     * Opens a question pack, or extracts the PDFs of a folder; {@code null} when there are no questions.
+     */
+    private static QuestionBank loadBank(String path) throws Exception {
+        if (Files.isRegularFile(Paths.get(path))) {
+            QuestionBank bank = QuestionPack.open(Paths.get(path));
+            System.out.printf("📦 Opened question pack with %d questions\n", bank.size());
+            return bank.size() > 0 ? bank : null;
+        }
 
-        List<Question> questions = new ArrayList<>();
+        QuestionBank bank = PDFQuestionExtractor.extractBank(path, PDFQuestionExtractor.DEFAULT_PARALLELISM);
+        return bank.size() > 0 ? bank : null;
+    }
 
-        for (JsonNode questionNode : results) {
-            String questionText = decodeHtml(questionNode.get("question").asText());
-            String correctAnswer = decodeHtml(questionNode.get("correct_answer").asText());
-            String difficulty = questionNode.get("difficulty").asText();
+    private static void startQuizSession() throws Exception {
+        System.out.print("\n\uD83D\uDCC1 Enter path to your PDF questions folder or question pack (or press Enter to use online quiz): ");
+        String folderPath = scanner.nextLine().trim();
 
-            List<String> options = new ArrayList<>();
-            options.add(correctAnswer);
+        QuestionBank bank = null;
+        PrefetchingQuestionSource onlineSource = null;
+        if (folderPath.isEmpty()) {
+            System.out.println("\n📚 Getting questions from online sources...");
+            // The first batch downloads while the player picks a difficulty
+            onlineSource = startOnlineSource();
+        } else {
+            bank = loadBank(folderPath);
 
-            JsonNode incorrectAnswers = questionNode.get("incorrect_answers");
-            for (JsonNode incorrectAns : incorrectAnswers) {
-                options.add(decodeHtml(incorrectAns.asText()));
+            if (bank == null) {
+                System.out.println("❌ No questions found. Exiting...");
+                return;
             }
+        }
+
+        System.out.println("\n\uD83C\uDFAF Select difficulty level:");
+        System.out.println("1. Easy");
+        System.out.println("2. Medium");
+        System.out.println("3. Hard");
+        if (bank != null) {
+            System.out.println("4. Adaptive (learns from your past answers)");
+        }
+        System.out.print(bank != null ? "Choice (1-4): " : "Choice (1-3): ");
+
+        int difficultyChoice = scanner.nextInt();
+        scanner.nextLine(); // consume newline
 
-            Collections.shuffle(options);
-            questions.add(new Question(
-                    questionText,
-                    options,
-                    correctAnswer,
-                    difficulty,
-                    questionNode.get("category").asText()
-            ));
+        String difficulty = switch (difficultyChoice) {
+            case 1 -> "easy";
+            case 3 -> "hard";
+            default -> "medium";
+        };
+
+        if (onlineSource != null) {
+            startOnlineQuiz(onlineSource, difficulty);
+        } else if (difficultyChoice == 4) {
+            startAdaptiveQuiz(bank);
+        } else {
+            System.out.print("\n🔎 Topic to focus on, e.g. photosynthesis or cell* (or press Enter for any): ");
+            startQuiz(selectQuestions(bank, difficulty, scanner.nextLine().trim()));
         }
+    }
 
+    /**
+     * Questions mentioning {@code topic}, a {@link QuestionIndex} query, preferably of
+     * {@code difficulty}; the usual selection when the topic is blank or nothing matches.
+     */
+    static List<Question> selectQuestions(QuestionBank bank, String difficulty, String topic) {
+        if (topic.isBlank()) {
+            return selectQuestions(bank, difficulty);
+        }
+
+        List<Question> questions = bank.sampleMatching(QUIZ_LENGTH, topic, Set.of(difficulty, ""), ThreadLocalRandom.current());
+        if (questions.isEmpty()) {
+            questions = bank.sampleMatching(QUIZ_LENGTH, topic, Set.of(), ThreadLocalRandom.current());
+        }
+        if (questions.isEmpty()) {
+            System.out.println("⚠️ No questions mention \"" + topic + "\", using all topics...");
+            return selectQuestions(bank, difficulty);
+        }
         return questions;
     }
 
-    private static List<Question> getBackupQuestions() {
-        String url = QUIZ_API + "?apiKey=C1GLDQ8hj5UDimXvvuSOU6VV0aTkllhdEhKtyRUu&limit=20";
+    /**
+     * A quiz whose questions {@link AdaptiveScheduler} picks from the player's answers in
+     * earlier quizzes, which it keeps in {@link AdaptiveScheduler#DEFAULT_LOG}.
+     */
+    private static void startAdaptiveQuiz(QuestionBank bank) {
+        System.out.print("\n👤 Your name (your progress is kept for next time): ");
+        String player = scanner.nextLine().trim();
+        if (player.isEmpty()) {
+            player = System.getProperty("user.name", "player");
+        }
 
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(30))
-                    .header("Accept", "application/json")
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("API request failed with status: " + response.statusCode());
+        try (AdaptiveScheduler scheduler = AdaptiveScheduler.open(bank, AdaptiveScheduler.DEFAULT_LOG)) {
+            int seen = scheduler.seen(player);
+            if (seen > 0) {
+                System.out.printf("📈 Welcome back, %s! You have practised %d of these questions.\n", player, seen);
             }
+            AdaptiveScheduler.Quiz quiz = scheduler.quiz(player);
+            startQuiz(quiz, QUIZ_LENGTH, quiz.recording(new ConsolePlayer()));
+        } catch (IOException e) {
+            System.out.println("⚠️ Could not open the answer log (" + e.getMessage() + "), playing a regular quiz...");
+            startQuiz(selectQuestions(bank, "medium"));
+        }
+    }
 
-            JsonNode results = objectMapper.readTree(response.body());
-
-            List<Question> questions = new ArrayList<>();
-            char[] optionSuffixes = {'a', 'b', 'c', 'd', 'e', 'f'};
+    static List<Question> selectQuestions(QuestionBank bank, String difficulty) {
+        // Questions without a difficulty fit any level
+        Set<String> levels = Set.of(difficulty, "");
+        if (bank.count(levels, null) == 0) {
+            levels = Set.of(); // Use all questions if no match
+        }
 
-            for (JsonNode questionNode : results) {
-                String questionText = decodeHtml(questionNode.get("question").asText());
-//                String explanation = decodeHtml(questionNode.get("explanation").asText());
-                String correctAnswer = questionNode.get("correct_answer").asText();
-                String difficulty = questionNode.get("difficulty").asText().toLowerCase();
+        return bank.sample(QUIZ_LENGTH, levels, null);
+    }
 
-                List<String> options = new ArrayList<>();
-                for (char suffix : optionSuffixes) {
-                    String option = questionNode.get("answers").get("answer_" + suffix).asText();
-                    if (option != null) {
-                        options.add(decodeHtml(option));
-                    }
-                }
+    private static PrefetchingQuestionSource startOnlineSource() {
+        return new PrefetchingQuestionSource(OPENTDB, QUIZAPI, ONLINE_BATCH_SIZE, HEDGE_DELAY).start();
+    }
 
-                // Get a correct answer
-                if (correctAnswer == null) {
-                    for (char suffix : optionSuffixes) {
-                        String ans = "answer_" + suffix;
-                        boolean isCorrect = questionNode.get("correct_answers").get(ans + "_correct").asBoolean();
-                        if (isCorrect) {
-                            correctAnswer = ans;
-                            break;
-                        }
-                    }
-                }
+    private static QuestionProvider resilient(QuestionProvider provider) {
+        return new ResilientQuestionProvider(
+                provider,
+                new CircuitBreaker(BREAKER_FAILURES, BREAKER_OPEN),
+                new RetryBudget(RETRY_RATIO, MIN_RETRIES_PER_SECOND),
+                RETRY_DELAY,
+                CACHE_TTL,
+                CACHE_ENTRIES
+        );
+    }
 
-                Collections.shuffle(options);
-                questions.add(new Question(
-                        questionText,
-                        options,
-                        questionNode.get(correctAnswer).asText(),
-                        difficulty,
-                        questionNode.get("category").asText()
-                ));
+    private static void startOnlineQuiz(PrefetchingQuestionSource source, String difficulty) {
+        try (source) {
+            source.setDifficulty(difficulty);
+
+            if (source.hasNext()) {
+                startQuiz(source, QUIZ_LENGTH);
+            } else {
+                Throwable error = source.lastError();
+                System.out.println("⚠️ Online sources failed" + (error != null ? " (" + error.getMessage() + ")" : "")
+                        + ", using built-in questions...");
+                startQuiz(selectQuestions(new QuestionBank(fallbackQuestions()), difficulty));
             }
+        }
+    }
 
-            return questions;
-        } catch (Exception e) {
-            return List.of(
-                    new Question(
-                            "What is the capital of France?",
-                            List.of("Paris", "London", "Berlin", "Madrid"),
-                            "Paris",
-                            "easy",
-                            "Geography"
-                    ),
-                    new Question(
-                            "Which planet is known as the Red Planet?",
-                            List.of("Mars", "Venus", "Jupiter", "Saturn"),
-                            "Mars",
-                            "easy",
-                            "Science"
-                    ),
-                    new Question(
-                            "What is 2 + 2?",
-                            List.of("4", "3", "5", "6"),
-                            "4",
-                            "easy",
-                            "Mathematics"
-                    )
-            );
+    static HttpRequest quizApiRequest(int amount, String difficulty) {
+        String url = QUIZ_API + "?apiKey=C1GLDQ8hj5UDimXvvuSOU6VV0aTkllhdEhKtyRUu&limit=" + amount;
+        if (!difficulty.isEmpty()) {
+            // QuizAPI spells levels "Easy", "Medium", "Hard"
+            url += "&difficulty=" + Character.toUpperCase(difficulty.charAt(0)) + difficulty.substring(1);
         }
+        return jsonRequest(url);
+    }
+
+    private static HttpRequest jsonRequest(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Accept", "application/json")
+                .build();
+    }
+
+    private static List<Question> fallbackQuestions() {
+        return List.of(
+                new Question(
+                        "What is the capital of France?",
+                        List.of("Paris", "London", "Berlin", "Madrid"),
+                        "Paris",
+                        "easy",
+                        "Geography"
+                ),
+                new Question(
+                        "Which planet is known as the Red Planet?",
+                        List.of("Mars", "Venus", "Jupiter", "Saturn"),
+                        "Mars",
+                        "easy",
+                        "Science"
+                ),
+                new Question(
+                        "What is 2 + 2?",
+                        List.of("4", "3", "5", "6"),
+                        "4",
+                        "easy",
+                        "Mathematics"
+                )
+        );
     }
 
     private static void startQuiz(List<Question> questions) {
+        startQuiz(questions.iterator(), Math.min(QUIZ_LENGTH, questions.size()));
+    }
+
+    private static void startQuiz(Iterator<Question> questions, int totalQuestions) {
+        startQuiz(questions, totalQuestions, new ConsolePlayer());
+    }
+
+    private static void startQuiz(Iterator<Question> questions, int totalQuestions, QuizPlayer player) {
         System.out.println("\n🚀 Starting Quiz! Type 'quit' anytime to exit.");
         System.out.println("===============================================");
 
-        int score = 0;
-        int totalQuestions = Math.min(20, questions.size());
+        QuizSession session = new QuizSession(questions, totalQuestions, ThreadLocalRandom.current());
+        if (QuizEngine.play(session, player)) {
+            // session.answered() is below the total when the online source ran dry
+            showFinalResults(session.score(), session.answered());
+        } else {
+            System.out.println("\n👋 Thanks for playing! Final score: " + session.score() + "/" + session.answered());
+        }
+    }
 
-        for (int i = 0; i < totalQuestions; i++) {
-            Question question = questions.get(i);
-            System.out.printf("\n📝 Question %d/%d [%s - %s]\n", i + 1, totalQuestions, question.difficulty().toUpperCase(), question.category());
+    /**
+     * The person at the console, reading answers from {@link #scanner}.
+     */
+    private static final class ConsolePlayer implements QuizPlayer {
+        private String input;
+
+        @Override
+        public int choose(QuizSession session) {
+            Question question = session.current();
+            System.out.printf("\n📝 Question %d/%d [%s - %s]\n", session.answered() + 1, session.total(),
+                    question.difficulty().toUpperCase(), question.category());
             System.out.println("─".repeat(50));
             System.out.println(question.text());
 
-            List<String> shuffledOptions = new ArrayList<>(question.options());
-            Collections.shuffle(shuffledOptions);
-
-            for (int j = 0; j < shuffledOptions.size(); j++) {
-                System.out.printf("%d. %s\n", j + 1, shuffledOptions.get(j));
+            for (int j = 1; j <= session.optionCount(); j++) {
+                System.out.printf("%d. %s\n", j, session.option(j));
             }
 
-            System.out.print("\n💭 Your answer (1-" + shuffledOptions.size() + "): ");
-            String input = scanner.nextLine().trim();
+            System.out.print("\n💭 Your answer (1-" + session.optionCount() + "): ");
+            long asked = System.nanoTime();
+            input = scanner.nextLine().trim();
+            Metrics.QUIZ_ANSWER.record(System.nanoTime() - asked);
 
             if (input.equalsIgnoreCase("quit")) {
-                System.out.println("\n👋 Thanks for playing! Final score: " + score + "/" + i);
-                return;
+                return QUIT;
             }
-
             try {
-                int choice = Integer.parseInt(input);
-                if (choice >= 1 && choice <= shuffledOptions.size()) {
-                    String selectedAnswer = shuffledOptions.get(choice - 1);
-                    if (selectedAnswer.equals(question.correctAnswer())) {
-                        System.out.println("✅ Correct! Well done!");
-                        score++;
-                    } else {
-                        System.out.println("❌ Wrong! The correct answer was: " + question.correctAnswer());
-                    }
-                } else {
-                    System.out.println("❌ Invalid choice! The correct answer was: " + question.correctAnswer());
-                }
+                // Negative numbers are invalid choices, not QUIT
+                return Math.max(0, Integer.parseInt(input));
             } catch (NumberFormatException e) {
-                System.out.println("❌ Please enter a valid number! The correct answer was: " + question.correctAnswer());
+                return 0;
+            }
+        }
+
+        @Override
+        public void answered(QuizSession session, int choice, boolean correct) {
+            String correctAnswer = session.current().correctAnswer();
+            if (correct) {
+                System.out.println("✅ Correct! Well done!");
+            } else if (choice >= 1 && choice <= session.optionCount()) {
+                System.out.println("❌ Wrong! The correct answer was: " + correctAnswer);
+            } else if (input.matches("[+-]?\\d+")) {
+                System.out.println("❌ Invalid choice! The correct answer was: " + correctAnswer);
+            } else {
+                System.out.println("❌ Please enter a valid number! The correct answer was: " + correctAnswer);
             }
 
             // Show current score
-            System.out.printf("📊 Current Score: %d/%d\n", score, i + 1);
-            if (i < totalQuestions - 1) {
+            System.out.printf("📊 Current Score: %d/%d\n", session.score(), session.answered());
+            if (session.answered() < session.total()) {
                 System.out.print("Press Enter to continue...");
                 scanner.nextLine();
             }
         }
-
-        showFinalResults(score, totalQuestions);
     }
 
     private static void showFinalResults(int score, int total) {
@@ -295,15 +559,8 @@ public class QuizGame {
         System.out.println("\n💡 Tip: Try different difficulty levels to challenge yourself!");
     }
 
-    private static String decodeHtml(String text) {
-        return text.replace("&quot;", "\"")
-            .replace("&#039;", "'")
-            .replace("&amp;", "&")
-            .replace("&lt;", "<")
-            .replace("&gt;", ">")
-            .replace("&rdquo;", "\"")
-            .replace("&ldquo;", "\"")
-            .replace("&rsquo;", "'");
+    static String decodeHtml(String text) {
+        return HtmlEntities.decode(text);
     }
 
     public record Question(
@@ -0,0 +1,69 @@
+package org.mrserious;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks the answers in a quiz played by {@link QuizEngine}: someone at the console, a
+ * script, or a generator in a batch run. A player keeps to the thread its session runs
+ * on, so it may hold state without locking.
+ */
+@FunctionalInterface
+interface QuizPlayer {
+    /**
+     * Choice that ends the quiz before its last question.
+     */
+    int QUIT = -1;
+
+    /**
+     * Picks among the options of {@code session.current()}, 1-based, or {@link #QUIT}.
+     * Any other number out of range is scored as a wrong answer.
+     */
+    int choose(QuizSession session);
+
+    /**
+     * Told how each answer went; {@code choice} is what {@link #choose} returned.
+     */
+    default void answered(QuizSession session, int choice, boolean correct) {}
+
+    /**
+     * Answers uniformly at random.
+     */
+    static QuizPlayer random(RandomGenerator random) {
+        return session -> 1 + random.nextInt(session.optionCount());
+    }
+
+    /**
+     * Answers right with probability {@code accuracy}, otherwise at random.
+     */
+    static QuizPlayer accurate(double accuracy, RandomGenerator random) {
+        return session -> random.nextDouble() < accuracy
+            ? session.correctChoice()
+            : 1 + random.nextInt(session.optionCount());
+    }
+
+    /**
+     * Gives {@code choices} in turn from the first question of every session, starting
+     * over when a session has more questions than the script.
+     */
+    static QuizPlayer scripted(int[] choices) {
+        if (choices.length == 0) {
+            throw new IllegalArgumentException("A script needs at least one choice");
+        }
+        // The current question is unanswered, so answered() is its 0-based position
+        return session -> choices[session.answered() % choices.length];
+    }
+
+    /**
+     * Reads a script of one choice per line: a 1-based number, or {@code quit}. Blank
+     * lines and lines starting with {@code #} are skipped.
+     */
+    static int[] parseScript(List<String> lines) {
+        return lines.stream()
+            .map(String::trim)
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .mapToInt(line -> line.toLowerCase(Locale.ROOT).equals("quit") ? QUIT : Integer.parseInt(line))
+            .toArray();
+    }
+}
@@ -0,0 +1,321 @@
+package org.mrserious;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Hosts many quiz players in one JVM over a line-based TCP protocol. Every connection is
+ * one session, run start to finish by its own virtual thread, so a session is written as
+ * plain blocking code. Sessions share the read-only {@link QuestionBank} and the
+ * {@link Scoreboard}; everything else lives in their own {@link QuizSession}. When the
+ * bank is replaced while the server runs, e.g. by a {@link QuestionFolderWatcher}, each
+ * session keeps the bank it started with and new sessions get the new one.
+ *
+ * <p>Lines are UTF-8 and their fields are separated by tabs:
+ * <pre>
+ * client: START    difficulty  [player]           (easy, medium or hard)
+ * server: QUESTION n  total  difficulty  category  text  option 1 ... option k
+ * client: ANSWER   choice                         (1 to k), or QUIT
+ * server: CORRECT, or WRONG  correct answer
+ * ...
+ * server: SCORE    score  answered
+ * </pre>
+ * Instead of START, a client may send {@code LEADERBOARD} and gets one
+ * {@code TOP rank player score total} line per best score, one
+ * {@code CATEGORY name attempts correct} line per category, then {@code END}.
+ * A malformed line gets {@code ERROR message}; a bad ANSWER may simply be sent again.
+ * A line longer than {@value #MAX_LINE} characters closes the connection.
+ */
+final class QuizServer implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(QuizServer.class.getName());
+
+    private static final int BACKLOG = 4096;
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+    private static final Set<String> DIFFICULTIES = Set.of("easy", "medium", "hard");
+    private static final int TOP_SCORES = 10;
+    // Longest line a client may send, so that one without a line break cannot fill the heap
+    static final int MAX_LINE = 4096;
+    // Tabs and line breaks inside a field would break the framing
+    private static final Pattern SEPARATORS = Pattern.compile("[\t\r\n]+");
+
+    private final Supplier<QuestionBank> bank;
+    private final Scoreboard scoreboard = new Scoreboard(TOP_SCORES);
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder finishedSessions = new LongAdder();
+    private final AtomicLong playerNumbers = new AtomicLong();
+    private Thread acceptor;
+
+    /**
+     * @param port TCP port to listen on, or 0 for any free one
+     */
+    QuizServer(QuestionBank bank, int port) throws IOException {
+        this(() -> bank, port);
+    }
+
+    /**
+     * @param bank the current question bank, asked once at the start of every session
+     * @param port TCP port to listen on, or 0 for any free one
+     */
+    QuizServer(Supplier<QuestionBank> bank, int port) throws IOException {
+        this.bank = bank;
+        this.serverSocket = new ServerSocket(port, BACKLOG);
+    }
+
+    QuizServer start() {
+        acceptor = Thread.ofVirtual().name("quiz-acceptor").start(this::acceptConnections);
+        return this;
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    int activeSessions() {
+        return activeSessions.get();
+    }
+
+    long finishedSessions() {
+        return finishedSessions.sum();
+    }
+
+    Scoreboard scoreboard() {
+        return scoreboard;
+    }
+
+    /**
+     * Blocks until the server is closed.
+     */
+    void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        // Interrupting a virtual thread blocked on a socket closes that socket
+        sessions.shutdownNow();
+        try {
+            sessions.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.submit(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.log(Level.WARNING, "⚠️ Could not accept a player", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        activeSessions.incrementAndGet();
+        try (socket) {
+            socket.setSoTimeout((int) IDLE_TIMEOUT.toMillis());
+            socket.setTcpNoDelay(true);
+
+            LineReader in = new LineReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            play(in, out);
+            finishedSessions.increment();
+        } catch (SocketTimeoutException e) {
+            logger.fine("Player idle for too long: " + socket.getRemoteSocketAddress());
+        } catch (LineTooLongException e) {
+            logger.fine("Line over " + MAX_LINE + " characters from " + socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            // The player went away; nothing to clean up beyond the socket
+            logger.log(Level.FINE, "Session ended early", e);
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    private void play(LineReader in, Writer out) throws IOException {
+        String[] start = receive(in, out);
+        if (start == null) {
+            return;
+        }
+        if (start.length == 1 && start[0].equals("LEADERBOARD")) {
+            sendLeaderboard(out);
+            out.flush();
+            return;
+        }
+        if (start.length < 2 || start.length > 3 || !start[0].equals("START") || !DIFFICULTIES.contains(start[1])) {
+            send(out, "ERROR", "Expected START followed by easy, medium or hard, and optionally a name");
+            out.flush();
+            return;
+        }
+        String player = start.length == 3 ? start[2] : "player-" + playerNumbers.incrementAndGet();
+
+        QuizSession session = new QuizSession(QuizGame.selectQuestions(bank.get(), start[1]), ThreadLocalRandom.current());
+
+        while (session.hasNext()) {
+            QuizGame.Question question = session.next();
+
+            List<String> line = new ArrayList<>(List.of("QUESTION",
+                String.valueOf(session.answered() + 1), String.valueOf(session.total()),
+                question.difficulty(), question.category(), question.text()));
+            line.addAll(session.options());
+            send(out, line.toArray(String[]::new));
+            long asked = System.nanoTime();
+
+            Boolean correct = null;
+            while (correct == null) {
+                String[] reply = receive(in, out);
+                if (reply == null) {
+                    return;
+                }
+                if (reply.length == 1 && reply[0].equals("QUIT")) {
+                    finish(out, player, session);
+                    return;
+                }
+
+                try {
+                    if (reply.length != 2 || !reply[0].equals("ANSWER")) {
+                        throw new IllegalArgumentException("Expected ANSWER followed by a choice, or QUIT");
+                    }
+                    correct = session.answer(Integer.parseInt(reply[1]));
+                } catch (IllegalArgumentException e) {
+                    // NumberFormatException included
+                    send(out, "ERROR", e.getMessage());
+                }
+            }
+
+            Metrics.SERVER_ANSWER.record(System.nanoTime() - asked);
+            scoreboard.recordAnswer(question, correct);
+            if (correct) {
+                send(out, "CORRECT");
+            } else {
+                send(out, "WRONG", question.correctAnswer());
+            }
+        }
+
+        finish(out, player, session);
+    }
+
+    private void finish(Writer out, String player, QuizSession session) throws IOException {
+        scoreboard.recordFinish(player, session.score(), session.answered());
+        send(out, "SCORE", String.valueOf(session.score()), String.valueOf(session.answered()));
+        out.flush();
+    }
+
+    private void sendLeaderboard(Writer out) throws IOException {
+        List<Scoreboard.Score> top = scoreboard.top();
+        for (int rank = 1; rank <= top.size(); rank++) {
+            Scoreboard.Score score = top.get(rank - 1);
+            send(out, "TOP", String.valueOf(rank), score.player(), String.valueOf(score.score()), String.valueOf(score.total()));
+        }
+        for (Map.Entry<String, Scoreboard.Rate> category : new TreeMap<>(scoreboard.categoryRates()).entrySet()) {
+            send(out, "CATEGORY", category.getKey(),
+                String.valueOf(category.getValue().attempts()), String.valueOf(category.getValue().correct()));
+        }
+        send(out, "END");
+    }
+
+    /**
+     * Flushes what was sent, so a verdict and the next question share one write, and
+     * reads the player's next line. Returns {@code null} once they hang up.
+     */
+    private static String[] receive(LineReader in, Writer out) throws IOException {
+        out.flush();
+        String line = in.readLine();
+        return line == null ? null : line.strip().split("\t");
+    }
+
+    private static void send(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write('\t');
+            }
+            String field = fields[i];
+            boolean clean = field.indexOf('\t') < 0 && field.indexOf('\r') < 0 && field.indexOf('\n') < 0;
+            out.write(clean ? field : SEPARATORS.matcher(field).replaceAll(" "));
+        }
+        out.write('\n');
+    }
+
+    /**
+     * A client sent a line longer than {@link #MAX_LINE} characters.
+     */
+    static final class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LineTooLongException() {
+            super("Line longer than " + MAX_LINE + " characters");
+        }
+    }
+
+    /**
+     * Reads lines like {@link BufferedReader#readLine}, ended by \n, \r or \r\n, but
+     * keeps at most {@link #MAX_LINE} characters of one and throws past that.
+     */
+    static final class LineReader {
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean skipLineFeed;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * The next line without its terminator, or {@code null} at the end of the stream.
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    int read = in.read(buffer);
+                    if (read < 0) {
+                        return line.isEmpty() ? null : line.toString();
+                    }
+                    position = 0;
+                    limit = read;
+                }
+
+                char c = buffer[position++];
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (c == '\n') {
+                        continue;
+                    }
+                }
+                if (c == '\n' || c == '\r') {
+                    skipLineFeed = c == '\r';
+                    return line.toString();
+                }
+                if (line.length() == MAX_LINE) {
+                    throw new LineTooLongException();
+                }
+                line.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.mrserious;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * State of one player's quiz: the questions drawn for them, where they are and their
+ * score. Nothing here is shared, so each session belongs to a single thread and needs
+ * no locking. Options are shuffled through a reused index permutation rather than a
+ * copied list, so moving on and answering allocate nothing.
+ */
+final class QuizSession {
+    private final Iterator<QuizGame.Question> questions;
+    private final int total;
+    private final RandomGenerator random;
+
+    private QuizGame.Question current;
+    private int index = -1;
+    private boolean answered = true;
+    private int score;
+    // Option i as shown to the player is current.options().get(order[i])
+    private int[] order = new int[4];
+    private int optionCount;
+
+    QuizSession(List<QuizGame.Question> questions, RandomGenerator random) {
+        this(questions.iterator(), questions.size(), random);
+    }
+
+    /**
+     * Up to {@code total} questions from {@code questions}, which may run dry earlier,
+     * e.g. an online source.
+     */
+    QuizSession(Iterator<QuizGame.Question> questions, int total, RandomGenerator random) {
+        this.questions = questions;
+        this.total = total;
+        this.random = random;
+    }
+
+    boolean hasNext() {
+        return index + 1 < total && questions.hasNext();
+    }
+
+    /**
+     * Moves on to the next question and shuffles its options.
+     */
+    QuizGame.Question next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        index++;
+        answered = false;
+        current = questions.next();
+
+        optionCount = current.options().size();
+        if (order.length < optionCount) {
+            order = new int[optionCount];
+        }
+        for (int i = 0; i < optionCount; i++) {
+            order[i] = i;
+        }
+        for (int i = optionCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        return current;
+    }
+
+    QuizGame.Question current() {
+        if (current == null) {
+            throw new NoSuchElementException();
+        }
+        return current;
+    }
+
+    int optionCount() {
+        return optionCount;
+    }
+
+    /**
+     * The option shown as the 1-based {@code choice}.
+     */
+    String option(int choice) {
+        return current.options().get(order[choice - 1]);
+    }
+
+    /**
+     * Options of the current question in the order shown to the player.
+     */
+    List<String> options() {
+        String[] shown = new String[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            shown[i] = option(i + 1);
+        }
+        return List.of(shown);
+    }
+
+    /**
+     * The 1-based choice that is right for the current question, or 0 if none is.
+     */
+    int correctChoice() {
+        for (int choice = 1; choice <= optionCount; choice++) {
+            if (option(choice).equals(current.correctAnswer())) {
+                return choice;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Scores the 1-based {@code choice} among {@link #options()}. Returns whether it was right.
+     */
+    boolean answer(int choice) {
+        checkUnanswered();
+        if (choice < 1 || choice > optionCount) {
+            throw new IllegalArgumentException("Choice must be between 1 and " + optionCount + ": " + choice);
+        }
+
+        answered = true;
+        boolean correct = option(choice).equals(current.correctAnswer());
+        if (correct) {
+            score++;
+        }
+        return correct;
+    }
+
+    /**
+     * Scores the current question as wrong, for a player who gave no valid choice.
+     */
+    void forfeit() {
+        checkUnanswered();
+        answered = true;
+    }
+
+    int score() {
+        return score;
+    }
+
+    /**
+     * Number of questions answered so far.
+     */
+    int answered() {
+        return answered ? index + 1 : index;
+    }
+
+    /**
+     * Number of questions the session was drawn with; fewer are played when the source
+     * runs dry.
+     */
+    int total() {
+        return total;
+    }
+
+    private void checkUnanswered() {
+        if (answered) {
+            throw new IllegalStateException("Question " + (index + 1) + " is already answered");
+        }
+    }
+}
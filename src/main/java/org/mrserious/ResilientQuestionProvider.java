@@ -0,0 +1,140 @@
+package org.mrserious;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Wraps a {@link QuestionProvider} so that a failing or rate-limited API costs little.
+ * <ul>
+ * <li>A {@link CircuitBreaker} refuses calls at once while the provider keeps failing,
+ * so callers fall back immediately instead of waiting for another timeout.</li>
+ * <li>A failed call is retried once after a jittered delay, as long as the
+ * {@link RetryBudget} allows it.</li>
+ * <li>Batches are cached by request for {@code ttl}, at most {@code maxEntries} of them,
+ * least recently used first out. Requests that arrive while the same one is in flight
+ * share its result, so a burst of new quizzes makes one round trip, not one each.
+ * Failed and empty batches are not kept.</li>
+ * </ul>
+ */
+final class ResilientQuestionProvider implements QuestionProvider {
+    private final QuestionProvider delegate;
+    private final CircuitBreaker breaker;
+    private final RetryBudget retryBudget;
+    private final Duration retryDelay;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    private record Cached(CompletableFuture<List<QuizGame.Question>> batch, long expiresAt) {}
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<BatchRequest, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    ResilientQuestionProvider(QuestionProvider delegate, CircuitBreaker breaker, RetryBudget retryBudget,
+                              Duration retryDelay, Duration ttl, int maxEntries) {
+        this(delegate, breaker, retryBudget, retryDelay, ttl, maxEntries, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond time source for the cache, replaceable in tests
+     */
+    ResilientQuestionProvider(QuestionProvider delegate, CircuitBreaker breaker, RetryBudget retryBudget,
+                              Duration retryDelay, Duration ttl, int maxEntries, LongSupplier clock) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.retryBudget = retryBudget;
+        this.retryDelay = retryDelay;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public CompletableFuture<List<QuizGame.Question>> fetch(BatchRequest request) {
+        if (maxEntries <= 0 || ttlNanos <= 0) {
+            return attempt(request, null);
+        }
+
+        CompletableFuture<List<QuizGame.Question>> batch;
+        synchronized (cache) {
+            Cached cached = cache.get(request);
+            if (cached != null && cached.expiresAt() - clock.getAsLong() > 0) {
+                Metrics.ONLINE_CACHE_HITS.increment();
+                return cached.batch();
+            }
+
+            batch = new CompletableFuture<>();
+            cache.put(request, new Cached(batch, clock.getAsLong() + ttlNanos));
+            if (cache.size() > maxEntries) {
+                Iterator<Cached> eldest = cache.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        // Started outside the lock: a provider may complete synchronously, e.g. when its breaker is open
+        attempt(request, null).whenComplete((questions, error) -> {
+            if (error != null || questions.isEmpty()) {
+                synchronized (cache) {
+                    Cached cached = cache.get(request);
+                    if (cached != null && cached.batch() == batch) {
+                        cache.remove(request);
+                    }
+                }
+            }
+            if (error != null) {
+                batch.completeExceptionally(error);
+            } else {
+                batch.complete(List.copyOf(questions));
+            }
+        });
+        return batch;
+    }
+
+    CircuitBreaker.State state() {
+        return breaker.state();
+    }
+
+    /**
+     * Calls the provider once, or retries after {@code earlier}, the failure of the first call.
+     */
+    private CompletableFuture<List<QuizGame.Question>> attempt(BatchRequest request, Throwable earlier) {
+        boolean retry = earlier != null;
+        if (!retry) {
+            retryBudget.onRequest();
+        }
+        if (!breaker.tryAcquire()) {
+            Metrics.ONLINE_SHORT_CIRCUITS.increment();
+            return CompletableFuture.failedFuture(new CircuitBreaker.OpenException(name(), earlier));
+        }
+
+        return delegate.fetch(request).handle((questions, error) -> {
+            if (error == null) {
+                breaker.onSuccess();
+                return CompletableFuture.completedFuture(questions);
+            }
+
+            breaker.onFailure();
+            if (retry || !retryBudget.tryRetry()) {
+                return CompletableFuture.<List<QuizGame.Question>>failedFuture(error);
+            }
+
+            Metrics.ONLINE_RETRIES.increment();
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            // Jitter, so the retries of a burst of failures do not arrive together
+            long delay = (long) (retryDelay.toMillis() * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .thenCompose(ignored -> attempt(request, cause));
+        }).thenCompose(result -> result);
+    }
+}
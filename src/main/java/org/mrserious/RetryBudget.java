@@ -0,0 +1,61 @@
+package org.mrserious;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Limits retries to a share of the traffic, so that retrying cannot multiply the load on
+ * a provider that is already struggling. Every request earns {@code ratio} of a retry, and
+ * {@code minPerSecond} retries are earned over time regardless, for when traffic is light.
+ * Unused retries are saved up to a small reserve.
+ */
+final class RetryBudget {
+    private final double ratio;
+    private final double minPerNano;
+    private final double capacity;
+    private final LongSupplier clock;
+
+    private double balance;
+    private long refilledAt;
+
+    RetryBudget(double ratio, double minPerSecond) {
+        this(ratio, minPerSecond, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond time source, replaceable in tests
+     */
+    RetryBudget(double ratio, double minPerSecond, LongSupplier clock) {
+        this.ratio = ratio;
+        this.minPerNano = minPerSecond / 1e9;
+        this.capacity = Math.max(1, 10 * Math.max(ratio, minPerSecond));
+        this.clock = clock;
+        this.balance = capacity;
+        this.refilledAt = clock.getAsLong();
+    }
+
+    /**
+     * Records a first attempt.
+     */
+    synchronized void onRequest() {
+        refill();
+        balance = Math.min(capacity, balance + ratio);
+    }
+
+    /**
+     * Takes one retry from the budget, if there is one left.
+     */
+    synchronized boolean tryRetry() {
+        refill();
+        if (balance < 1) {
+            return false;
+        }
+        balance--;
+        return true;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        balance = Math.min(capacity, balance + (now - refilledAt) * minPerNano);
+        refilledAt = now;
+    }
+}
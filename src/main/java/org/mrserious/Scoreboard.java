@@ -0,0 +1,153 @@
+package org.mrserious;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics shared by all sessions of a server: the best final scores, and how
+ * often each question and each category is answered correctly. Writers never take a
+ * lock. Counts are striped {@link LongAdder}s that are found through a
+ * {@link ConcurrentHashMap}. The top scores are kept in a skip list behind an admission
+ * threshold, and that threshold only rises. Once the board is full, the usual score
+ * that does not make it in costs a single volatile read. Reads add up the stripes and
+ * see each counter as of some moment during the call.
+ */
+final class Scoreboard {
+    private final int topSize;
+
+    private final LongAdder sessions = new LongAdder();
+    private final Tally answers = new Tally();
+    private final ConcurrentHashMap<String, Tally> byQuestion = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Tally> byCategory = new ConcurrentHashMap<>();
+
+    // Best scores first; on a tie, whoever finished first ranks higher
+    private final ConcurrentSkipListSet<Score> top = new ConcurrentSkipListSet<>(
+        Comparator.comparingInt(Score::score).reversed().thenComparingLong(Score::sequence));
+    private final AtomicInteger topCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    // A score must beat this to enter a full board; never above the current k-th best
+    private final AtomicInteger threshold = new AtomicInteger(Integer.MIN_VALUE);
+
+    record Score(String player, int score, int total, long sequence) {}
+
+    record Rate(long attempts, long correct) {
+        double accuracy() {
+            return attempts == 0 ? 0 : (double) correct / attempts;
+        }
+    }
+
+    /**
+     * @param topSize number of best scores to keep
+     */
+    Scoreboard(int topSize) {
+        if (topSize < 1) {
+            throw new IllegalArgumentException("Scoreboard must keep at least one score: " + topSize);
+        }
+        this.topSize = topSize;
+    }
+
+    void recordAnswer(QuizGame.Question question, boolean correct) {
+        answers.add(correct);
+        tally(byQuestion, question.text()).add(correct);
+        tally(byCategory, question.category()).add(correct);
+    }
+
+    void recordFinish(String player, int score, int total) {
+        sessions.increment();
+
+        if (score <= threshold.get()) {
+            return;
+        }
+
+        top.add(new Score(player, score, total, sequence.getAndIncrement()));
+        if (topCount.incrementAndGet() > topSize && top.pollLast() != null) {
+            topCount.decrementAndGet();
+        }
+
+        if (topCount.get() >= topSize) {
+            // The lowest entry is at most the k-th best, even while others are mid-insert
+            Score lowest = lowest();
+            if (lowest != null) {
+                threshold.accumulateAndGet(lowest.score(), Math::max);
+            }
+        }
+    }
+
+    /**
+     * Best scores, highest first.
+     */
+    List<Score> top() {
+        List<Score> best = new ArrayList<>(topSize);
+        for (Score score : top) {
+            if (best.size() == topSize) {
+                break;
+            }
+            best.add(score);
+        }
+        return best;
+    }
+
+    long sessions() {
+        return sessions.sum();
+    }
+
+    Rate answers() {
+        return answers.snapshot();
+    }
+
+    /**
+     * Correct rates per question text.
+     */
+    Map<String, Rate> questionRates() {
+        return snapshot(byQuestion);
+    }
+
+    /**
+     * Correct rates per category.
+     */
+    Map<String, Rate> categoryRates() {
+        return snapshot(byCategory);
+    }
+
+    private Score lowest() {
+        try {
+            return top.last();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    private static Tally tally(ConcurrentHashMap<String, Tally> tallies, String key) {
+        // get() first: computeIfAbsent locks the bin even when the key is there
+        Tally tally = tallies.get(key);
+        return tally != null ? tally : tallies.computeIfAbsent(key, k -> new Tally());
+    }
+
+    private static Map<String, Rate> snapshot(ConcurrentHashMap<String, Tally> tallies) {
+        Map<String, Rate> rates = new HashMap<>(2 * tallies.size());
+        tallies.forEach((key, tally) -> rates.put(key, tally.snapshot()));
+        return rates;
+    }
+
+    private static final class Tally {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder correct = new LongAdder();
+
+        void add(boolean isCorrect) {
+            attempts.increment();
+            if (isCorrect) {
+                correct.increment();
+            }
+        }
+
+        Rate snapshot() {
+            // Correct first, so a concurrent answer can never make correct exceed attempts
+            long correctCount = correct.sum();
+            return new Rate(attempts.sum(), correctCount);
+        }
+    }
+}
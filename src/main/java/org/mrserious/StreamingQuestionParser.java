@@ -0,0 +1,96 @@
+package org.mrserious;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental front end for the pattern and heuristic passes of {@link PDFQuestionExtractor}.
+ * Text arrives a window of pages at a time; only the paragraphs whose lookahead is complete
+ * are parsed, and the rest is carried into the next window, so memory stays proportional to
+ * the window size rather than the document size.
+ */
+class StreamingQuestionParser {
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\n\n+");
+
+    // Text without blank lines never settles, so past this size it is cut at the last line break
+    private static final int MAX_PENDING_CHARS = 1 << 20;
+
+    private final StringBuilder pending = new StringBuilder();
+    private final List<QuizGame.Question> patternQuestions = new ArrayList<>();
+    private final List<QuizGame.Question> heuristicQuestions = new ArrayList<>();
+
+    // Where the pattern pass resumes in the pending text, past a question that ran into the lookahead
+    private int patternResumeAt;
+
+    void accept(String text) {
+        pending.append(PDFQuestionExtractor.normalizeText(text));
+        drain(false);
+    }
+
+    /**
+     * Parses whatever is still buffered and returns all questions, pattern matches first,
+     * in the same order the whole-document path produces them.
+     */
+    List<QuizGame.Question> finish() {
+        drain(true);
+
+        List<QuizGame.Question> questions = new ArrayList<>(patternQuestions.size() + heuristicQuestions.size());
+        questions.addAll(patternQuestions);
+        questions.addAll(heuristicQuestions);
+        return questions;
+    }
+
+    private void drain(boolean last) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int consumed = parse(pending.toString(), last);
+        if (consumed == 0 && pending.length() > MAX_PENDING_CHARS) {
+            int cut = pending.lastIndexOf("\n") + 1;
+            consumed = parse(pending.substring(0, cut), true);
+        }
+        pending.delete(0, consumed);
+    }
+
+    /**
+     * Parses the settled prefix of {@code text} and returns its length.
+     */
+    private int parse(String text, boolean last) {
+        List<String> paragraphs = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+
+        Matcher breaks = PARAGRAPH_BREAK.matcher(text);
+        int start = 0;
+        while (breaks.find()) {
+            paragraphs.add(text.substring(start, breaks.start()));
+            starts.add(start);
+            start = breaks.end();
+        }
+        if (start < text.length()) {
+            paragraphs.add(text.substring(start));
+            starts.add(start);
+        }
+
+        // The last paragraph may continue in the next window, and each settled paragraph
+        // needs the following ones complete as lookahead
+        int settled = last
+            ? paragraphs.size()
+            : paragraphs.size() - PDFQuestionExtractor.HEURISTIC_LOOKAHEAD;
+        if (settled <= 0) {
+            return 0;
+        }
+
+        int settledEnd = last ? text.length() : starts.get(settled);
+        int lookaheadEnd = last ? paragraphs.size() : paragraphs.size() - 1;
+
+        int resumeAt = PDFQuestionExtractor.extractQuestionsUsingPatterns(
+            text, patternResumeAt, settledEnd, patternQuestions);
+        patternResumeAt = resumeAt - settledEnd;
+        heuristicQuestions.addAll(PDFQuestionExtractor.extractQuestionsUsingHeuristics(
+            paragraphs.subList(0, lookaheadEnd).toArray(String[]::new), settled));
+
+        return settledEnd;
+    }
+}
@@ -0,0 +1,86 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class AdaptiveSchedulerTest {
+    private static final double PLAYER_RATE = 0.3;
+    private static final double QUESTION_RATE = 0.05;
+    private static final long RELEARN_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private final QuestionBank bank = new QuestionBank(List.of(
+        question("History one?", "History"),
+        question("History two?", "History"),
+        question("Science one?", "Science")));
+    private final AdaptiveScheduler scheduler = new AdaptiveScheduler(bank, () -> 0);
+
+    @Test
+    void firstAnswerInACategoryMovesItsRatingOnce() {
+        // Medium questions and a new player: an even chance, so a right answer surprises by half
+        assertEquals(0.5, scheduler.expected("ada", id("History one?")), 1e-9);
+        scheduler.record("ada", id("History one?"), true);
+
+        double rating = PLAYER_RATE * 0.5;
+        assertEquals(logistic(rating), scheduler.expected("ada", id("History two?")), 1e-9);
+        // Other categories follow the overall rating, which moved by the same amount
+        assertEquals(logistic(rating), scheduler.expected("ada", id("Science one?")), 1e-9);
+    }
+
+    @Test
+    void laterAnswersMoveTheCategoryFromItsOwnRating() {
+        scheduler.record("ada", id("History one?"), true);
+        scheduler.record("ada", id("Science one?"), false);
+
+        // Science started from the overall rating and fell from there, and the question it
+        // missed became a little harder; History keeps its own rating
+        double overall = PLAYER_RATE * 0.5;
+        double surprise = -logistic(overall);
+        double science = overall + PLAYER_RATE * surprise;
+        double difficulty = -QUESTION_RATE * surprise;
+        assertEquals(logistic(science - difficulty), scheduler.expected("ada", id("Science one?")), 1e-6);
+        assertEquals(logistic(overall), scheduler.expected("ada", id("History two?")), 1e-9);
+    }
+
+    @Test
+    void wrongAnswerComesBackAfterTheRelearnInterval() {
+        AtomicLong now = new AtomicLong();
+        AdaptiveScheduler scheduler = new AdaptiveScheduler(bank, now::get);
+        scheduler.record("ada", id("History one?"), false);
+        scheduler.record("ada", id("Science one?"), true);
+
+        // Until then only the unseen question is served
+        now.set(RELEARN_INTERVAL - 1);
+        assertNotEquals(id("History one?"), scheduler.next("ada"));
+        assertNotEquals(id("Science one?"), scheduler.next("ada"));
+
+        // Due now, while the right answer is a day away
+        now.set(RELEARN_INTERVAL);
+        assertEquals(id("History one?"), scheduler.next("ada"));
+        now.set(TimeUnit.HOURS.toMillis(23));
+        assertEquals(id("History one?"), scheduler.next("ada"));
+    }
+
+    private int id(String text) {
+        QuestionStore store = bank.store();
+        for (int id = 0; id < store.size(); id++) {
+            if (store.text(id).equals(text)) {
+                return id;
+            }
+        }
+        throw new AssertionError(text);
+    }
+
+    private static double logistic(double logits) {
+        return 1 / (1 + Math.exp(-logits));
+    }
+
+    private static QuizGame.Question question(String text, String category) {
+        return new QuizGame.Question(text, List.of("yes", "no"), "yes", "medium", category);
+    }
+}
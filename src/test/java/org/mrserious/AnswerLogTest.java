@@ -0,0 +1,112 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link AnswerLog} replays, including logs cut off at every possible byte as a crash
+ * in the middle of a write would leave them.
+ */
+class AnswerLogTest {
+    private record Answer(String player, long questionKey, long time, boolean correct) {}
+
+    private static final String[] PLAYERS = {"ada", "bob", "zoë"};
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void replaysWhatWasAppended() throws IOException {
+        Path file = folder.resolve("logs/answers.log");
+        List<Answer> written = write(file, new ArrayList<>());
+
+        List<Answer> replayed = new ArrayList<>();
+        try (AnswerLog log = AnswerLog.open(file, collect(replayed))) {
+            log.append("ada", 99, 1_000, true);
+        }
+        assertEquals(written, replayed);
+
+        written.add(new Answer("ada", 99, 1_000, true));
+        assertEquals(written, replay(file));
+    }
+
+    @Test
+    void dropsATornRecordAndKeepsAppending() throws IOException {
+        Path file = folder.resolve("answers.log");
+        List<Long> ends = new ArrayList<>();
+        List<Answer> written = write(file, ends);
+        long size = Files.size(file);
+
+        for (long length = 0; length <= size; length++) {
+            Path torn = folder.resolve("torn.log");
+            Files.copy(file, torn, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(torn, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+
+            // Exactly the answers written out in full
+            int complete = 0;
+            while (complete < ends.size() && ends.get(complete) <= length) {
+                complete++;
+            }
+            List<Answer> expected = new ArrayList<>(written.subList(0, complete));
+
+            List<Answer> replayed = new ArrayList<>();
+            Answer next = new Answer("zoë", 1234, 99_000, false);
+            try (AnswerLog log = AnswerLog.open(torn, collect(replayed))) {
+                assertEquals(expected, replayed, "cut at " + length);
+                long kept = Files.size(torn);
+                assertTrue(kept <= Math.max(length, 8), "cut at " + length + ", kept " + kept);
+                assertTrue(kept >= (complete == 0 ? 0 : ends.get(complete - 1)), "cut at " + length + ", kept " + kept);
+                log.append(next.player(), next.questionKey(), next.time(), next.correct());
+            }
+
+            expected.add(next);
+            assertEquals(expected, replay(torn), "cut at " + length);
+        }
+    }
+
+    @Test
+    void refusesAnotherFile() throws IOException {
+        Path file = Files.writeString(folder.resolve("answers.log"), "not an answer log at all");
+        assertThrows(IOException.class, () -> AnswerLog.open(file, collect(new ArrayList<>())));
+    }
+
+    /**
+     * Appends answers from three players, noting where each one ends.
+     */
+    private static List<Answer> write(Path file, List<Long> ends) throws IOException {
+        List<Answer> written = new ArrayList<>();
+        try (AnswerLog log = AnswerLog.open(file, collect(new ArrayList<>()))) {
+            for (int i = 0; i < 12; i++) {
+                Answer answer = new Answer(PLAYERS[(i + i / 3) % PLAYERS.length],
+                    AdaptiveScheduler.questionKey("Question " + i), 60_000L * i, i % 3 != 0);
+                log.append(answer.player(), answer.questionKey(), answer.time(), answer.correct());
+                written.add(answer);
+                ends.add(Files.size(file));
+            }
+        }
+        return written;
+    }
+
+    private static List<Answer> replay(Path file) throws IOException {
+        List<Answer> replayed = new ArrayList<>();
+        AnswerLog.open(file, collect(replayed)).close();
+        return replayed;
+    }
+
+    private static AnswerLog.Replay collect(List<Answer> answers) {
+        return (player, questionKey, time, correct) -> answers.add(new Answer(player, questionKey, time, correct));
+    }
+}
@@ -0,0 +1,74 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    private static final Duration OPEN = Duration.ofSeconds(10);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN, now::get);
+
+    @Test
+    void staysClosedBelowTheThreshold() {
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // A success starts the count again
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void opensAfterTheThresholdAndRefusesCalls() {
+        fail(3);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        now.addAndGet(OPEN.toNanos() - 1);
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void letsOneTrialThroughAndClosesWhenItSucceeds() {
+        fail(3);
+        now.addAndGet(OPEN.toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire(), "only one trial call at a time");
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void reopensForAnotherPeriodWhenTheTrialFails() {
+        fail(3);
+        now.addAndGet(OPEN.toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        now.addAndGet(OPEN.toNanos() - 1);
+        assertFalse(breaker.tryAcquire());
+        now.incrementAndGet();
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+}
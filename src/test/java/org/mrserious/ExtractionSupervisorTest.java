@@ -0,0 +1,219 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ExtractionSupervisor} with a short timeout and stub extractions that pass their
+ * checkpoint the way the PDF extractor does, so cancelled ones unwind on their own.
+ */
+@Timeout(30)
+class ExtractionSupervisorTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(300);
+    private static final Duration NO_TIMEOUT = Duration.ofSeconds(60);
+    // Far below any heap, so the memory watchdog never steps in
+    private static final long MEMORY_BUDGET = 1 << 20;
+
+    @TempDir
+    Path folder;
+
+    private final Quarantine quarantine = Quarantine.inMemory();
+    private ExtractionSupervisor supervisor;
+
+    @AfterEach
+    void tearDown() {
+        if (supervisor != null) {
+            supervisor.close();
+        }
+    }
+
+    @Test
+    void timedOutFileIsQuarantinedUntilItChanges() throws Exception {
+        Path slow = pdf("slow.pdf");
+        AtomicInteger runs = new AtomicInteger();
+        supervisor = new ExtractionSupervisor(1, TIMEOUT, MEMORY_BUDGET, quarantine, (file, checkpoint, scratch) -> {
+            runs.incrementAndGet();
+            return hang(checkpoint);
+        });
+
+        ExtractionSupervisor.Failure failure = failure(supervisor.submit(slow, null, questions -> questions));
+        assertEquals(Quarantine.Reason.TIMEOUT, failure.reason());
+        assertTrue(failure.quarantined());
+        assertFalse(failure.earlier());
+        assertEquals(Quarantine.Reason.TIMEOUT, quarantine.get(slow).reason());
+
+        ExtractionSupervisor.Failure skipped = failure(supervisor.submit(slow, null, questions -> questions));
+        assertTrue(skipped.earlier());
+        assertEquals(1, runs.get());
+
+        Files.setLastModifiedTime(slow, FileTime.fromMillis(Files.getLastModifiedTime(slow).toMillis() + 60_000));
+        assertNull(quarantine.get(slow));
+        assertFalse(failure(supervisor.submit(slow, null, questions -> questions)).earlier());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void missingFileIsNotQuarantined() throws Exception {
+        Path first = pdf("first.pdf");
+        Path deleted = pdf("deleted.pdf");
+        Path missing = folder.resolve("missing.pdf");
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        supervisor = new ExtractionSupervisor(1, NO_TIMEOUT, MEMORY_BUDGET, quarantine, (file, checkpoint, scratch) -> {
+            if (file.equals(first)) {
+                firstStarted.countDown();
+                await(proceed);
+            }
+            return questions(file);
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+            () -> supervisor.submit(missing, null, questions -> questions).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(NoSuchFileException.class, error.getCause());
+
+        // Listed while it was there, gone by the time a worker is free
+        CompletableFuture<List<QuizGame.Question>> held = supervisor.submit(first, null, questions -> questions);
+        assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<List<QuizGame.Question>> result = supervisor.submit(deleted, null, questions -> questions);
+        FileTime modified = Files.getLastModifiedTime(deleted);
+        Files.delete(deleted);
+        proceed.countDown();
+
+        assertEquals(1, held.get(10, TimeUnit.SECONDS).size());
+        error = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(NoSuchFileException.class, error.getCause());
+
+        // Put back exactly as it was, it is not taken for a quarantined file
+        pdf("deleted.pdf");
+        Files.setLastModifiedTime(deleted, modified);
+        assertNull(quarantine.get(deleted));
+    }
+
+    @Test
+    void closeCancelsRunningAndQueuedFilesWithoutQuarantiningThem() throws Exception {
+        List<Path> files = List.of(pdf("a.pdf"), pdf("b.pdf"), pdf("c.pdf"));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch unwound = new CountDownLatch(2);
+        supervisor = new ExtractionSupervisor(2, NO_TIMEOUT, MEMORY_BUDGET, quarantine, (file, checkpoint, scratch) -> {
+            started.countDown();
+            try {
+                return hang(checkpoint);
+            } finally {
+                unwound.countDown();
+            }
+        });
+
+        List<CompletableFuture<List<QuizGame.Question>>> results = files.stream()
+            .map(file -> supervisor.submit(file, null, questions -> questions))
+            .toList();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        supervisor.close();
+
+        results.forEach(result -> assertTrue(result.isCancelled()));
+        assertTrue(unwound.await(10, TimeUnit.SECONDS), "cancelled workers should leave at their next checkpoint");
+        files.forEach(file -> assertNull(quarantine.get(file), file::toString));
+        assertThrows(RejectedExecutionException.class, () -> supervisor.submit(files.getFirst(), null, questions -> questions));
+    }
+
+    @Test
+    void outOfMemoryAlongsideOtherFilesIsRetriedAlone() throws Exception {
+        Path greedy = pdf("greedy.pdf");
+        Path other = pdf("other.pdf");
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger greedyRuns = new AtomicInteger();
+        CountDownLatch otherStarted = new CountDownLatch(1);
+        CountDownLatch greedyFailed = new CountDownLatch(1);
+        supervisor = new ExtractionSupervisor(2, NO_TIMEOUT, MEMORY_BUDGET, quarantine, (file, checkpoint, scratch) -> {
+            active.incrementAndGet();
+            try {
+                if (file.equals(other)) {
+                    otherStarted.countDown();
+                    await(greedyFailed);
+                } else if (greedyRuns.incrementAndGet() == 1) {
+                    await(otherStarted);
+                    greedyFailed.countDown();
+                    throw new OutOfMemoryError("Java heap space");
+                } else if (active.get() > 1) {
+                    throw new AssertionError("retried while another file was running");
+                }
+                return questions(file);
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+
+        CompletableFuture<List<QuizGame.Question>> greedyResult = supervisor.submit(greedy, null, questions -> questions);
+        CompletableFuture<List<QuizGame.Question>> otherResult = supervisor.submit(other, null, questions -> questions);
+
+        assertEquals(1, otherResult.get(10, TimeUnit.SECONDS).size());
+        assertEquals(1, greedyResult.get(10, TimeUnit.SECONDS).size());
+        assertEquals(2, greedyRuns.get());
+        assertNull(quarantine.get(greedy));
+    }
+
+    @Test
+    void outOfMemoryWithTheHeapToItselfIsQuarantined() throws Exception {
+        Path greedy = pdf("greedy.pdf");
+        AtomicInteger runs = new AtomicInteger();
+        supervisor = new ExtractionSupervisor(1, NO_TIMEOUT, MEMORY_BUDGET, quarantine, (file, checkpoint, scratch) -> {
+            runs.incrementAndGet();
+            throw new OutOfMemoryError("Java heap space");
+        });
+
+        ExtractionSupervisor.Failure failure = failure(supervisor.submit(greedy, null, questions -> questions));
+        assertEquals(Quarantine.Reason.MEMORY, failure.reason());
+        assertTrue(failure.quarantined());
+        // Once among the parallel workers, where the heap is taken to be shared, then on its own
+        assertEquals(2, runs.get());
+        assertEquals(Quarantine.Reason.MEMORY, quarantine.get(greedy).reason());
+    }
+
+    private Path pdf(String name) throws IOException {
+        return Files.writeString(folder.resolve(name), "%PDF-1.7 " + name);
+    }
+
+    private static ExtractionSupervisor.Failure failure(CompletableFuture<?> result) {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        return assertInstanceOf(ExtractionSupervisor.Failure.class, error.getCause());
+    }
+
+    /**
+     * Works until cancelled, passing the checkpoint every millisecond.
+     */
+    private static List<QuizGame.Question> hang(PDFQuestionExtractor.Checkpoint checkpoint) throws IOException {
+        while (true) {
+            checkpoint.check();
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("Test latch never opened");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static List<QuizGame.Question> questions(Path file) throws IOException {
+        return List.of(new QuizGame.Question(Files.readString(file) + "?", List.of("Yes", "No"), "Yes", "easy", "Test"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link HtmlEntities} against the HTML5 rules for character references in text.
+ */
+class HtmlEntitiesTest {
+    @Test
+    void decodesNamedReferences() {
+        assertEquals("Tom & Jerry", HtmlEntities.decode("Tom &amp; Jerry"));
+        assertEquals("Pokémon", HtmlEntities.decode("Pok&eacute;mon"));
+        assertEquals("∉ ≠ ⊂⃒", HtmlEntities.decode("&notin; &ne; &vnsub;"));
+        assertEquals("<b> </b>", HtmlEntities.decode("&lt;b&gt;&nbsp;&lt;/b&gt;"));
+    }
+
+    @Test
+    void decodesLegacyNamesWithoutTheSemicolon() {
+        assertEquals("&x", HtmlEntities.decode("&ampx"));
+        assertEquals("a & b", HtmlEntities.decode("a &amp b"));
+        // The longest name wins: "notin;" as a whole, otherwise the legacy "not"
+        assertEquals("¬it", HtmlEntities.decode("&notit"));
+        assertEquals("∉", HtmlEntities.decode("&notin;"));
+        assertEquals("© 2024", HtmlEntities.decode("&copy 2024"));
+    }
+
+    @Test
+    void decodesNumericReferences() {
+        assertEquals("Don't", HtmlEntities.decode("Don&#39;t"));
+        assertEquals("Don’t", HtmlEntities.decode("Don&#x2019;t"));
+        assertEquals("Don’t", HtmlEntities.decode("Don&#X2019;t"));
+        assertEquals("A B", HtmlEntities.decode("&#65&#x20;B"));
+        assertEquals("😀", HtmlEntities.decode("&#x1F600;"));
+        assertEquals("😀", HtmlEntities.decode("&#128512;"));
+    }
+
+    @Test
+    void mapsC1ControlsToWindows1252() {
+        assertEquals("1990–1999", HtmlEntities.decode("1990&#150;1999"));
+        assertEquals("€5", HtmlEntities.decode("&#x80;5"));
+        assertEquals("“quoted”", HtmlEntities.decode("&#147;quoted&#148;"));
+        // Holes in Windows-1252 stay as they are
+        assertEquals("\u0081", HtmlEntities.decode("&#129;"));
+    }
+
+    @Test
+    void replacesInvalidCodePoints() {
+        assertEquals("�", HtmlEntities.decode("&#xD800;"));
+        assertEquals("�", HtmlEntities.decode("&#57343;"));
+        assertEquals("�", HtmlEntities.decode("&#0;"));
+        assertEquals("�", HtmlEntities.decode("&#x110000;"));
+        assertEquals("�!", HtmlEntities.decode("&#99999999999999999999;!"));
+    }
+
+    @Test
+    void leavesWhatIsNotAReferenceAlone() {
+        assertEquals("&bogus; & &;", HtmlEntities.decode("&bogus; & &;"));
+        assertEquals("&#; &#x; &#xZ;", HtmlEntities.decode("&#; &#x; &#xZ;"));
+        assertEquals("AT&T", HtmlEntities.decode("AT&T"));
+        assertEquals("&", HtmlEntities.decode("&"));
+        assertEquals("&&", HtmlEntities.decode("&&amp;"));
+        // Names are case-sensitive, though a few have an upper-case spelling of their own
+        assertEquals("&EACUTE;", HtmlEntities.decode("&EACUTE;"));
+        assertEquals("&", HtmlEntities.decode("&AMP;"));
+    }
+
+    @Test
+    void returnsTheSameStringWhenThereIsNothingToDecode() {
+        String text = "No references here";
+        assertSame(text, HtmlEntities.decode(text));
+    }
+
+    @Test
+    void decodesARegionOfABuffer() {
+        char[] chars = "xxCaf&eacute; &amp; cr&egrave;mexx".toCharArray();
+        assertEquals("Café & crème", HtmlEntities.decode(chars, 2, chars.length - 4));
+        assertEquals("Caf", HtmlEntities.decode(chars, 2, 3));
+        // A region that ends inside a reference only sees what is in it
+        assertEquals("Caf&eac", HtmlEntities.decode(chars, 2, 7));
+    }
+}
@@ -0,0 +1,97 @@
+package org.mrserious;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link HttpQuestionProvider} against a local server whose responses come in slowly.
+ */
+@Timeout(30)
+class HttpQuestionProviderTest {
+    private static final String BATCH = """
+        [{"question": "Two plus two?", "answers": {"answer_a": "4", "answer_b": "5"}, "correct_answer": "answer_a"}]""";
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final CountDownLatch hungUp = new CountDownLatch(1);
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        httpClient.close();
+    }
+
+    @Test
+    void readsABodyThatArrivesInPieces() throws Exception {
+        start(Duration.ofMillis(5), false);
+        List<QuizGame.Question> questions = provider(Duration.ofSeconds(2)).fetch(batch()).get(5, TimeUnit.SECONDS);
+        assertEquals("Two plus two?", questions.getFirst().text());
+    }
+
+    @Test
+    void givesUpOnABodyThatNeverEnds() throws Exception {
+        // Headers at once, then a byte now and then for ever
+        start(Duration.ofMillis(50), true);
+        QuestionProvider provider = provider(Duration.ofMillis(500));
+
+        long started = System.nanoTime();
+        ExecutionException error = assertThrows(ExecutionException.class,
+            () -> provider.fetch(batch()).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2), "the deadline covers the body");
+
+        // The decoder let go of the connection rather than reading on
+        assertTrue(hungUp.await(5, TimeUnit.SECONDS), "the connection was left open");
+    }
+
+    private QuestionProvider provider(Duration maxTimeout) {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/questions");
+        return new HttpQuestionProvider("Trickle", httpClient, (amount, difficulty) -> HttpRequest.newBuilder(uri).build(),
+            QuestionJsonReader::readQuizApi, Duration.ofMillis(100), maxTimeout);
+    }
+
+    private static QuestionProvider.BatchRequest batch() {
+        return new QuestionProvider.BatchRequest(1, "", 0);
+    }
+
+    /**
+     * Serves {@link #BATCH} a byte every {@code pause}, or padding before it for ever.
+     */
+    private void start(Duration pause, boolean endless) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/questions", exchange -> {
+            byte[] body = BATCH.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, endless ? 0 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                do {
+                    for (byte b : endless ? new byte[]{' '} : body) {
+                        Thread.sleep(pause.toMillis());
+                        out.write(b);
+                        out.flush();
+                    }
+                } while (endless);
+            } catch (IOException e) {
+                hungUp.countDown();
+            } catch (InterruptedException e) {
+                // The server is stopping
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+}
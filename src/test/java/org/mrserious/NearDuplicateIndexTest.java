@@ -0,0 +1,96 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link NearDuplicateIndex#removeNearDuplicates} at the threshold the PDF extractor uses.
+ */
+class NearDuplicateIndexTest {
+    private static final double THRESHOLD = 0.8;
+
+    private static final QuizGame.Question PHOTOSYNTHESIS = question(
+        "1. Which gas do green plants take in from the air during photosynthesis in order to build sugars in their leaves?",
+        "Carbon dioxide", "Oxygen", "Nitrogen", "Hydrogen");
+    private static final QuizGame.Question RIVER = question(
+        "Q2) Which river flows through the city of Vienna on its long way from the Black Forest to the Black Sea?",
+        "Danube", "Rhine", "Elbe", "Vistula");
+
+    @Test
+    void removesRenumberedRewordedAndShuffledCopies() {
+        List<QuizGame.Question> questions = List.of(
+            PHOTOSYNTHESIS,
+            RIVER,
+            // Numbered differently, as in another edition of the same quiz
+            question("Question 14: Which gas do green plants take in from the air during photosynthesis in order to build sugars in their leaves?",
+                "Carbon dioxide", "Oxygen", "Nitrogen", "Hydrogen"),
+            // The options in another order, and another case and punctuation
+            question("Q2. which river flows through the city of Vienna, on its long way from the Black Forest to the Black Sea",
+                "Vistula", "Elbe", "Danube", "Rhine"),
+            // One word changed
+            question("1. Which gas do green plants take in from the atmosphere during photosynthesis in order to build sugars in their leaves?",
+                "Oxygen", "Carbon dioxide", "Hydrogen", "Nitrogen"));
+
+        List<QuizGame.Question> unique = NearDuplicateIndex.removeNearDuplicates(questions, THRESHOLD);
+        assertEquals(2, unique.size());
+        assertSame(PHOTOSYNTHESIS, unique.get(0));
+        assertSame(RIVER, unique.get(1));
+    }
+
+    @Test
+    void keepsDistinctQuestionsThatShareBoilerplate() {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        String[][] facts = {
+            {"mitochondria", "They produce most of the cell's energy", "They store genetic code", "They digest proteins", "They build membranes"},
+            {"ribosomes", "They assemble proteins", "They produce most of the cell's energy", "They store water", "They divide the cell"},
+            {"chloroplasts", "They carry out photosynthesis", "They assemble proteins", "They hold the nucleus", "They pump ions"},
+            {"lysosomes", "They break down waste", "They carry out photosynthesis", "They copy DNA", "They make lipids"},
+        };
+        for (String[] fact : facts) {
+            questions.add(question("Which of the following statements about " + fact[0]
+                + " in a typical animal or plant cell is true according to the textbook?", fact[1], fact[2], fact[3], fact[4]));
+        }
+        questions.add(question("???"));
+        questions.add(question("???"));
+
+        List<QuizGame.Question> unique = NearDuplicateIndex.removeNearDuplicates(questions, THRESHOLD);
+        assertEquals(questions.size(), unique.size());
+        for (int i = 0; i < questions.size(); i++) {
+            // The same instances, which the PDF merge relies on to map them back to their files
+            assertSame(questions.get(i), unique.get(i));
+        }
+    }
+
+    @Test
+    void keepsTheFirstOfEachGroupInOrder() {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        for (int copy = 0; copy < 3; copy++) {
+            for (int topic = 0; topic < 20; topic++) {
+                questions.add(question((copy + 1) + "." + (topic + 1) + " In which year did expedition number " + topic
+                        + " reach the far side of the mountain range after crossing the frozen lake?",
+                    "In " + (1800 + topic), "In " + (1900 + topic), "In " + (2000 + topic), "Never"));
+            }
+        }
+
+        List<QuizGame.Question> unique = NearDuplicateIndex.removeNearDuplicates(questions, THRESHOLD);
+        assertEquals(20, unique.size());
+        for (int i = 0; i < unique.size(); i++) {
+            assertSame(questions.get(i), unique.get(i));
+        }
+    }
+
+    @Test
+    void refusesAThresholdOutsideTheUnitInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(0));
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(1.5));
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(Double.NaN));
+    }
+
+    private static QuizGame.Question question(String text, String... options) {
+        return new QuizGame.Question(text, List.of(options), options.length > 0 ? options[0] : "", "medium", "Test");
+    }
+}
@@ -0,0 +1,240 @@
+package org.mrserious;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link OpenTDBClient} against a local stand-in for OpenTDB that answers response code 5
+ * to any request, token or questions, that starts too soon after the last one.
+ */
+@Timeout(30)
+class OpenTDBClientTest {
+    private static final Duration INTERVAL = Duration.ofMillis(50);
+    private static final int FIRST_CATEGORY = 9;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private StubOpenTDB stub;
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.close();
+        }
+        httpClient.close();
+    }
+
+    @Test
+    void fetchesWithOneTokenAndNeverRepeats() throws Exception {
+        OpenTDBClient client = client(1, 30);
+
+        Set<String> texts = new HashSet<>();
+        for (int round = 0; round < 3; round++) {
+            List<QuizGame.Question> batch = client.fetch(new QuestionProvider.BatchRequest(10, "", round))
+                .get(5, TimeUnit.SECONDS);
+            assertEquals(10, batch.size());
+            batch.forEach(question -> assertTrue(texts.add(question.text()), "repeated " + question.text()));
+        }
+        assertEquals(1, stub.tokensIssued);
+        assertEquals(0, stub.rateLimited);
+    }
+
+    @Test
+    void spacesTheTokenRequestLikeTheOthers() throws Exception {
+        OpenTDBClient client = client(1, 30);
+        client.fetch(new QuestionProvider.BatchRequest(10, "", 0)).get(5, TimeUnit.SECONDS);
+
+        // The token request and the question request went out back to back
+        assertEquals(2, stub.requests);
+        assertEquals(0, stub.rateLimited);
+    }
+
+    @Test
+    void replacesAnExpiredToken() throws Exception {
+        OpenTDBClient client = client(1, 30);
+        client.fetch(new QuestionProvider.BatchRequest(10, "", 0)).get(5, TimeUnit.SECONDS);
+
+        stub.forgetTokens();
+        assertEquals(10, client.fetch(new QuestionProvider.BatchRequest(10, "", 1)).get(5, TimeUnit.SECONDS).size());
+        assertEquals(2, stub.tokensIssued);
+    }
+
+    @Test
+    void reportsAResponseCodeItCannotRecoverFrom() throws Exception {
+        OpenTDBClient client = client(1, 10);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+            () -> client.fetch(new QuestionProvider.BatchRequest(20, "", 0)).get(5, TimeUnit.SECONDS));
+        OpenTDBClient.ResponseException response = assertInstanceOf(OpenTDBClient.ResponseException.class, error.getCause());
+        assertEquals(OpenTDBClient.NO_RESULTS, response.responseCode());
+    }
+
+    @Test
+    void fillsAPoolAcrossCategories() throws Exception {
+        OpenTDBClient client = client(3, 40);
+
+        List<QuizGame.Question> pool = client.fill(100, "", List.of(9, 10, 11), 3).get(20, TimeUnit.SECONDS);
+        assertEquals(100, pool.size());
+        assertEquals(100, pool.stream().map(QuizGame.Question::text).distinct().count());
+        assertEquals(3, pool.stream().map(QuizGame.Question::category).distinct().count());
+    }
+
+    @Test
+    void fillStopsWhenEveryCategoryHasRunOut() throws Exception {
+        OpenTDBClient client = client(2, 15);
+
+        List<QuizGame.Question> pool = client.fill(100, "", List.of(9, 10), 2).get(20, TimeUnit.SECONDS);
+        assertEquals(30, pool.size());
+        assertEquals(30, pool.stream().map(QuizGame.Question::text).distinct().count());
+    }
+
+    private OpenTDBClient client(int categories, int perCategory) throws IOException {
+        stub = new StubOpenTDB(categories, perCategory);
+        // Twice the stub's limit: the client spaces starts, the stub sees arrivals, and the
+        // first request of a cold client takes a while to arrive
+        return new OpenTDBClient(httpClient, stub.api(), INTERVAL.multipliedBy(2),
+            Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    /**
+     * {@code api.php} and {@code api_token.php} with OpenTDB's response codes over
+     * {@code categories × perCategory} generated questions. Requests are served one at a
+     * time, so the counters are read without further locking once the client is done.
+     */
+    private static final class StubOpenTDB implements AutoCloseable {
+        private final HttpServer server;
+        private final int categories;
+        private final int perCategory;
+        private final Map<String, Set<Integer>> tokens = new ConcurrentHashMap<>();
+        private long lastRequest = System.nanoTime() - Long.MAX_VALUE / 2;
+
+        volatile int requests;
+        volatile int rateLimited;
+        volatile int tokensIssued;
+
+        StubOpenTDB(int categories, int perCategory) throws IOException {
+            this.categories = categories;
+            this.perCategory = perCategory;
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/api.php", exchange -> respond(exchange, this::questions));
+            server.createContext("/api_token.php", exchange -> respond(exchange, this::token));
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+        }
+
+        URI api() {
+            return URI.create("http://localhost:" + server.getAddress().getPort() + "/api.php");
+        }
+
+        void forgetTokens() {
+            tokens.clear();
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+
+        private String questions(Map<String, String> query) {
+            int amount = Integer.parseInt(query.getOrDefault("amount", "10"));
+            int category = Integer.parseInt(query.getOrDefault("category", "0"));
+            Set<Integer> served = null;
+            if (query.containsKey("token")) {
+                served = tokens.get(query.get("token"));
+                if (served == null) {
+                    return "{\"response_code\":3,\"results\":[]}";
+                }
+            }
+
+            List<Integer> available = new ArrayList<>();
+            for (int id = 0; id < categories * perCategory; id++) {
+                if ((category == 0 || FIRST_CATEGORY + id / perCategory == category) && (served == null || !served.contains(id))) {
+                    available.add(id);
+                }
+            }
+            if (available.isEmpty()) {
+                return "{\"response_code\":" + (served != null ? 4 : 1) + ",\"results\":[]}";
+            }
+            if (available.size() < amount) {
+                return "{\"response_code\":1,\"results\":[]}";
+            }
+
+            StringBuilder json = new StringBuilder("{\"response_code\":0,\"results\":[");
+            for (int i = 0; i < amount; i++) {
+                int id = available.get(i);
+                if (served != null) {
+                    served.add(id);
+                }
+                json.append(i == 0 ? "" : ",").append("""
+                    {"type": "multiple", "difficulty": "easy", "category": "Category %d",
+                     "question": "Stub question %d?", "correct_answer": "Right %d",
+                     "incorrect_answers": ["Wrong A%d", "Wrong B%d", "Wrong C%d"]}"""
+                    .formatted(FIRST_CATEGORY + id / perCategory, id, id, id, id, id));
+            }
+            return json.append("]}").toString();
+        }
+
+        private String token(Map<String, String> query) {
+            if (!"request".equals(query.get("command"))) {
+                return "{\"response_code\":2}";
+            }
+            String token = UUID.randomUUID().toString().replace("-", "");
+            tokens.put(token, ConcurrentHashMap.newKeySet());
+            tokensIssued++;
+            return "{\"response_code\":0,\"token\":\"" + token + "\"}";
+        }
+
+        private synchronized void respond(HttpExchange exchange, Function<Map<String, String>, String> handler) throws IOException {
+            requests++;
+            String body;
+            long now = System.nanoTime();
+            if (now - lastRequest < INTERVAL.toNanos()) {
+                rateLimited++;
+                body = "{\"response_code\":5,\"results\":[]}";
+            } else {
+                lastRequest = now;
+                body = handler.apply(query(exchange));
+            }
+
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private static Map<String, String> query(HttpExchange exchange) {
+            Map<String, String> query = new HashMap<>();
+            String raw = exchange.getRequestURI().getRawQuery();
+            if (raw != null) {
+                for (String pair : raw.split("&")) {
+                    int eq = pair.indexOf('=');
+                    if (eq > 0) {
+                        query.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            return query;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.mrserious;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link PrefetchingQuestionSource} against two local QuizAPI-shaped servers. Whichever
+ * provider answers, the buffer must never hold more than two batches.
+ */
+@Timeout(30)
+class PrefetchingQuestionSourceTest {
+    private static final int BATCH = 10;
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(200);
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<StubApi> apis = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        apis.forEach(StubApi::close);
+        httpClient.close();
+    }
+
+    @Test
+    void healthyPrimaryServesEveryBatch() throws IOException {
+        StubApi primary = stub("primary", 0, 200);
+        StubApi backup = stub("backup", 0, 200);
+
+        try (PrefetchingQuestionSource source = start(primary, backup, Duration.ofSeconds(5))) {
+            for (QuizGame.Question question : take(source, 5 * BATCH)) {
+                assertEquals("primary", question.category());
+            }
+        }
+        assertEquals(0, backup.requests.get());
+    }
+
+    @Test
+    void backupWinsWhilePrimaryIsSlow() throws IOException {
+        StubApi primary = stub("primary", 3_000, 200);
+        StubApi backup = stub("backup", 0, 200);
+
+        try (PrefetchingQuestionSource source = start(primary, backup, HEDGE_DELAY)) {
+            long started = System.nanoTime();
+            assertTrue(source.hasNext());
+            assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(2)) < 0,
+                "the hedge should answer long before the primary");
+            assertEquals("backup", source.next().category());
+            take(source, 2 * BATCH);
+        }
+        assertTrue(primary.requests.get() > 0);
+    }
+
+    @Test
+    void failingPrimaryFallsBack() throws IOException {
+        StubApi primary = stub("primary", 0, 500);
+        StubApi backup = stub("backup", 0, 200);
+
+        try (PrefetchingQuestionSource source = start(primary, backup, Duration.ofSeconds(5))) {
+            for (QuizGame.Question question : take(source, 3 * BATCH)) {
+                assertEquals("backup", question.category());
+            }
+        }
+        assertTrue(primary.requests.get() > 0);
+    }
+
+    @Test
+    void bothFailingEndsTheSource() throws IOException {
+        StubApi primary = stub("primary", 0, 500);
+        StubApi backup = stub("backup", 0, 503);
+
+        try (PrefetchingQuestionSource source = start(primary, backup, HEDGE_DELAY)) {
+            assertFalse(source.hasNext());
+            assertEquals(0, source.buffered());
+            assertNotNull(source.lastError());
+        }
+    }
+
+    private PrefetchingQuestionSource start(StubApi primary, StubApi backup, Duration hedgeDelay) {
+        return new PrefetchingQuestionSource(provider(primary), provider(backup), BATCH, hedgeDelay).start();
+    }
+
+    private QuestionProvider provider(StubApi api) {
+        return new HttpQuestionProvider(api.name, httpClient,
+            (amount, difficulty) -> HttpRequest.newBuilder(api.uri(amount)).build(),
+            QuestionJsonReader::readQuizApi, Duration.ofSeconds(5), Duration.ofSeconds(10));
+    }
+
+    /**
+     * Takes {@code count} questions, checking the buffer bound after each one and once
+     * the refill they trigger has had time to land.
+     */
+    private static List<QuizGame.Question> take(PrefetchingQuestionSource source, int count) {
+        List<QuizGame.Question> taken = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            assertTrue(source.hasNext(), "ran dry after " + i + " questions");
+            taken.add(source.next());
+            assertTrue(source.buffered() <= 2 * BATCH, () -> source.buffered() + " questions buffered");
+        }
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertTrue(source.buffered() <= 2 * BATCH, () -> source.buffered() + " questions buffered");
+        return taken;
+    }
+
+    private StubApi stub(String name, long delayMillis, int status) throws IOException {
+        StubApi api = new StubApi(name, delayMillis, status);
+        apis.add(api);
+        return api;
+    }
+
+    /**
+     * Answers every request with {@code limit} new QuizAPI questions whose category is
+     * the stub's name, after {@code delayMillis}, or with an empty error response.
+     */
+    private static final class StubApi implements AutoCloseable {
+        final String name;
+        final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger questions = new AtomicInteger();
+        private final long delayMillis;
+        private final int status;
+        private final HttpServer server;
+
+        StubApi(String name, long delayMillis, int status) throws IOException {
+            this.name = name;
+            this.delayMillis = delayMillis;
+            this.status = status;
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/questions", this::respond);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+        }
+
+        URI uri(int amount) {
+            return URI.create("http://localhost:" + server.getAddress().getPort() + "/questions?limit=" + amount);
+        }
+
+        private void respond(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try (exchange) {
+                Thread.sleep(delayMillis);
+                if (status != 200) {
+                    exchange.sendResponseHeaders(status, -1);
+                    return;
+                }
+                String query = exchange.getRequestURI().getQuery();
+                int limit = Integer.parseInt(query.substring(query.indexOf("limit=") + "limit=".length()));
+                StringBuilder json = new StringBuilder("[");
+                for (int i = 0; i < limit; i++) {
+                    int n = questions.incrementAndGet();
+                    json.append(i == 0 ? "" : ",").append("""
+                        {"question": "%s question %d?", "category": "%s", "difficulty": "Easy",
+                         "answers": {"answer_a": "yes", "answer_b": "no"}, "correct_answer": "answer_a"}"""
+                        .formatted(name, n, name));
+                }
+                byte[] body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                // The server is stopping
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+}
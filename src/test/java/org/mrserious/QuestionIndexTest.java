@@ -0,0 +1,189 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link QuestionIndex#search} against a scan of every question's terms, over random
+ * questions drawn from a small vocabulary so that words, prefixes and hyphenated pairs
+ * keep overlapping.
+ */
+class QuestionIndexTest {
+    private static final List<String> WORDS = List.of(
+        "photo", "photosynthesis", "synthesis", "cell", "cells", "cellar", "chlorophyll",
+        "leaf", "leaves", "exam", "example", "été", "water", "light", "lighthouse", "x");
+    private static final int QUERIES = 2_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void answersTheDocumentedQueryForms() {
+        List<QuizGame.Question> questions = List.of(
+            question("What does photosynthesis need?", "Light", "Water"),
+            question("Where is chlorophyll found?", "In the leaf", "In the exam"),
+            question("Is a photo-synthesis exam hard?", "Yes", "No"),
+            question("Which cells photosynthesise?", "Leaf cells", "None"));
+        QuestionIndex index = QuestionIndex.of(questions);
+
+        assertArrayEquals(new int[]{0}, index.search("photosynthesis"));
+        assertArrayEquals(new int[]{0, 1}, index.search("photosynthesis OR chlorophyll"));
+        assertArrayEquals(new int[]{0}, index.search("photosynthesis OR chlorophyll -exam*"));
+        assertArrayEquals(new int[]{0, 3}, index.search("photosynth*"));
+        assertArrayEquals(new int[]{2}, index.search("photo-synthesis"));
+        assertArrayEquals(new int[]{1, 3}, index.search("LEAF"));
+        assertArrayEquals(new int[0], index.search("-leaf"));
+        assertArrayEquals(new int[0], index.search(""));
+    }
+
+    @Test
+    void searchMatchesAScan() {
+        List<QuizGame.Question> questions = randomQuestions(400);
+        QuestionIndex index = QuestionIndex.of(questions);
+        assertEquals(questions.size(), index.size());
+
+        List<Set<String>> terms = questions.stream().map(QuestionIndexTest::terms).toList();
+        for (int i = 0; i < QUERIES; i++) {
+            String query = randomQuery();
+            assertArrayEquals(scan(terms, query), index.search(query), query);
+        }
+    }
+
+    @Test
+    void mergedSegmentsMatchAScanOfTheKeptQuestions() {
+        List<QuizGame.Question> first = randomQuestions(250);
+        List<QuizGame.Question> second = randomQuestions(150);
+
+        // Drop about a fifth of each segment, as near-duplicates would be
+        List<QuizGame.Question> kept = new ArrayList<>();
+        List<int[]> idMaps = new ArrayList<>();
+        for (List<QuizGame.Question> segment : List.of(first, second)) {
+            int[] idMap = new int[segment.size()];
+            for (int i = 0; i < segment.size(); i++) {
+                if (random.nextInt(5) == 0) {
+                    idMap[i] = -1;
+                } else {
+                    idMap[i] = kept.size();
+                    kept.add(segment.get(i));
+                }
+            }
+            idMaps.add(idMap);
+        }
+
+        QuestionIndex merged = QuestionIndex.merge(
+            List.of(QuestionIndex.of(first), QuestionIndex.of(second)), idMaps, kept.size());
+        assertEquals(kept.size(), merged.size());
+
+        List<Set<String>> terms = kept.stream().map(QuestionIndexTest::terms).toList();
+        for (int i = 0; i < QUERIES; i++) {
+            String query = randomQuery();
+            assertArrayEquals(scan(terms, query), merged.search(query), query);
+        }
+        for (String word : WORDS) {
+            assertArrayEquals(QuestionIndex.of(kept).postings(word), merged.postings(word), word);
+        }
+    }
+
+    /**
+     * The questions whose terms satisfy {@code query}, worked out clause by clause the way
+     * the {@link QuestionIndex} documentation reads.
+     */
+    private static int[] scan(List<Set<String>> terms, String query) {
+        List<List<String>> alternatives = new ArrayList<>();
+        alternatives.add(new ArrayList<>());
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR")) {
+                alternatives.add(new ArrayList<>());
+            } else if (!word.isEmpty()) {
+                alternatives.getLast().add(word);
+            }
+        }
+        return IntStream.range(0, terms.size())
+            .filter(id -> alternatives.stream().anyMatch(clauses -> matches(terms.get(id), clauses)))
+            .toArray();
+    }
+
+    private static boolean matches(Set<String> terms, List<String> clauses) {
+        boolean required = false;
+        for (String clause : clauses) {
+            boolean exclude = clause.length() > 1 && clause.charAt(0) == '-';
+            boolean isPrefix = clause.endsWith("*");
+            List<String> words = QuestionIndex.tokenize(clause);
+            if (words.isEmpty()) {
+                continue;
+            }
+            boolean all = true;
+            for (int w = 0; w < words.size(); w++) {
+                String word = words.get(w);
+                all &= isPrefix && w == words.size() - 1
+                    ? terms.stream().anyMatch(term -> term.startsWith(word))
+                    : terms.contains(word);
+            }
+            if (exclude ? all : !all) {
+                return false;
+            }
+            required |= !exclude;
+        }
+        return required;
+    }
+
+    private static Set<String> terms(QuizGame.Question question) {
+        Set<String> terms = new HashSet<>(QuestionIndex.tokenize(question.text()));
+        question.options().forEach(option -> terms.addAll(QuestionIndex.tokenize(option)));
+        return terms;
+    }
+
+    private List<QuizGame.Question> randomQuestions(int count) {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            questions.add(question(randomText(2 + random.nextInt(5)) + "?", randomText(1), randomText(2)));
+        }
+        return questions;
+    }
+
+    private String randomText(int words) {
+        StringJoiner text = new StringJoiner(" ");
+        for (int i = 0; i < words; i++) {
+            String word = randomWord();
+            // Sometimes capitalised, hyphenated or punctuated, none of which the terms keep
+            text.add(switch (random.nextInt(6)) {
+                case 0 -> word.toUpperCase(Locale.ROOT);
+                case 1 -> word + "-" + randomWord();
+                case 2 -> "(" + word + "),";
+                default -> word;
+            });
+        }
+        return text.toString();
+    }
+
+    private String randomQuery() {
+        StringJoiner query = new StringJoiner(" ");
+        int clauses = 1 + random.nextInt(4);
+        for (int i = 0; i < clauses; i++) {
+            if (i > 0 && random.nextInt(4) == 0) {
+                query.add("OR");
+            }
+            String word = randomWord();
+            String clause = switch (random.nextInt(5)) {
+                case 0 -> word.substring(0, 1 + random.nextInt(word.length())) + "*";
+                case 1 -> word + "-" + randomWord();
+                case 2 -> randomWord() + "-" + word.substring(0, 1 + random.nextInt(word.length())) + "*";
+                case 3 -> "UNSEEN".substring(0, 1 + random.nextInt(6));
+                default -> word;
+            };
+            query.add(random.nextInt(4) == 0 ? "-" + clause : clause);
+        }
+        return query.toString();
+    }
+
+    private String randomWord() {
+        return WORDS.get(random.nextInt(WORDS.size()));
+    }
+
+    private static QuizGame.Question question(String text, String... options) {
+        return new QuizGame.Question(text, List.of(options), options[0], "medium", "Science");
+    }
+}
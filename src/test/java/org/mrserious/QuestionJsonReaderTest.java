@@ -0,0 +1,49 @@
+package org.mrserious;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionJsonReaderTest {
+    @Test
+    void readsAnOpenTDBQuestion() throws IOException {
+        List<QuizGame.Question> questions = QuestionJsonReader.readOpenTDB(json("""
+            {"response_code": 0, "results": [{"type": "multiple", "difficulty": "easy", "category": "Art",
+              "question": "Who painted &quot;Guernica&quot;?", "correct_answer": "Picasso",
+              "incorrect_answers": ["Dal&iacute;", "Mir&oacute;", "Goya"]}]}"""));
+
+        QuizGame.Question question = questions.getFirst();
+        assertEquals("Who painted \"Guernica\"?", question.text());
+        assertEquals("Picasso", question.correctAnswer());
+        assertEquals(List.of("Dalí", "Goya", "Miró", "Picasso"), question.options().stream().sorted().toList());
+    }
+
+    @Test
+    void skipsIncorrectAnswersThatAreNotText() throws IOException {
+        List<QuizGame.Question> questions = QuestionJsonReader.readOpenTDB(json("""
+            {"response_code": 0, "results": [{"question": "Two plus two?", "correct_answer": "4",
+              "incorrect_answers": [null, "3", {"text": "5"}, ["6"], "22"]}]}"""));
+
+        QuizGame.Question question = questions.getFirst();
+        assertEquals(List.of("22", "3", "4"), question.options().stream().sorted().toList());
+        // What the bank does with it next, which a null option used to break
+        assertEquals(1, new QuestionBank(questions).store().size());
+    }
+
+    @Test
+    void rejectsAQuestionWithoutText() {
+        assertThrows(JsonParseException.class, () -> QuestionJsonReader.readOpenTDB(json("""
+            {"response_code": 0, "results": [{"correct_answer": "4", "incorrect_answers": ["3"]}]}""")));
+    }
+
+    private static InputStream json(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
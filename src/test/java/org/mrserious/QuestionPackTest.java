@@ -0,0 +1,150 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link QuestionPack} round trips, and packs damaged in ways that must be refused with an
+ * {@link IOException} when they are opened.
+ */
+class QuestionPackTest {
+    // Where the header keeps the magic number, the version and the first section's offset
+    private static final int VERSION_OFFSET = 4;
+    private static final int SECTIONS_OFFSET = 24;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void roundTripsQuestionsAndGroups() throws IOException {
+        List<QuizGame.Question> questions = questions();
+        QuestionBank written = new QuestionBank(questions);
+        Path file = folder.resolve("questions.pack");
+        QuestionPack.write(written, file);
+
+        QuestionBank read = QuestionPack.open(file);
+        assertEquals(questions.size(), read.size());
+        for (int id = 0; id < questions.size(); id++) {
+            assertEquals(questions.get(id), read.store().get(id));
+        }
+
+        assertEquals(counts(written), counts(read));
+        assertEquals(written.difficulties(), read.difficulties());
+        assertEquals(written.categories(), read.categories());
+        assertEquals(4, read.count(Set.of("easy"), "Géographie"));
+        assertEquals(16, read.count(Set.of("easy", "hard"), null));
+        assertEquals(questions.size(), read.count(Set.of(), null));
+
+        RandomGenerator random = new Random(7);
+        List<QuizGame.Question> sample = read.sample(3, Set.of("hard"), "日本", random);
+        assertEquals(3, sample.size());
+        assertEquals(3, new HashSet<>(sample).size());
+        for (QuizGame.Question question : sample) {
+            assertEquals("hard", question.difficulty());
+            assertEquals("日本", question.category());
+            assertTrue(questions.contains(question));
+        }
+        // Asking for more than there are hands out the whole group
+        assertEquals(new HashSet<>(read.sample(100, Set.of("medium"), "Géographie", random)),
+            new HashSet<>(questions.stream()
+                .filter(q -> q.difficulty().equals("medium") && q.category().equals("Géographie"))
+                .toList()));
+    }
+
+    @Test
+    void refusesAFileWithTheWrongMagic() throws IOException {
+        Path file = pack();
+        overwrite(file, 0, ByteBuffer.allocate(Integer.BYTES).putInt(0x25504446).flip());
+        assertRefused(file);
+    }
+
+    @Test
+    void refusesAnotherVersion() throws IOException {
+        Path file = pack();
+        overwrite(file, VERSION_OFFSET, ByteBuffer.allocate(Integer.BYTES).putInt(99).flip());
+        assertRefused(file);
+    }
+
+    @Test
+    void refusesATruncatedFile() throws IOException {
+        Path file = pack();
+        long size = Files.size(file);
+        for (long length : new long[]{0, 10, SECTIONS_OFFSET + 8, 200, size / 2, size - 1}) {
+            Path truncated = folder.resolve("truncated-" + length + ".pack");
+            Files.copy(file, truncated);
+            try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            assertRefused(truncated);
+        }
+    }
+
+    @Test
+    void refusesASectionOutsideTheFile() throws IOException {
+        Path file = pack();
+        overwrite(file, SECTIONS_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(Files.size(file) + 8).flip());
+        assertRefused(file);
+
+        file = pack();
+        overwrite(file, SECTIONS_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(-8).flip());
+        assertRefused(file);
+    }
+
+    private Path pack() throws IOException {
+        Path file = Files.createTempFile(folder, "questions", ".pack");
+        QuestionPack.write(new QuestionBank(questions()), file);
+        return file;
+    }
+
+    private static void assertRefused(Path file) {
+        // Anything but an IOException would escape the loader's fallback to the PDFs
+        assertThrows(IOException.class, () -> QuestionPack.open(file), file::toString);
+    }
+
+    private static void overwrite(Path file, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    /**
+     * Question count per (difficulty, category) group.
+     */
+    private static Map<String, Integer> counts(QuestionBank bank) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (QuestionBank.Bucket bucket : bank.buckets()) {
+            counts.put(bucket.difficulty() + "/" + bucket.category(), bucket.ids().limit());
+        }
+        return counts;
+    }
+
+    /**
+     * Four questions in each of six groups, with accents, CJK and emoji in the text.
+     */
+    private static List<QuizGame.Question> questions() {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        int n = 0;
+        for (String difficulty : List.of("easy", "medium", "hard")) {
+            for (String category : List.of("Géographie", "日本")) {
+                for (int i = 0; i < 4; i++, n++) {
+                    questions.add(new QuizGame.Question(
+                        "Qu'est-ce que l'été n°" + n + " à 東京 🗼?",
+                        List.of("Réponse " + n, "答え " + n, "Ænswer " + n),
+                        "答え " + n, difficulty, category));
+                }
+            }
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,179 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mrserious.PDFQuestionExtractor.*;
+
+/**
+ * {@link QuestionScanner} must find exactly what the regex pattern pass it replaced
+ * found. {@link #regexPass} is that pass, kept here as the reference.
+ */
+class QuestionScannerTest {
+    private static final String[] CORPUS = {
+        "",
+        "1. What is the capital of France?\nA) Berlin\nB) Paris\nC) Rome\nD) Madrid\nAnswer: B\n",
+        "Q1. Which gas do plants absorb?\na. Oxygen\nb. Carbon dioxide\nc. Nitrogen\n\nQ2. Which is a noble gas?\nA. Neon\nB. Iron\n",
+        "Question 3. Who wrote Hamlet?\n(A) Marlowe\nB) Shakespeare\nC) Jonson\nThe correct answer is B\n",
+        "12. How many sides\nhas a hexagon?\nA) 5\nB) 6\nC) 8\n",
+        "7?\nA) yes\nB) no\n",
+        "12?\nA) yes\nB) no\n",
+        "Q.12?\nA) yes\nB) no\n",
+        "1. No question mark here\nA) one\nB) two\n2. Still none\nA) three\n",
+        "1. What follows?\nA) one\nB) two\nsolution: D\nC) three\nD) four\n",
+        "1. What is it?\r\nA) one\r\nB) two\r\nAnswer: B\r\n",
+        "1. What is it?\rA) one\rB) two\r",
+        "1. What is it?\u2028A) one\u2028B) two\n",
+        "1. What is it?\u0085A) one\nB) two\n",
+        "1. What is it?\nA) one\n\nB) two\nC) three\n",
+        "1. What is it? A) inline\nB) two\nC) three\n",
+        "1. First?\nA) a\nB) b\n2. Second?\nA) c\nB) d\nanswer is A\n",
+        // Text after the '?' keeps the lookahead going past the question line
+        "1. What is the capital of France? (1 mark)\nA) Berlin\nB) Paris\nC) Rome\nD) Madrid\nAnswer: B\n",
+        "Q1. Which gas do plants absorb? (2 marks)\na. Oxygen\nb. Carbon dioxide\n\nQ2. Which is a noble gas? [1]\nA. Neon\nB. Iron\n",
+        "Question 3. Who wrote Hamlet? (1 mark)\n(A) Marlowe\nB) Shakespeare\nC) Jonson\n\nThe correct answer is B\n",
+        "1. First? x\nA) a\nB) b\n2. Second? x\nA) c\nB) d\nsolution: b\n",
+        "1. What is it? x\r\nA) one\r\nB) two\r\nAnswer: B\r\n",
+        "1. What is it? x\u2028A) one\u2028B) two\nC) three\n",
+        "1. Mixed case? x\nc) lower\nD. upper\ncorrect: c\n",
+        "1. Trailing label?\nA)\nB)\nC) real\n",
+        "   4.   Spaced out   question   ?\n   A .  one\n   B ) two\n",
+    };
+
+    private static final String[] TOKENS = {
+        "1.", "12", "Q3", "Q.4", "Question 5", "?", "? ", "A)", "b.", "C", "(d)", "d)", "answer", "Answer:",
+        "correct", "is", "solution", ":", "\n", "\n", "\n", "\n\n", "\r", "\r\n", "\u2028", "\u0085",
+        "word", "x", " ", " ", "\t", "B", "A. alpha", "e)", "(correct)"
+    };
+
+    @Test
+    void matchesRegexPassOnCorpus() {
+        for (String text : CORPUS) {
+            assertSame(text);
+        }
+    }
+
+    @Test
+    void matchesRegexPassOnLongFiller() {
+        // Every question has more than the 20 lookahead lines after it, so options and
+        // answers turn up both within the lookahead and on the catch-all last line
+        assertSame(filler(500));
+    }
+
+    @Test
+    void matchesRegexPassOnRandomText() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int tokens = 1 + random.nextInt(random.nextBoolean() ? 20 : 200);
+            for (int t = 0; t < tokens; t++) {
+                text.append(TOKENS[random.nextInt(TOKENS.length)]);
+                if (random.nextInt(3) == 0) {
+                    text.append(' ');
+                }
+            }
+            assertSame(text.toString());
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void staysLinearOnLongFiller() {
+        // Scanning the rest of the text for every question took over a minute on 2,000 of these
+        assertEquals(1666, extractQuestionsUsingPatterns(filler(5_000)).size());
+    }
+
+    /**
+     * Questions like "N. What is item N? (2 marks)", each followed by 20 lines of filler
+     * and no blank lines. Every third has an option early on, every second one on its
+     * 20th line, and some have a fallback answer or a third option further down.
+     */
+    private static String filler(int questions) {
+        StringBuilder text = new StringBuilder();
+        for (int k = 1; k <= questions; k++) {
+            text.append(k).append(". What is item ").append(k).append("? (2 marks)\n");
+            for (int line = 0; line < 20; line++) {
+                if (k % 3 == 0 && line == 4) {
+                    text.append("A) alpha ").append(k).append('\n');
+                } else if (k % 2 == 0 && line == 19) {
+                    text.append("B) beta\n");
+                } else if (k % 5 == 0 && line == 18) {
+                    text.append("C) gamma\n");
+                } else if (k % 11 == 0 && line == 19) {
+                    text.append("The answer is C\n");
+                } else {
+                    text.append("filler line ").append(line).append(" of item ").append(k).append('\n');
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static void assertSame(String text) {
+        assertEquals(regexPass(text), extractQuestionsUsingPatterns(text), () -> "text: " + text
+            .replace("\r", "\\r").replace("\n", "\\n").replace("\u2028", "\\u2028").replace("\u0085", "\\u0085"));
+    }
+
+    /**
+     * The pattern pass before QuestionScanner: a substring and a split of the rest of the
+     * text for every question, and a lower-cased copy of it to look for a fallback answer.
+     */
+    private static List<QuizGame.Question> regexPass(String text) {
+        List<QuizGame.Question> questions = new ArrayList<>();
+        Matcher questionMatcher = QUESTION_PATTERNS.matcher(text);
+        int resumeAt = 0;
+
+        while (questionMatcher.find(resumeAt)) {
+            String questionText = questionMatcher.group(1).trim();
+            int questionEnd = questionMatcher.end();
+            resumeAt = questionEnd;
+
+            String remainingText = text.substring(questionEnd);
+            String[] lines = remainingText.split("\n", 20);
+
+            Map<String, String> options = new HashMap<>();
+            String correctAnswer = "";
+
+            for (String line : lines) {
+                Matcher optionMatcher = OPTION_PATTERN.matcher(line);
+                if (optionMatcher.find()) {
+                    options.put(optionMatcher.group(1).toUpperCase(), optionMatcher.group(2).trim());
+                }
+
+                Matcher answerMatcher = ANSWER_PATTERN.matcher(line);
+                if (answerMatcher.find()) {
+                    correctAnswer = answerMatcher.group(1).toUpperCase();
+                }
+
+                if (line.trim().isEmpty() || QUESTION_PATTERNS.matcher(line).find()) {
+                    break;
+                }
+            }
+
+            if (options.size() >= 2) {
+                List<String> optionsList = new ArrayList<>(options.values());
+                if (correctAnswer.isEmpty()) {
+                    Matcher hint = Pattern.compile("(?:answer|correct|solution)\\s*(?:is|:)?\\s*([a-d])",
+                        Pattern.CASE_INSENSITIVE).matcher(remainingText.toLowerCase());
+                    correctAnswer = hint.find() ? hint.group(1).toUpperCase()
+                        : options.keySet().stream().findFirst().orElse("A");
+                }
+
+                questions.add(new QuizGame.Question(
+                    LineClassifier.cleanQuestionText(questionText),
+                    optionsList,
+                    options.getOrDefault(correctAnswer, optionsList.getFirst()),
+                    "medium",
+                    "PDF Extract"
+                ));
+            }
+        }
+
+        return questions;
+    }
+}
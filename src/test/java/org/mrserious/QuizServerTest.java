@@ -0,0 +1,102 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(30)
+class QuizServerTest {
+    private final QuizServer server = start();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void readsLinesWithEveryTerminator() throws IOException {
+        QuizServer.LineReader in = new QuizServer.LineReader(new StringReader("one\ntwo\r\nthree\rfour\r\n\nlast"));
+        List<String> lines = new ArrayList<>();
+        for (String line; (line = in.readLine()) != null; ) {
+            lines.add(line);
+        }
+        assertEquals(List.of("one", "two", "three", "four", "", "last"), lines);
+    }
+
+    @Test
+    void readsALineOfExactlyTheLimit() throws IOException {
+        String longest = "x".repeat(QuizServer.MAX_LINE);
+        QuizServer.LineReader in = new QuizServer.LineReader(new StringReader(longest + "\n" + longest + "x\n"));
+        assertEquals(longest, in.readLine());
+        assertThrows(QuizServer.LineTooLongException.class, in::readLine);
+    }
+
+    @Test
+    void playsAQuestion() throws IOException {
+        try (Socket socket = new Socket("localhost", server.port())) {
+            BufferedReader in = reader(socket);
+            Writer out = writer(socket);
+
+            out.write("START\teasy\tada\n");
+            out.flush();
+            String[] question = in.readLine().split("\t");
+            assertEquals("QUESTION", question[0]);
+
+            out.write("QUIT\n");
+            out.flush();
+            assertEquals("SCORE\t0\t0", in.readLine());
+        }
+    }
+
+    @Test
+    void closesTheConnectionOnALineWithoutEnd() throws IOException {
+        try (Socket socket = new Socket("localhost", server.port())) {
+            BufferedReader in = reader(socket);
+            Writer out = writer(socket);
+
+            // Far more than the limit and never a line break; the server stops reading and hangs up
+            char[] chunk = new char[1024];
+            Arrays.fill(chunk, 'x');
+            try {
+                for (int i = 0; i < 64; i++) {
+                    out.write(chunk);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Reset by the server while still writing
+            }
+            try {
+                assertNull(in.readLine());
+            } catch (IOException e) {
+                // Reset rather than closed, which ends the connection just the same
+            }
+        }
+        assertEquals(0, server.finishedSessions());
+    }
+
+    private static QuizServer start() {
+        try {
+            return new QuizServer(new QuestionBank(List.of(new QuizGame.Question(
+                "Two plus two?", List.of("3", "4", "5"), "4", "easy", "Maths"))), 0).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static Writer writer(Socket socket) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientQuestionProviderTest {
+    private static final QuestionProvider.BatchRequest REQUEST = new QuestionProvider.BatchRequest(10, "", 0);
+    private static final List<QuizGame.Question> BATCH = List.of(
+        new QuizGame.Question("One?", List.of("yes", "no"), "yes", "easy", "test"));
+
+    private final AtomicLong now = new AtomicLong();
+    private final StubProvider stub = new StubProvider();
+
+    @Test
+    void sharesOneCallBetweenRequestsInFlight() throws Exception {
+        ResilientQuestionProvider provider = provider(new CircuitBreaker(3, Duration.ofSeconds(10), now::get));
+
+        CompletableFuture<List<QuizGame.Question>> first = provider.fetch(REQUEST);
+        CompletableFuture<List<QuizGame.Question>> second = provider.fetch(REQUEST);
+        assertEquals(1, stub.calls.size());
+        assertFalse(first.isDone());
+
+        stub.calls.getFirst().complete(BATCH);
+        assertEquals(BATCH, first.get(1, TimeUnit.SECONDS));
+        assertEquals(BATCH, second.get(1, TimeUnit.SECONDS));
+
+        // Still fresh, so served without another call
+        assertEquals(BATCH, provider.fetch(REQUEST).get(1, TimeUnit.SECONDS));
+        assertEquals(1, stub.calls.size());
+
+        // A different request, or the same one once it has expired, is fetched again
+        provider.fetch(new QuestionProvider.BatchRequest(10, "", 1));
+        assertEquals(2, stub.calls.size());
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        provider.fetch(REQUEST);
+        assertEquals(3, stub.calls.size());
+    }
+
+    @Test
+    void doesNotKeepFailedBatches() throws Exception {
+        ResilientQuestionProvider provider = provider(new CircuitBreaker(1, Duration.ofSeconds(10), now::get));
+
+        CompletableFuture<List<QuizGame.Question>> failed = provider.fetch(REQUEST);
+        stub.calls.getFirst().completeExceptionally(new IOException("boom"));
+        assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        CompletableFuture<List<QuizGame.Question>> retried = provider.fetch(REQUEST);
+        assertEquals(2, stub.calls.size());
+        stub.calls.get(1).complete(BATCH);
+        assertEquals(BATCH, retried.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void retryOnAJustOpenedBreakerCarriesTheFailure() {
+        ResilientQuestionProvider provider = provider(new CircuitBreaker(1, Duration.ofSeconds(10), now::get));
+
+        CompletableFuture<List<QuizGame.Question>> batch = provider.fetch(REQUEST);
+        IOException failure = new IOException("boom");
+        stub.calls.getFirst().completeExceptionally(failure);
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> batch.get(1, TimeUnit.SECONDS));
+        CircuitBreaker.OpenException open = assertInstanceOf(CircuitBreaker.OpenException.class, thrown.getCause());
+        assertSame(failure, open.getCause());
+        assertEquals(CircuitBreaker.State.OPEN, provider.state());
+        assertEquals(1, stub.calls.size());
+    }
+
+    @Test
+    void stopsRetryingWhenTheBudgetRunsOut() {
+        // No retries earned, and one saved up
+        ResilientQuestionProvider provider = new ResilientQuestionProvider(stub,
+            new CircuitBreaker(100, Duration.ofSeconds(10), now::get), new RetryBudget(0, 0, now::get),
+            Duration.ofMillis(1), Duration.ZERO, 0, now::get);
+
+        CompletableFuture<List<QuizGame.Question>> first = provider.fetch(REQUEST);
+        stub.calls.getFirst().completeExceptionally(new IOException("first"));
+        waitForCalls(2);
+        stub.calls.get(1).completeExceptionally(new IOException("retry"));
+        assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<List<QuizGame.Question>> second = provider.fetch(REQUEST);
+        stub.calls.get(2).completeExceptionally(new IOException("second"));
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+        assertEquals("second", thrown.getCause().getMessage());
+        assertEquals(3, stub.calls.size());
+    }
+
+    private ResilientQuestionProvider provider(CircuitBreaker breaker) {
+        return new ResilientQuestionProvider(stub, breaker, new RetryBudget(0.1, 1, now::get),
+            Duration.ofMillis(1), Duration.ofSeconds(30), 8, now::get);
+    }
+
+    private void waitForCalls(int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stub.calls.size() < count) {
+            assertTrue(System.nanoTime() < deadline, "the retry never came");
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Hands out a future per call, which the test completes.
+     */
+    private static final class StubProvider implements QuestionProvider {
+        final List<CompletableFuture<List<QuizGame.Question>>> calls = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String name() {
+            return "stub";
+        }
+
+        @Override
+        public CompletableFuture<List<QuizGame.Question>> fetch(BatchRequest request) {
+            CompletableFuture<List<QuizGame.Question>> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void runsOutAndIsEarnedBackByRequests() {
+        // A retry for every four requests, saved up to two and a half
+        RetryBudget budget = new RetryBudget(0.25, 0, now::get);
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+
+        budget.onRequest();
+        assertFalse(budget.tryRetry());
+        budget.onRequest();
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    void runsOutAndIsEarnedBackOverTime() {
+        // One retry a second, saved up to ten
+        RetryBudget budget = new RetryBudget(0, 1, now::get);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(budget.tryRetry(), "retry " + i);
+        }
+        assertFalse(budget.tryRetry());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertFalse(budget.tryRetry());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    void savesUpNoMoreThanItsReserve() {
+        RetryBudget budget = new RetryBudget(0, 1, now::get);
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(budget.tryRetry(), "retry " + i);
+        }
+        assertFalse(budget.tryRetry());
+    }
+}
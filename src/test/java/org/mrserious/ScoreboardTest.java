@@ -0,0 +1,127 @@
+package org.mrserious;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link Scoreboard}'s best scores, with finishes recorded from many threads at once and
+ * compared with a sort of everything that was recorded.
+ */
+@Timeout(30)
+class ScoreboardTest {
+    private static final int TOP = 10;
+    private static final int THREADS = 8;
+    private static final int FINISHES = 5_000;
+
+    @Test
+    void tiesGoToWhoeverFinishedFirst() {
+        Scoreboard board = new Scoreboard(3);
+        board.recordFinish("ada", 5, 10);
+        board.recordFinish("bob", 7, 10);
+        board.recordFinish("cy", 5, 10);
+        board.recordFinish("dee", 5, 10);
+        board.recordFinish("eve", 6, 10);
+
+        assertEquals(List.of("bob", "eve", "ada"), players(board.top()));
+        assertEquals(5, board.sessions());
+    }
+
+    @Test
+    void concurrentFinishesKeepTheBestScores() throws Exception {
+        // Every score is different, so there is exactly one right answer
+        Scoreboard board = new Scoreboard(TOP);
+        List<Scoreboard.Score> recorded = recordConcurrently(board, (thread, i, random) -> i * THREADS + thread);
+
+        List<Scoreboard.Score> expected = recorded.stream()
+            .sorted(Comparator.comparingInt(Scoreboard.Score::score).reversed())
+            .limit(TOP)
+            .toList();
+        assertEquals(players(expected), players(board.top()));
+        assertEquals((long) THREADS * FINISHES, board.sessions());
+    }
+
+    @Test
+    void concurrentTiesGoToWhoeverFinishedFirst() throws Exception {
+        // Few distinct scores, so the board is decided by ties
+        Scoreboard board = new Scoreboard(TOP);
+        List<Scoreboard.Score> recorded = recordConcurrently(board, (thread, i, random) -> random.nextInt(20));
+
+        List<Scoreboard.Score> top = board.top();
+        List<Integer> expectedScores = recorded.stream()
+            .map(Scoreboard.Score::score)
+            .sorted(Comparator.reverseOrder())
+            .limit(TOP)
+            .toList();
+        assertEquals(expectedScores, top.stream().map(Scoreboard.Score::score).toList());
+
+        for (int i = 1; i < top.size(); i++) {
+            if (top.get(i).score() == top.get(i - 1).score()) {
+                assertTrue(top.get(i).sequence() > top.get(i - 1).sequence(), "tie out of arrival order: " + top);
+            }
+        }
+
+        // A thread's own finishes arrive in the order it made them, so of its finishes with
+        // the lowest score on the board, only the earliest can be there
+        int lowest = top.getLast().score();
+        Set<String> onBoard = new HashSet<>(players(top));
+        for (int thread = 0; thread < THREADS; thread++) {
+            boolean missedOne = false;
+            for (Scoreboard.Score score : recorded) {
+                if (score.player().startsWith("t" + thread + "-") && score.score() == lowest) {
+                    boolean kept = onBoard.contains(score.player());
+                    assertFalse(kept && missedOne, score.player() + " kept after an earlier tie of its thread was dropped");
+                    missedOne |= !kept;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ScoreSource {
+        int score(int thread, int i, Random random);
+    }
+
+    /**
+     * Records {@value #FINISHES} finishes from each of {@value #THREADS} threads, released
+     * together, and returns them thread by thread in the order each thread made them.
+     */
+    private static List<Scoreboard.Score> recordConcurrently(Scoreboard board, ScoreSource scores) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Scoreboard.Score>>> results = new ArrayList<>();
+        try (ExecutorService threads = Executors.newFixedThreadPool(THREADS)) {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                results.add(threads.submit(() -> {
+                    Random random = new Random(thread);
+                    List<Scoreboard.Score> made = new ArrayList<>(FINISHES);
+                    start.await();
+                    for (int i = 0; i < FINISHES; i++) {
+                        Scoreboard.Score score = new Scoreboard.Score("t" + thread + "-" + i, scores.score(thread, i, random), 100, -1);
+                        board.recordFinish(score.player(), score.score(), score.total());
+                        made.add(score);
+                    }
+                    return made;
+                }));
+            }
+            start.countDown();
+        }
+
+        List<Scoreboard.Score> recorded = new ArrayList<>();
+        for (Future<List<Scoreboard.Score>> result : results) {
+            recorded.addAll(result.get());
+        }
+        return recorded;
+    }
+
+    private static List<String> players(List<Scoreboard.Score> scores) {
+        return scores.stream().map(Scoreboard.Score::player).toList();
+    }
+}